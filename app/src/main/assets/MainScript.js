@@ -27,6 +27,36 @@ function Menu() {
 }
 
 
+// ネイティブからのイベント受信
+// WebMessagePort で届く配列を種別ごとに振り分ける
+const KoiyureBridge = {
+    port: null,
+    handlers: {
+        p2p: (data) => { if (window.onP2PMessage) window.onP2PMessage(data); },
+        wolfx_eew: (data) => { if (window.onWolfxMessage) window.onWolfxMessage(data); },
+        intensity: (data) => { if (window.onIntensityEstimate) window.onIntensityEstimate(data); },
+    },
+    receive(events) {
+        for (const ev of events) {
+            const handler = this.handlers[ev.type];
+            if (handler) handler(ev.data);
+            // 遅延計測: 描画が反映されたフレームで受信からの時間を記録してもらう
+            if (ev.trace !== undefined && window.Android && Android.reportRendered) {
+                const trace = ev.trace;
+                requestAnimationFrame(() => Android.reportRendered(trace));
+            }
+        }
+    },
+};
+window.KoiyureBridge = KoiyureBridge;
+
+window.addEventListener("message", (e) => {
+    if (e.data === "koiyure-port" && e.ports && e.ports.length > 0) {
+        KoiyureBridge.port = e.ports[0];
+        KoiyureBridge.port.onmessage = (ev) => KoiyureBridge.receive(JSON.parse(ev.data));
+    }
+});
+
 function Main() {
     Menu();
     setInterval(NowTimeChange, 1);
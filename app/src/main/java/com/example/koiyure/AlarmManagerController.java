@@ -6,8 +6,12 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
+import android.os.SystemClock;
 import android.util.Log;
 
+/**
+ * Watchdog が次に起きる時刻のアラーム（1本だけ。予約し直すと前の予約を置き換える）
+ */
 public class AlarmManagerController {
 
     private static final String TAG = "AlarmScheduler";
@@ -22,69 +26,59 @@ public class AlarmManagerController {
                 (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
     }
 
-    // ========================
-    // アラーム開始
-    // ========================
-    public void start(int intervalMinutes) {
+    private PendingIntent pendingIntent() {
         Intent intent = new Intent(context, AlarmReceiver.class);
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(
+        return PendingIntent.getBroadcast(
                 context,
                 REQUEST_CODE,
                 intent,
                 PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
+    }
 
-        long intervalMillis = intervalMinutes * 60 * 1000L;
-        long triggerTime = System.currentTimeMillis() + intervalMillis;
-
+    // ========================
+    // アラーム予約
+    // ========================
+    public void schedule(long delayMillis) {
         if (alarmManager == null) return;
 
+        // 端末の時計合わせに影響されないよう起動からの経過時間で予約する
+        long triggerTime = SystemClock.elapsedRealtime() + delayMillis;
+        PendingIntent pendingIntent = pendingIntent();
+
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
             // Android 12+
+            // 正確なアラームならバックグラウンドからフォアグラウンドサービスを起動できる
             if (alarmManager.canScheduleExactAlarms()) {
                 alarmManager.setExactAndAllowWhileIdle(
-                        AlarmManager.RTC_WAKEUP,
+                        AlarmManager.ELAPSED_REALTIME_WAKEUP,
                         triggerTime,
                         pendingIntent
                 );
             } else {
                 alarmManager.setAndAllowWhileIdle(
-                        AlarmManager.RTC_WAKEUP,
+                        AlarmManager.ELAPSED_REALTIME_WAKEUP,
                         triggerTime,
                         pendingIntent
                 );
             }
-        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            alarmManager.setExactAndAllowWhileIdle(
-                    AlarmManager.RTC_WAKEUP,
-                    triggerTime,
-                    pendingIntent
-            );
         } else {
-            alarmManager.setExact(
-                    AlarmManager.RTC_WAKEUP,
+            alarmManager.setExactAndAllowWhileIdle(
+                    AlarmManager.ELAPSED_REALTIME_WAKEUP,
                     triggerTime,
                     pendingIntent
             );
         }
 
-        Log.d(TAG, "アラーム設定: " + intervalMinutes + "分後");
+        Log.d(TAG, "アラーム設定: " + delayMillis / 1000 + "秒後");
     }
 
     // ========================
     // アラーム停止
     // ========================
     public void stop() {
-        Intent intent = new Intent(context, AlarmReceiver.class);
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                context,
-                REQUEST_CODE,
-                intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
-
         if (alarmManager != null) {
-            alarmManager.cancel(pendingIntent);
+            alarmManager.cancel(pendingIntent());
             Log.d(TAG, "アラームキャンセル");
         }
     }
@@ -96,21 +90,9 @@ public class AlarmManagerController {
 
         @Override
         public void onReceive(Context context, Intent intent) {
-            Log.d(TAG, "アラーム受信 → サービス再起動");
-
-            // Foregroundサービス起動
-            Intent serviceIntent =
-                    new Intent(context, ForegroundManager.EarthquakeService.class);
-
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                context.startForegroundService(serviceIntent);
-            } else {
-                context.startService(serviceIntent);
-            }
-
-            // 次のアラームを再設定（15分後）
-            AlarmManagerController scheduler = new AlarmManagerController(context);
-            scheduler.start(15);
+            Log.d(TAG, "アラーム受信 → 見張りの確認");
+            // 状態の確認と次のアラームの間隔は Watchdog が決める
+            new Watchdog(context).check();
         }
     }
 }
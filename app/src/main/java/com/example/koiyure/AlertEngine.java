@@ -0,0 +1,120 @@
+package com.example.koiyure;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioTrack;
+import android.os.VibrationEffect;
+import android.os.Vibrator;
+import android.util.Log;
+
+/**
+ * 緊急地震速報の鳴動（音と振動）
+ * サービス開始時に報知音を PCM で合成して AudioTrack（static）に読み込み、振動パターンも作っておく
+ * 鳴らすときは再生位置を戻して play するだけなので、初報でもデコード・確保を待たない
+ */
+public final class AlertEngine {
+
+    private static final String TAG = "AlertEngine";
+
+    public static final int TONE_FORECAST = 0;
+    public static final int TONE_WARNING = 1;
+
+    private static final int SAMPLE_RATE = 22050;
+
+    // 予報: 高い音を2回 / 警報: 高低2音の組を4回
+    private static final int[][] TONE_FREQUENCIES = {{988, 988}, {988, 740, 988, 740, 988, 740, 988, 740}};
+    private static final int TONE_MILLIS = 160;
+    private static final int GAP_MILLIS = 40;
+
+    private static final long[][] VIBRATION_TIMINGS = {
+            {0, 300, 150, 300},
+            {0, 600, 200, 600, 200, 600, 200, 600},
+    };
+
+    private final AudioTrack[] tracks = new AudioTrack[TONE_FREQUENCIES.length];
+    private final VibrationEffect[] vibrations = new VibrationEffect[VIBRATION_TIMINGS.length];
+    private final AudioAttributes attributes = new AudioAttributes.Builder()
+            .setUsage(AudioAttributes.USAGE_ALARM)
+            .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+            .build();
+    private final Vibrator vibrator;
+
+    public AlertEngine(Context context) {
+        vibrator = context.getSystemService(Vibrator.class);
+        for (int i = 0; i < tracks.length; i++) {
+            tracks[i] = createTrack(synthesize(TONE_FREQUENCIES[i]));
+            vibrations[i] = VibrationEffect.createWaveform(VIBRATION_TIMINGS[i], -1);
+        }
+    }
+
+    private AudioTrack createTrack(short[] pcm) {
+        try {
+            AudioTrack track = new AudioTrack.Builder()
+                    .setAudioAttributes(attributes)
+                    .setAudioFormat(new AudioFormat.Builder()
+                            .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                            .setSampleRate(SAMPLE_RATE)
+                            .setChannelMask(AudioFormat.CHANNEL_OUT_MONO)
+                            .build())
+                    .setTransferMode(AudioTrack.MODE_STATIC)
+                    .setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY)
+                    .setBufferSizeInBytes(pcm.length * 2)
+                    .build();
+            track.write(pcm, 0, pcm.length);
+            return track;
+        } catch (RuntimeException e) {
+            // 音が用意できなくても振動と通知は出す
+            Log.e(TAG, "報知音の準備に失敗: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 鳴らす（再生中なら頭から鳴らし直す）
+     * @param tone TONE_FORECAST / TONE_WARNING
+     */
+    public synchronized void alarm(int tone) {
+        AudioTrack track = tracks[tone];
+        if (track != null && track.getState() == AudioTrack.STATE_INITIALIZED) {
+            if (track.getPlayState() != AudioTrack.PLAYSTATE_STOPPED) {
+                track.stop();
+            }
+            track.reloadStaticData();
+            track.play();
+        }
+        if (vibrator != null && vibrator.hasVibrator()) {
+            vibrator.vibrate(vibrations[tone], attributes);
+        }
+    }
+
+    public synchronized void release() {
+        for (int i = 0; i < tracks.length; i++) {
+            if (tracks[i] != null) {
+                tracks[i].release();
+                tracks[i] = null;
+            }
+        }
+        if (vibrator != null) {
+            vibrator.cancel();
+        }
+    }
+
+    /** 周波数の並びを TONE_MILLIS ずつ、間に無音を挟んで並べた PCM（端は短くフェードして音割れを防ぐ） */
+    static short[] synthesize(int[] frequencies) {
+        int toneSamples = SAMPLE_RATE * TONE_MILLIS / 1000;
+        int gapSamples = SAMPLE_RATE * GAP_MILLIS / 1000;
+        int fade = SAMPLE_RATE / 200;
+        short[] pcm = new short[frequencies.length * (toneSamples + gapSamples)];
+        int pos = 0;
+        for (int frequency : frequencies) {
+            double step = 2 * Math.PI * frequency / SAMPLE_RATE;
+            for (int i = 0; i < toneSamples; i++) {
+                double envelope = Math.min(1.0, Math.min(i, toneSamples - 1 - i) / (double) fade);
+                pcm[pos++] = (short) (Math.sin(step * i) * envelope * 0.8 * Short.MAX_VALUE);
+            }
+            pos += gapSamples;
+        }
+        return pcm;
+    }
+}
@@ -0,0 +1,354 @@
+package com.example.koiyure;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import androidx.core.app.NotificationCompat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 地震情報の通知を出す
+ * ・緊急地震速報 / 地震情報 / 津波予報で重要度の高いチャンネルを分ける
+ * ・同じ地震・同じ津波予報は1件の通知を置き換えて更新し、鳴らすのは重要度が上がったときだけ
+ * ・更新は NotificationThrottle で間引く（system_server への notify を減らす）
+ * ・緊急地震速報の鳴動は AlertEngine が受け持ち、通知の間引きを待たずに鳴らす
+ * 通知の雛形・PendingIntent・報知音はサービス開始時に作っておき、初報では文面を埋めるだけにする
+ */
+public final class AlertNotifier implements NotificationThrottle.Host {
+
+    public static final String CHANNEL_EEW = "eew_alert";
+    public static final String CHANNEL_QUAKE = "quake_info";
+    public static final String CHANNEL_TSUNAMI = "tsunami";
+
+    // 同じ通知の更新はこの間隔に1回（間の報は最新の1報にまとめる）
+    private static final long COALESCE_MILLIS = 1000;
+    // system_server は1アプリ毎秒5件を超える notify を捨てるので、それより少なく抑える
+    private static final int MAX_POSTS_PER_SECOND = 4;
+
+    // 通知ID（常駐通知は 1001、緊急地震速報は EewDeduplicator.notificationId の 0x40000000 台）
+    private static final int ID_TSUNAMI = 2001;
+    private static final int ID_QUAKE_BASE = 0x20000000;
+    private static final int ID_EEW_DETECTION_BASE = 0x10000000;
+
+    private final Context context;
+    private final NotificationManager manager;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final NotificationThrottle throttle =
+            new NotificationThrottle(COALESCE_MILLIS, MAX_POSTS_PER_SECOND, this);
+    private final PendingIntent contentIntent;
+    private final Map<String, Template> templates = new HashMap<>();
+    private final AlertEngine engine;
+
+    // 鳴らした緊急地震速報（イベントID → 重要度）。リングで上書きしていく
+    private static final int SOUNDED_CAPACITY = 16;
+    private final String[] soundedIds = new String[SOUNDED_CAPACITY];
+    private final int[] soundedLevels = new int[SOUNDED_CAPACITY];
+    private int nextSounded = 0;
+
+    public AlertNotifier(Context context) {
+        this.context = context.getApplicationContext();
+        manager = this.context.getSystemService(NotificationManager.class);
+        contentIntent = PendingIntent.getActivity(this.context, 0,
+                new Intent(this.context, MainActivity.class), PendingIntent.FLAG_IMMUTABLE);
+        createChannels();
+        templates.put(CHANNEL_EEW, new Template(CHANNEL_EEW, NotificationCompat.CATEGORY_ALARM));
+        templates.put(CHANNEL_QUAKE, new Template(CHANNEL_QUAKE, NotificationCompat.CATEGORY_STATUS));
+        templates.put(CHANNEL_TSUNAMI, new Template(CHANNEL_TSUNAMI, NotificationCompat.CATEGORY_ALARM));
+        engine = new AlertEngine(this.context);
+    }
+
+    /** チャンネルごとの通知の雛形（文面以外は作成時に埋めておく） */
+    private final class Template {
+        final NotificationCompat.Builder builder;
+        final NotificationCompat.BigTextStyle style = new NotificationCompat.BigTextStyle();
+
+        Template(String channel, String category) {
+            builder = new NotificationCompat.Builder(context, channel)
+                    .setSmallIcon(android.R.drawable.ic_dialog_alert)
+                    .setPriority(NotificationCompat.PRIORITY_HIGH)
+                    .setCategory(category)
+                    .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+                    .setContentIntent(contentIntent)
+                    .setAutoCancel(true)
+                    .setShowWhen(true)
+                    .setStyle(style);
+            // 一度組み立てて、初報のときにクラス読み込みや内部の確保が走らないようにする
+            fill("", "", true);
+            builder.build();
+        }
+
+        void fill(String title, String text, boolean audible) {
+            style.bigText(text);
+            builder.setContentTitle(title)
+                    .setContentText(text)
+                    .setWhen(System.currentTimeMillis())
+                    // 表示中の通知の更新は鳴らさない（重要度が上がったときだけ鳴らし直す）
+                    .setOnlyAlertOnce(!audible);
+        }
+    }
+
+    private void createChannels() {
+        if (manager == null) return;
+        NotificationChannel eew = new NotificationChannel(
+                CHANNEL_EEW, "緊急地震速報", NotificationManager.IMPORTANCE_HIGH);
+        eew.setDescription("緊急地震速報（予報・警報）");
+        // 音と振動は AlertEngine が鳴らす（チャンネルの音は通知の間引きを待つので使わない）
+        eew.setSound(null, null);
+        eew.enableVibration(false);
+        eew.setLockscreenVisibility(Notification.VISIBILITY_PUBLIC);
+        manager.createNotificationChannel(eew);
+
+        NotificationChannel quake = new NotificationChannel(
+                CHANNEL_QUAKE, "地震情報", NotificationManager.IMPORTANCE_HIGH);
+        quake.setDescription("震度速報・震源・各地の震度");
+        quake.setLockscreenVisibility(Notification.VISIBILITY_PUBLIC);
+        manager.createNotificationChannel(quake);
+
+        NotificationChannel tsunami = new NotificationChannel(
+                CHANNEL_TSUNAMI, "津波予報", NotificationManager.IMPORTANCE_HIGH);
+        tsunami.setDescription("大津波警報・津波警報・津波注意報");
+        tsunami.enableVibration(true);
+        tsunami.setLockscreenVisibility(Notification.VISIBILITY_PUBLIC);
+        manager.createNotificationChannel(tsunami);
+    }
+
+    /** 待っている更新を捨てる（サービス終了時） */
+    public void close() {
+        handler.removeCallbacksAndMessages(null);
+        throttle.clear();
+        engine.release();
+    }
+
+    // ------------------------
+    // 入口（受信スレッドから呼ぶ）
+    // ------------------------
+
+    /** 緊急地震速報（イベントIDごとに1件を更新する） */
+    public void notifyEew(EewRecord eew) {
+        notifyEew(eew, false);
+    }
+
+    /** @param silent 後から取り直した報など（通知は出すが鳴らさない）。記録の再生で流した報も鳴らさない */
+    private void notifyEew(EewRecord eew, boolean silent) {
+        silent |= eew.replayed;
+        int level = eewLevel(eew);
+        // 鳴動を先に済ませる（通知は間引きで最大 COALESCE_MILLIS 待つことがある）
+        if (!eew.training && !silent && isAlarming(eew) && shouldSound(eew.eventId, level)) {
+            engine.alarm(level >= LEVEL_WARNING ? AlertEngine.TONE_WARNING : AlertEngine.TONE_FORECAST);
+            LatencyMetrics.getInstance().mark(eew, LatencyMetrics.STAGE_AUDIBLE);
+        }
+        int id = eew.eventId != null
+                ? EewDeduplicator.notificationId(eew.eventId)
+                : (int) System.currentTimeMillis() & 0x0FFFFFFF;
+        throttle.submit(new NotificationThrottle.Alert(id, CHANNEL_EEW, eewTitle(eew), eewText(eew),
+                level, eew.feed, eew.receivedNanos, silent));
+    }
+
+    /** P2P地震情報（通知しない種類は無視する） */
+    public void notifyMessage(P2PQuakeDecoder.Message message) {
+        if (message instanceof P2PQuakeDecoder.Eew) {
+            notifyEew(((P2PQuakeDecoder.Eew) message).record, message.isSilent());
+        } else if (message instanceof P2PQuakeDecoder.QuakeInfo) {
+            P2PQuakeDecoder.QuakeInfo q = (P2PQuakeDecoder.QuakeInfo) message;
+            // 震度速報・震源情報・各地の震度は同じ地震（発生時刻）の通知を更新していく
+            long key = q.originTime > 0 ? q.originTime : (q.id != null ? q.id.hashCode() : message.time);
+            int id = ID_QUAKE_BASE | (Long.hashCode(key) & 0x0FFFFFFF);
+            throttle.submit(new NotificationThrottle.Alert(id, CHANNEL_QUAKE, quakeTitle(q), q.summary(),
+                    Math.max(q.maxScale, q.userScale), 0, 0, message.isSilent()));
+        } else if (message instanceof P2PQuakeDecoder.Tsunami) {
+            P2PQuakeDecoder.Tsunami t = (P2PQuakeDecoder.Tsunami) message;
+            int level = tsunamiLevel(t);
+            throttle.submit(new NotificationThrottle.Alert(ID_TSUNAMI, CHANNEL_TSUNAMI,
+                    tsunamiTitle(level), tsunamiText(t), level, 0, 0, message.isSilent()));
+        } else if (message instanceof P2PQuakeDecoder.EewDetection) {
+            long key = message.id != null ? message.id.hashCode() : message.time;
+            int id = ID_EEW_DETECTION_BASE | (Long.hashCode(key) & 0x0FFFFFFF);
+            // 警報の発表を検出した（続く 556 / Wolfx より早いことがある）
+            if (!message.isSilent() && shouldSound("detection-" + key, LEVEL_WARNING)) {
+                engine.alarm(AlertEngine.TONE_WARNING);
+            }
+            throttle.submit(new NotificationThrottle.Alert(id, CHANNEL_EEW, "緊急地震速報",
+                    message.summary(), 1, 0, 0, message.isSilent()));
+        }
+    }
+
+    // ------------------------
+    // NotificationThrottle.Host
+    // ------------------------
+    @Override
+    public void post(NotificationThrottle.Alert alert, boolean audible) {
+        if (manager == null) return;
+        Template template = templates.get(alert.channel);
+        Notification notification;
+        synchronized (template) {
+            template.fill(alert.title, alert.text, audible && !alert.silent);
+            notification = template.builder.build();
+        }
+        manager.notify(alert.id, notification);
+        if (alert.receivedNanos != 0) {
+            // まとめて出した報は待たせた時間も含む
+            LatencyMetrics.getInstance().record(alert.feed, LatencyMetrics.STAGE_NOTIFY,
+                    (LatencyMetrics.now() - alert.receivedNanos) / 1000);
+        }
+    }
+
+    @Override
+    public void schedule(Runnable task, long delayMillis) {
+        // 待っている間に眠ると Handler の時計が止まり、まとめた報がいつまでも出ない
+        FrameWakeLock wakeLock = FrameWakeLock.getInstance();
+        wakeLock.enter();
+        handler.postDelayed(() -> {
+            try {
+                task.run();
+            } finally {
+                wakeLock.exit();
+            }
+        }, delayMillis);
+    }
+
+    @Override
+    public long now() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    // ------------------------
+    // 文面
+    // ------------------------
+    private static String eewTitle(EewRecord eew) {
+        String title;
+        if (eew.title != null) {
+            title = eew.title;
+        } else if (eew.cancel) {
+            title = "緊急地震速報（取消）";
+        } else {
+            title = eew.warning ? "緊急地震速報（警報）" : "緊急地震速報（予報）";
+        }
+        if (eew.replayed) title = "【再生】" + title;
+        return eew.training ? "【訓練】" + title : title;
+    }
+
+    private static final int LEVEL_FORECAST = 100;
+    private static final int LEVEL_WARNING = 200;
+
+    // 予報は現在地の予測震度がこれ以上のときだけ鳴らす（震度3）
+    private static final int SOUND_MIN_SCALE = 30;
+
+    /**
+     * 報知音を鳴らす報か
+     * 警報は鳴らす。予報は現在地の予測震度が SOUND_MIN_SCALE 以上のときだけで、現在地が未設定なら鳴らさない
+     */
+    private static boolean isAlarming(EewRecord eew) {
+        if (eew.cancel) return false;
+        if (eew.warning) return true;
+        return !Double.isNaN(eew.estimatedIntensity)
+                && IntensityEstimator.toScale(eew.estimatedIntensity) >= SOUND_MIN_SCALE;
+    }
+
+    /** 取消 < 予報 < 警報、同じ種類なら現在地の予測震度が大きいほど高い */
+    private static int eewLevel(EewRecord eew) {
+        if (eew.cancel) return 0;
+        int scale = Double.isNaN(eew.estimatedIntensity) ? 0
+                : Math.max(0, IntensityEstimator.toScale(eew.estimatedIntensity));
+        return (eew.warning ? LEVEL_WARNING : LEVEL_FORECAST) + scale;
+    }
+
+    /** key の報をまだ level 以上で鳴らしていなければ記録して true */
+    private synchronized boolean shouldSound(String key, int level) {
+        if (key == null) return true;
+        for (int i = 0; i < SOUNDED_CAPACITY; i++) {
+            if (key.equals(soundedIds[i])) {
+                if (soundedLevels[i] >= level) return false;
+                soundedLevels[i] = level;
+                return true;
+            }
+        }
+        soundedIds[nextSounded] = key;
+        soundedLevels[nextSounded] = level;
+        nextSounded = (nextSounded + 1) % SOUNDED_CAPACITY;
+        return true;
+    }
+
+    static String eewText(EewRecord eew) {
+        if (eew.cancel) {
+            return eew.summary();
+        }
+        StringBuilder sb = new StringBuilder(96);
+        if (!Double.isNaN(eew.estimatedIntensity)) {
+            int scale = IntensityEstimator.toScale(eew.estimatedIntensity);
+            sb.append("現在地 予測震度")
+                    .append(scale > 0 ? P2PQuakeDecoder.scaleToString(scale) : "0").append(' ');
+        }
+        long seconds = eew.secondsUntilS(System.currentTimeMillis());
+        if (seconds == 0) {
+            sb.append("S波到達済み ");
+        } else if (seconds > 0) {
+            sb.append("S波到達まで約").append(seconds).append("秒 ");
+        }
+        return sb.append(eew.summary()).toString();
+    }
+
+    private static String quakeTitle(P2PQuakeDecoder.QuakeInfo q) {
+        if (q.issueType == null) return "地震情報";
+        switch (q.issueType) {
+            case "ScalePrompt": return "震度速報";
+            case "Destination": return "震源に関する情報";
+            case "ScaleAndDestination": return "震度・震源に関する情報";
+            case "DetailScale": return "各地の震度に関する情報";
+            case "Foreign": return "遠地地震に関する情報";
+            default: return "地震情報";
+        }
+    }
+
+    /** 解除 0 / 注意報 1 / 警報 2 / 大津波警報 3 */
+    private static int tsunamiLevel(P2PQuakeDecoder.Tsunami t) {
+        if (t.cancelled) return 0;
+        int level = 1;
+        for (String grade : t.areaGrades) {
+            level = Math.max(level, gradeLevel(grade));
+        }
+        return level;
+    }
+
+    private static String tsunamiTitle(int level) {
+        switch (level) {
+            case 3: return "大津波警報";
+            case 2: return "津波警報";
+            case 1: return "津波注意報";
+            default: return "津波予報解除";
+        }
+    }
+
+    private static int gradeLevel(String grade) {
+        if ("MajorWarning".equals(grade)) return 3;
+        if ("Warning".equals(grade)) return 2;
+        if ("Watch".equals(grade)) return 1;
+        return 0;
+    }
+
+    private static String tsunamiText(P2PQuakeDecoder.Tsunami t) {
+        if (t.cancelled || t.areaNames.length == 0) return t.summary();
+        // 区域は多いと数十件になるので、重い予報の区域から8件だけ並べて残りは件数にする
+        StringBuilder sb = new StringBuilder(128);
+        int shown = 0;
+        for (int level = 3; level >= 0 && shown < 8; level--) {
+            for (int i = 0; i < t.areaNames.length && shown < 8; i++) {
+                if (gradeLevel(t.areaGrades[i]) != level) continue;
+                if (shown++ > 0) sb.append('\n');
+                sb.append(level > 0 ? tsunamiTitle(level) : "津波予報").append(' ').append(t.areaNames[i]);
+                if (t.areaImmediate[i]) sb.append("（直ちに来襲）");
+            }
+        }
+        if (t.areaNames.length > shown) {
+            sb.append("\nほか").append(t.areaNames.length - shown).append("区域");
+        }
+        return sb.toString();
+    }
+}
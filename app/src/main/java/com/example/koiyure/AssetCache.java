@@ -0,0 +1,96 @@
+package com.example.koiyure;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * アセットテーブルのバイナリキャッシュ
+ * 初回（またはアプリ更新後）だけテキストを解析して保存し、以降はメモリマップで読む
+ */
+public class AssetCache {
+
+    private static final String TAG = "AssetCache";
+    private static final String FILE_NAME = "asset-tables.bin";
+
+    private static volatile AssetTables tables;
+
+    /** 読み込み済みのテーブル（まだなら null） */
+    public static AssetTables get() {
+        return tables;
+    }
+
+    /**
+     * テーブルを用意する（ファイルI/Oがあるのでバックグラウンドスレッドで呼ぶ）
+     */
+    public static synchronized AssetTables load(Context context) throws IOException {
+        if (tables != null) return tables;
+
+        long start = SystemClock.elapsedRealtime();
+        File file = new File(context.getCacheDir(), FILE_NAME);
+        long stamp = sourceStamp(context);
+
+        AssetTables loaded = null;
+        if (file.exists()) {
+            loaded = map(file, stamp);
+            if (loaded == null) {
+                Log.d(TAG, "キャッシュが古いか壊れているため再作成します");
+            }
+        }
+        if (loaded == null) {
+            loaded = AssetTables.parse(context.getAssets()::open);
+            write(file, loaded, stamp);
+        }
+
+        tables = loaded;
+        Log.d(TAG, "アセットテーブル準備完了: " + (SystemClock.elapsedRealtime() - start) + "ms");
+        return loaded;
+    }
+
+    private static AssetTables map(File file, long stamp) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return AssetTables.readFrom(buffer, stamp);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "キャッシュ読み込み失敗: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void write(File file, AssetTables t, long stamp) {
+        // 書きかけのファイルを読まないよう一時ファイルから置き換える
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp))) {
+            t.writeTo(out, stamp);
+        } catch (IOException e) {
+            Log.w(TAG, "キャッシュ書き込み失敗: " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+        }
+    }
+
+    /** アセットはAPKと一緒にしか変わらないので、APKの更新時刻をスタンプにする */
+    private static long sourceStamp(Context context) {
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+            return info.lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.koiyure;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * アセットから作る読み取り専用テーブル一式と、そのバイナリ形式
+ *
+ * 形式: [MAGIC][FORMAT_VERSION][sourceStamp][payloadLength][crc32] + payload
+ * payload は各テーブルを順に並べたもの（ビッグエンディアン）
+ */
+public final class AssetTables {
+
+    static final int MAGIC = 0x4B594143; // "KYAC"
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4;
+
+    public final TravelTimeTable travelTimes;
+    public final PointTable intensityStations;
+    public final PointTable epspAreas;
+    public final PointTable p2pAreas;
+    public final PointTable tsunamiRegions;
+
+    /** アセットの開き方（Android では AssetManager::open を渡す） */
+    public interface Source {
+        InputStream open(String path) throws IOException;
+    }
+
+    AssetTables(TravelTimeTable travelTimes, PointTable intensityStations, PointTable epspAreas,
+                PointTable p2pAreas, PointTable tsunamiRegions) {
+        this.travelTimes = travelTimes;
+        this.intensityStations = intensityStations;
+        this.epspAreas = epspAreas;
+        this.p2pAreas = p2pAreas;
+        this.tsunamiRegions = tsunamiRegions;
+    }
+
+    // ------------------------
+    // テキストアセットからの構築（初回のみ）
+    // ------------------------
+    public static AssetTables parse(Source source) throws IOException {
+        TravelTimeTable travel;
+        try (InputStream in = source.open(TravelTimeTable.ASSET_PATH)) {
+            travel = TravelTimeTable.parse(in);
+        }
+        PointTable stations;
+        try (InputStream in = source.open(PointTable.INTENSITY_STATIONS_ASSET)) {
+            stations = PointTable.parseIntensityStations(in);
+        }
+        PointTable areas;
+        try (InputStream in = source.open(PointTable.EPSP_AREA_ASSET)) {
+            areas = PointTable.parseEpspAreas(in);
+        }
+        PointTable saibunn;
+        try (InputStream in = source.open(PointTable.P2P_SAIBUNN_ASSET)) {
+            saibunn = PointTable.parseP2PSaibunn(in);
+        }
+        PointTable tsunami;
+        try (InputStream in = source.open(PointTable.TSUNAMI_REGION_ASSET)) {
+            tsunami = PointTable.parseTsunamiRegions(in);
+        }
+        return new AssetTables(travel, stations, areas, saibunn, tsunami);
+    }
+
+    // ------------------------
+    // バイナリ形式
+    // ------------------------
+    public void writeTo(OutputStream out, long sourceStamp) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(512 * 1024);
+        DataOutputStream body = new DataOutputStream(payload);
+        travelTimes.writeTo(body);
+        intensityStations.writeTo(body);
+        epspAreas.writeTo(body);
+        p2pAreas.writeTo(body);
+        tsunamiRegions.writeTo(body);
+        body.flush();
+
+        byte[] bytes = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeInt(FORMAT_VERSION);
+        header.writeLong(sourceStamp);
+        header.writeInt(bytes.length);
+        header.writeInt((int) crc.getValue());
+        header.write(bytes);
+        header.flush();
+    }
+
+    /**
+     * バイナリから読み込む。形式・スタンプ・チェックサムのどれかが合わなければ null
+     */
+    public static AssetTables readFrom(ByteBuffer in, long expectedStamp) {
+        if (in.remaining() < HEADER_SIZE) return null;
+        if (in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION) return null;
+        if (in.getLong() != expectedStamp) return null;
+        int length = in.getInt();
+        int expectedCrc = in.getInt();
+        if (length != in.remaining()) return null;
+
+        ByteBuffer payload = in.slice();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != expectedCrc) return null;
+
+        return new AssetTables(
+                TravelTimeTable.readFrom(payload),
+                PointTable.readFrom(payload),
+                PointTable.readFrom(payload),
+                PointTable.readFrom(payload),
+                PointTable.readFrom(payload));
+    }
+}
@@ -4,6 +4,8 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
 /**
@@ -16,7 +18,13 @@ public class BootReceiver extends BroadcastReceiver {
     @Override
     public void onReceive(Context context, Intent intent) {
         if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
-            Log.d(TAG, "端末起動検出 - サービス自動開始");
+            // 利用者が監視を止めていたら起動しない
+            if (!new Watchdog(context).isEnabled()) {
+                Log.d(TAG, "端末起動検出 - 監視は停止中");
+                return;
+            }
+            Log.d(TAG, "端末起動検出 - サービス自動開始（前回: "
+                    + ServiceLiveness.get(context).read(Process.myPid(), SystemClock.uptimeMillis()).toJson(System.currentTimeMillis()) + "）");
 
             // フォアグラウンドサービス起動
             Intent serviceIntent = new Intent(
@@ -30,15 +38,8 @@ public class BootReceiver extends BroadcastReceiver {
                 context.startService(serviceIntent);
             }
 
-            // AlarmManager設定
-            AlarmManagerController alarmmanagercontroller = new AlarmManagerController(context);
-            alarmmanagercontroller.start(15);
-
-            // WorkManager設定
-            WorkManager workManager = new WorkManager(context);
-            workManager.start(15);
-
-            Log.d(TAG, "すべてのサービスを起動しました");
+            // 見張りはサービスの起動時に始まる（再起動の予約はWatchdogの1本にまとめている）
+            Log.d(TAG, "サービスを起動しました");
         }
     }
 }
\ No newline at end of file
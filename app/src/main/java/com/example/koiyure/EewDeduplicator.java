@@ -0,0 +1,97 @@
+package com.example.koiyure;
+
+/**
+ * 緊急地震速報をイベントID・報数で重複排除する
+ * 同じ報の再送と、後から届いた古い報を落とす（取消は報数に関係なく1回だけ通す）
+ * 直近のイベントだけを固定長の配列で覚えておき、溢れたら最も長く使われていないものを捨てる
+ */
+public final class EewDeduplicator {
+
+    public static final int ACCEPT = 0;
+    public static final int DUPLICATE = 1;
+    public static final int STALE = 2;
+
+    private final String[] eventIds;
+    private final int[] serials;
+    private final boolean[] cancelled;
+    private final long[] lastUsed;
+    private long clock = 0;
+    private int size = 0;
+
+    private long droppedCount = 0;
+
+    public EewDeduplicator(int capacity) {
+        eventIds = new String[capacity];
+        serials = new int[capacity];
+        cancelled = new boolean[capacity];
+        lastUsed = new long[capacity];
+    }
+
+    /**
+     * 報を通すかどうか判定し、通す場合は記録する
+     * @return ACCEPT / DUPLICATE（同じ報）/ STALE（より新しい報を受信済み）
+     */
+    public synchronized int check(EewRecord eew) {
+        if (eew.eventId == null) return ACCEPT;
+        clock++;
+        int slot = find(eew.eventId);
+        if (slot < 0) {
+            slot = size < eventIds.length ? size++ : leastRecentlyUsed();
+            eventIds[slot] = eew.eventId;
+            serials[slot] = eew.serial;
+            cancelled[slot] = eew.cancel;
+            lastUsed[slot] = clock;
+            return ACCEPT;
+        }
+        lastUsed[slot] = clock;
+        if (eew.cancel) {
+            if (cancelled[slot]) return drop(DUPLICATE);
+            cancelled[slot] = true;
+            serials[slot] = Math.max(serials[slot], eew.serial);
+            return ACCEPT;
+        }
+        if (cancelled[slot] || eew.serial < serials[slot]) return drop(STALE);
+        if (eew.serial == serials[slot]) return drop(DUPLICATE);
+        serials[slot] = eew.serial;
+        return ACCEPT;
+    }
+
+    /** check と同じ判定をするが記録しない（通すかどうかを確かめるだけ） */
+    public synchronized int peek(EewRecord eew) {
+        if (eew.eventId == null) return ACCEPT;
+        int slot = find(eew.eventId);
+        if (slot < 0) return ACCEPT;
+        if (eew.cancel) return cancelled[slot] ? DUPLICATE : ACCEPT;
+        if (cancelled[slot] || eew.serial < serials[slot]) return STALE;
+        return eew.serial == serials[slot] ? DUPLICATE : ACCEPT;
+    }
+
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /** イベントごとに固定の通知ID（同じ地震の続報は同じ通知を更新する） */
+    public static int notificationId(String eventId) {
+        return eventId == null ? 0 : 0x40000000 | (eventId.hashCode() & 0x3FFFFFFF);
+    }
+
+    private int drop(int result) {
+        droppedCount++;
+        return result;
+    }
+
+    private int find(String eventId) {
+        for (int i = 0; i < size; i++) {
+            if (eventId.equals(eventIds[i])) return i;
+        }
+        return -1;
+    }
+
+    private int leastRecentlyUsed() {
+        int oldest = 0;
+        for (int i = 1; i < size; i++) {
+            if (lastUsed[i] < lastUsed[oldest]) oldest = i;
+        }
+        return oldest;
+    }
+}
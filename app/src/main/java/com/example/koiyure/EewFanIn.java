@@ -0,0 +1,148 @@
+package com.example.koiyure;
+
+/**
+ * 複数の経路（Wolfx / P2P地震情報の556 / 予備のWolfx）から届く緊急地震速報を1本にまとめる
+ * イベントID・報数が同じものは最初に届いた1通だけを通し、経路ごとの遅れを記録する
+ * ・遅延: 受信時刻 − 発表時刻（発表時刻は秒単位なので±1秒の誤差を含む）
+ * ・後着: 同じ報を最初に届けた経路からの遅れ
+ * 取り直し・保留してから流した報（receivedNanos = 0）は受信時刻がソケットの受信と合わないので、どちらにも数えない
+ */
+public final class EewFanIn {
+
+    public static final int SOURCE_WOLFX = 0;
+    public static final int SOURCE_P2P = 1;
+    public static final int SOURCE_WOLFX_BACKUP = 2;
+    static final int SOURCE_COUNT = 3;
+    private static final String[] SOURCE_NAMES = {"wolfx", "p2p", "wolfx2"};
+
+    // これより遅い受信（再接続後の取りこぼし補完など）は遅延の統計に入れない
+    private static final long MAX_LATENCY_MILLIS = 10 * 60_000;
+
+    private final EewDeduplicator dedup;
+
+    // 直近に通した報（イベントID・報数 → 最初の受信時刻と経路）。リングで上書きしていく
+    private final String[] reportIds;
+    private final int[] reportSerials;
+    private final long[] reportFirstAt;
+    private final int[] reportSources;
+    private int nextReport = 0;
+
+    // 経路ごとの統計
+    private final long[] received = new long[SOURCE_COUNT];
+    private final long[] first = new long[SOURCE_COUNT];
+    private final long[] latencySum = new long[SOURCE_COUNT];
+    private final long[] latencyMax = new long[SOURCE_COUNT];
+    private final long[] latencyCount = new long[SOURCE_COUNT];
+    private final long[] lagSum = new long[SOURCE_COUNT];
+    private final long[] lagMax = new long[SOURCE_COUNT];
+    private final long[] lagCount = new long[SOURCE_COUNT];
+
+    public EewFanIn(int capacity) {
+        dedup = new EewDeduplicator(capacity);
+        reportIds = new String[capacity];
+        reportSerials = new int[capacity];
+        reportFirstAt = new long[capacity];
+        reportSources = new int[capacity];
+    }
+
+    /**
+     * source から届いた報を通すかどうか判定する
+     * @return 最初に届いた報なら true（後着・再送・古い報は false）
+     */
+    public synchronized boolean accept(EewRecord eew, int source) {
+        long now = eew.receivedAt;
+        received[source]++;
+        boolean live = eew.receivedNanos != 0;
+        if (live && eew.announcedTime > 0 && now >= eew.announcedTime
+                && now - eew.announcedTime <= MAX_LATENCY_MILLIS) {
+            long latency = now - eew.announcedTime;
+            latencySum[source] += latency;
+            latencyMax[source] = Math.max(latencyMax[source], latency);
+            latencyCount[source]++;
+        }
+
+        int result = dedup.check(eew);
+        if (result == EewDeduplicator.ACCEPT) {
+            first[source]++;
+            if (eew.eventId != null) {
+                int slot = nextReport;
+                nextReport = (nextReport + 1) % reportIds.length;
+                reportIds[slot] = eew.eventId;
+                reportSerials[slot] = eew.serial;
+                reportFirstAt[slot] = now;
+                reportSources[slot] = source;
+            }
+            return true;
+        }
+        if (result == EewDeduplicator.DUPLICATE) {
+            int slot = findReport(eew.eventId, eew.serial);
+            // 同じ経路の再送は後着に数えない
+            if (live && slot >= 0 && reportSources[slot] != source) {
+                long lag = Math.max(0, now - reportFirstAt[slot]);
+                lagSum[source] += lag;
+                lagMax[source] = Math.max(lagMax[source], lag);
+                lagCount[source]++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 後から取り直した報がまだ通していないものか確かめる（記録も統計もしない）
+     * 取り直した報で枠を取ると、同じ報のライブの受信が重複として落とされて鳴らなくなるため
+     */
+    public synchronized boolean isNew(EewRecord eew) {
+        return dedup.peek(eew) == EewDeduplicator.ACCEPT;
+    }
+
+    public synchronized long getReceivedCount(int source) {
+        return received[source];
+    }
+
+    /** source が最初に届けた報の数 */
+    public synchronized long getFirstCount(int source) {
+        return first[source];
+    }
+
+    /** 他の経路より遅れて届いたときの平均の遅れ（ミリ秒、記録なしなら -1） */
+    public synchronized long getAverageLagMillis(int source) {
+        return lagCount[source] == 0 ? -1 : lagSum[source] / lagCount[source];
+    }
+
+    public synchronized long getAverageLatencyMillis(int source) {
+        return latencyCount[source] == 0 ? -1 : latencySum[source] / latencyCount[source];
+    }
+
+    public synchronized long getDroppedCount() {
+        return dedup.getDroppedCount();
+    }
+
+    /** 経路ごとの統計（{"wolfx":{...},"p2p":{...},"wolfx2":{...}}） */
+    public synchronized String toJson() {
+        StringBuilder sb = new StringBuilder(384).append('{');
+        for (int i = 0; i < SOURCE_COUNT; i++) {
+            if (i > 0) sb.append(',');
+            sb.append('"').append(SOURCE_NAMES[i]).append("\":{");
+            sb.append("\"received\":").append(received[i]);
+            sb.append(",\"first\":").append(first[i]);
+            sb.append(",\"latencyAvgMs\":").append(getAverageLatencyMillis(i));
+            sb.append(",\"latencyMaxMs\":").append(latencyCount[i] == 0 ? -1 : latencyMax[i]);
+            sb.append(",\"lagAvgMs\":").append(getAverageLagMillis(i));
+            sb.append(",\"lagMaxMs\":").append(lagCount[i] == 0 ? -1 : lagMax[i]);
+            sb.append('}');
+        }
+        return sb.append('}').toString();
+    }
+
+    static String sourceName(int source) {
+        return SOURCE_NAMES[source];
+    }
+
+    private int findReport(String eventId, int serial) {
+        if (eventId == null) return -1;
+        for (int i = 0; i < reportIds.length; i++) {
+            if (reportSerials[i] == serial && eventId.equals(reportIds[i])) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.koiyure;
+
+/**
+ * 緊急地震速報1報分の型付きレコード
+ * android.os.Message と同じくプールから obtain() して recycle() で返す
+ * （リスナーに渡されたインスタンスはコールバック中だけ有効。保持する場合は copy() する）
+ */
+public final class EewRecord {
+
+    public static final int SOURCE_WOLFX = 0;
+    public static final int SOURCE_P2P = 1;
+
+    private static final int MAX_POOL_SIZE = 16;
+    private static final Object POOL_LOCK = new Object();
+    private static EewRecord pool;
+    private static int poolSize = 0;
+
+    private EewRecord next;
+
+    public int source;
+    public String eventId;
+    public int serial;
+    public String title;
+    public String hypocenter;
+    public double latitude;
+    public double longitude;
+    public double magnitude;
+    public int depth;
+    public String maxIntensity;
+    public boolean warning;
+    public boolean cancel;
+    public boolean isFinal;
+    public boolean training;
+    public boolean assumption;
+    public boolean replayed;   // 記録の再生で流したもの（履歴に残さず、鳴らさない）
+    public long originTime;    // UTCエポックミリ秒
+    public long announcedTime; // UTCエポックミリ秒
+    public long receivedAt;    // 端末で受信した時刻（エポックミリ秒）
+
+    // 遅延計測用（LatencyMetrics）: 受信経路（EewFanIn.SOURCE_*）とソケット受信時の単調時計
+    public int feed;
+    public long receivedNanos;
+
+    // 現在地での到達予測（FeedManager が走時表から計算。不明なら 0 / NaN）
+    public double distanceKm;
+    public long pArrivalTime;
+    public long sArrivalTime;
+    // 現在地の予測計測震度（IntensityEstimator。不明なら NaN）
+    public double estimatedIntensity;
+
+    private EewRecord() {
+        clear();
+    }
+
+    // ------------------------
+    // プール
+    // ------------------------
+    public static EewRecord obtain() {
+        synchronized (POOL_LOCK) {
+            if (pool != null) {
+                EewRecord r = pool;
+                pool = r.next;
+                r.next = null;
+                poolSize--;
+                return r;
+            }
+        }
+        return new EewRecord();
+    }
+
+    public void recycle() {
+        clear();
+        synchronized (POOL_LOCK) {
+            if (poolSize < MAX_POOL_SIZE) {
+                next = pool;
+                pool = this;
+                poolSize++;
+            }
+        }
+    }
+
+    public EewRecord copy() {
+        EewRecord r = obtain();
+        r.source = source;
+        r.eventId = eventId;
+        r.serial = serial;
+        r.title = title;
+        r.hypocenter = hypocenter;
+        r.latitude = latitude;
+        r.longitude = longitude;
+        r.magnitude = magnitude;
+        r.depth = depth;
+        r.maxIntensity = maxIntensity;
+        r.warning = warning;
+        r.cancel = cancel;
+        r.isFinal = isFinal;
+        r.training = training;
+        r.assumption = assumption;
+        r.replayed = replayed;
+        r.originTime = originTime;
+        r.announcedTime = announcedTime;
+        r.receivedAt = receivedAt;
+        r.feed = feed;
+        r.receivedNanos = receivedNanos;
+        r.distanceKm = distanceKm;
+        r.pArrivalTime = pArrivalTime;
+        r.sArrivalTime = sArrivalTime;
+        r.estimatedIntensity = estimatedIntensity;
+        return r;
+    }
+
+    void clear() {
+        source = SOURCE_WOLFX;
+        eventId = null;
+        serial = 0;
+        title = null;
+        hypocenter = null;
+        latitude = Double.NaN;
+        longitude = Double.NaN;
+        magnitude = Double.NaN;
+        depth = -1;
+        maxIntensity = null;
+        warning = false;
+        cancel = false;
+        isFinal = false;
+        training = false;
+        assumption = false;
+        replayed = false;
+        originTime = 0;
+        announcedTime = 0;
+        receivedAt = 0;
+        feed = 0;
+        receivedNanos = 0;
+        distanceKm = Double.NaN;
+        pArrivalTime = 0;
+        sArrivalTime = 0;
+        estimatedIntensity = Double.NaN;
+    }
+
+    /** 現在地にS波が到達するまでの残り秒数（不明なら -1、到達済みなら 0） */
+    public long secondsUntilS(long now) {
+        if (sArrivalTime == 0) return -1;
+        return Math.max(0, (sArrivalTime - now + 999) / 1000);
+    }
+
+    // ------------------------
+    // 表示用
+    // ------------------------
+
+    /** 通知などに使う1行要約 */
+    public String summary() {
+        if (cancel) {
+            return "緊急地震速報は取り消されました";
+        }
+        StringBuilder sb = new StringBuilder(64);
+        sb.append(hypocenter != null ? hypocenter : "震源不明");
+        if (!Double.isNaN(magnitude)) {
+            sb.append(" M").append(Math.round(magnitude * 10) / 10.0);
+        }
+        if (depth >= 0) {
+            sb.append(" 深さ").append(depth).append("km");
+        }
+        if (maxIntensity != null) {
+            sb.append(" 最大震度").append(maxIntensity);
+        }
+        sb.append(" (第").append(serial).append(isFinal ? "報・最終)" : "報)");
+        return sb.toString();
+    }
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("{\"source\":").append(source == SOURCE_P2P ? "\"p2p\"" : "\"wolfx\"");
+        sb.append(",\"eventId\":");
+        JsonCursor.appendQuoted(sb, eventId);
+        sb.append(",\"serial\":").append(serial);
+        sb.append(",\"title\":");
+        JsonCursor.appendQuoted(sb, title);
+        sb.append(",\"hypocenter\":");
+        JsonCursor.appendQuoted(sb, hypocenter);
+        appendNumber(sb.append(",\"latitude\":"), latitude);
+        appendNumber(sb.append(",\"longitude\":"), longitude);
+        appendNumber(sb.append(",\"magnitude\":"), magnitude);
+        sb.append(",\"depth\":").append(depth);
+        sb.append(",\"maxIntensity\":");
+        JsonCursor.appendQuoted(sb, maxIntensity);
+        sb.append(",\"warning\":").append(warning);
+        sb.append(",\"cancel\":").append(cancel);
+        sb.append(",\"final\":").append(isFinal);
+        sb.append(",\"training\":").append(training);
+        if (replayed) sb.append(",\"replayed\":true");
+        sb.append(",\"assumption\":").append(assumption);
+        sb.append(",\"originTime\":").append(originTime);
+        sb.append(",\"announcedTime\":").append(announcedTime);
+        sb.append(",\"receivedAt\":").append(receivedAt);
+        appendNumber(sb.append(",\"distanceKm\":"), distanceKm);
+        sb.append(",\"pArrivalTime\":").append(pArrivalTime);
+        sb.append(",\"sArrivalTime\":").append(sArrivalTime);
+        appendNumber(sb.append(",\"estimatedIntensity\":"), estimatedIntensity);
+        return sb.append('}').toString();
+    }
+
+    private static void appendNumber(StringBuilder sb, double v) {
+        if (Double.isNaN(v)) {
+            sb.append("null");
+        } else {
+            sb.append(v);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.koiyure;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 受信した地震情報・緊急地震速報の追記専用ストア（SQLite / WAL）
+ * 受信スレッドはキューに積むだけで、書き込みは専用スレッドが1トランザクションにまとめて行う
+ * 読み出しは時刻の降順で、前ページ最後の (time, id) から続きを取るキーセット方式
+ */
+public class EventStore extends SQLiteOpenHelper {
+
+    private static final String TAG = "EventStore";
+    private static final String DB_NAME = "events.db";
+    private static final int DB_VERSION = 1;
+
+    public static final String SOURCE_P2P = "p2p";
+    public static final String SOURCE_WOLFX = "wolfx";
+
+    // 書き込みキューの上限（溢れた分は捨てて数える）
+    private static final int QUEUE_CAPACITY = 1024;
+    // 1トランザクションでまとめる最大件数
+    private static final int MAX_BATCH = 128;
+    // 保持件数の上限（超えたら古いものから消す）
+    private static final int MAX_ROWS = 50_000;
+    private static final int PRUNE_EVERY_BATCHES = 64;
+    private static final int MAX_PAGE_SIZE = 200;
+
+    private static EventStore instance;
+
+    public static synchronized EventStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new EventStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private final BlockingQueue<Row> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private volatile long droppedRows = 0;
+
+    private EventStore(Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+        setWriteAheadLoggingEnabled(true);
+        Thread writer = new Thread(this::writerLoop, "EventStoreWriter");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE events ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + "source TEXT NOT NULL,"
+                + "code INTEGER NOT NULL,"
+                + "event_id TEXT,"
+                + "serial INTEGER NOT NULL DEFAULT 0,"
+                + "time INTEGER NOT NULL,"
+                + "region TEXT,"
+                + "data TEXT NOT NULL)");
+        db.execSQL("CREATE INDEX idx_events_event_id ON events(event_id)");
+        db.execSQL("CREATE INDEX idx_events_time ON events(time)");
+        db.execSQL("CREATE INDEX idx_events_region ON events(region, time)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS events");
+        onCreate(db);
+    }
+
+    // ------------------------
+    // 書き込み（どのスレッドからでも可。ブロックしない）
+    // ------------------------
+    private static final class Row {
+        final String source;
+        final int code;
+        final String eventId;
+        final int serial;
+        final long time;
+        final String region;
+        final String data;
+
+        Row(String source, int code, String eventId, int serial, long time, String region, String data) {
+            this.source = source;
+            this.code = code;
+            this.eventId = eventId;
+            this.serial = serial;
+            this.time = time;
+            this.region = region;
+            this.data = data;
+        }
+    }
+
+    public void append(P2PQuakeDecoder.Message message) {
+        String eventId = message.id;
+        int serial = 0;
+        String region = null;
+        if (message instanceof P2PQuakeDecoder.Eew) {
+            EewRecord r = ((P2PQuakeDecoder.Eew) message).record;
+            eventId = r.eventId;
+            serial = r.serial;
+            region = r.hypocenter;
+        } else if (message instanceof P2PQuakeDecoder.QuakeInfo) {
+            region = ((P2PQuakeDecoder.QuakeInfo) message).hypocenter;
+        }
+        long time = message.time != 0 ? message.time : System.currentTimeMillis();
+        offer(new Row(SOURCE_P2P, message.code, eventId, serial, time, region, message.toJson()));
+    }
+
+    /** Wolfx の緊急地震速報（レコードはここでJSONにするので呼び出し後に再利用してよい） */
+    public void append(EewRecord eew) {
+        long time = eew.receivedAt != 0 ? eew.receivedAt : System.currentTimeMillis();
+        offer(new Row(SOURCE_WOLFX, 0, eew.eventId, eew.serial, time, eew.hypocenter, eew.toJson()));
+    }
+
+    public long getDroppedRows() {
+        return droppedRows;
+    }
+
+    private void offer(Row row) {
+        if (!queue.offer(row)) {
+            droppedRows++;
+        }
+    }
+
+    private void writerLoop() {
+        List<Row> batch = new ArrayList<>(MAX_BATCH);
+        int batches = 0;
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            // 書き終えるまで CPU を起こしておく（受信側の WakeLock は処理後すぐ縮むため）
+            FrameWakeLock wakeLock = FrameWakeLock.getInstance();
+            wakeLock.enter();
+            try {
+                writeBatch(batch);
+                if (++batches % PRUNE_EVERY_BATCHES == 0) {
+                    prune();
+                }
+            } catch (RuntimeException e) {
+                Log.e(TAG, "書き込み失敗: " + batch.size() + "件", e);
+            } finally {
+                wakeLock.exit();
+            }
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<Row> batch) {
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement insert = db.compileStatement(
+                "INSERT INTO events(source, code, event_id, serial, time, region, data)"
+                        + " VALUES (?, ?, ?, ?, ?, ?, ?)");
+        db.beginTransactionNonExclusive();
+        try {
+            for (Row row : batch) {
+                insert.clearBindings();
+                insert.bindString(1, row.source);
+                insert.bindLong(2, row.code);
+                if (row.eventId != null) insert.bindString(3, row.eventId);
+                insert.bindLong(4, row.serial);
+                insert.bindLong(5, row.time);
+                if (row.region != null) insert.bindString(6, row.region);
+                insert.bindString(7, row.data);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insert.close();
+        }
+    }
+
+    private void prune() {
+        getWritableDatabase().execSQL(
+                "DELETE FROM events WHERE id <= (SELECT id FROM events ORDER BY id DESC LIMIT 1 OFFSET ?)",
+                new Object[]{MAX_ROWS});
+    }
+
+    // ------------------------
+    // 読み出し（WebView・起動時の履歴表示用）
+    // ------------------------
+
+    /**
+     * 新しい順に1ページ分をJSON配列で返す
+     * @param beforeTime 前ページ最後の time（最初のページは 0）
+     * @param beforeId   前ページ最後の id（最初のページは 0）
+     * @param source     "p2p" / "wolfx"（null なら全部）
+     * @param region     震源・地域名（null なら全部）
+     * 各要素: {"id":..,"source":..,"code":..,"eventId":..,"serial":..,"time":..,"region":..,"data":{...}}
+     */
+    public String queryPage(long beforeTime, long beforeId, int limit, String source, String region) {
+        StringBuilder where = new StringBuilder();
+        List<String> args = new ArrayList<>(6);
+        if (beforeTime > 0) {
+            where.append("(time < ? OR (time = ? AND id < ?))");
+            args.add(Long.toString(beforeTime));
+            args.add(Long.toString(beforeTime));
+            args.add(Long.toString(beforeId > 0 ? beforeId : Long.MAX_VALUE));
+        }
+        if (source != null) {
+            if (where.length() > 0) where.append(" AND ");
+            where.append("source = ?");
+            args.add(source);
+        }
+        if (region != null) {
+            if (where.length() > 0) where.append(" AND ");
+            where.append("region = ?");
+            args.add(region);
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        try (Cursor c = getReadableDatabase().query("events",
+                new String[]{"id", "source", "code", "event_id", "serial", "time", "region", "data"},
+                where.length() > 0 ? where.toString() : null,
+                args.toArray(new String[0]),
+                null, null, "time DESC, id DESC", Integer.toString(pageSize))) {
+            return toJsonArray(c);
+        }
+    }
+
+    /** 同じ地震（イベントID）の全報を古い順に返す */
+    public String queryEvent(String eventId) {
+        try (Cursor c = getReadableDatabase().query("events",
+                new String[]{"id", "source", "code", "event_id", "serial", "time", "region", "data"},
+                "event_id = ?", new String[]{eventId},
+                null, null, "time ASC, id ASC", Integer.toString(MAX_PAGE_SIZE))) {
+            return toJsonArray(c);
+        }
+    }
+
+    private static String toJsonArray(Cursor c) {
+        StringBuilder sb = new StringBuilder(c.getCount() * 512 + 2);
+        sb.append('[');
+        while (c.moveToNext()) {
+            if (c.getPosition() > 0) sb.append(',');
+            sb.append("{\"id\":").append(c.getLong(0));
+            sb.append(",\"source\":");
+            JsonCursor.appendQuoted(sb, c.getString(1));
+            sb.append(",\"code\":").append(c.getInt(2));
+            sb.append(",\"eventId\":");
+            JsonCursor.appendQuoted(sb, c.isNull(3) ? null : c.getString(3));
+            sb.append(",\"serial\":").append(c.getInt(4));
+            sb.append(",\"time\":").append(c.getLong(5));
+            sb.append(",\"region\":");
+            JsonCursor.appendQuoted(sb, c.isNull(6) ? null : c.getString(6));
+            // data は保存時に生成したJSONなのでそのまま埋め込む
+            sb.append(",\"data\":").append(c.getString(7)).append('}');
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,363 @@
+package com.example.koiyure;
+
+import android.os.SystemClock;
+
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okio.ByteString;
+
+/**
+ * 1本のWebSocket接続の状態管理（接続・切断検知・再接続）
+ * 状態の変更はすべて FeedManager の接続用スケジューラ（単一スレッド）上で行う
+ * 受信フレームは OkHttp の読み取りスレッドからそのまま Callback に渡す
+ */
+public class FeedConnection {
+
+    public enum State {
+        STOPPED,    // start() 前 / stop() 後
+        CONNECTING, // ハンドシェイク中
+        OPEN,       // 接続中
+        WAITING,    // 再接続待ち
+    }
+
+    /** 各フィード固有の処理（ログ・解析など）。呼び出しは OkHttp のスレッドから */
+    public interface Callback {
+        void onOpen(Response response);
+
+        void onMessage(String text);
+
+        void onMessage(ByteString bytes);
+
+        void onClosing(int code, String reason);
+
+        void onClosed(int code, String reason);
+
+        void onFailure(Throwable t, Response response);
+    }
+
+    // 再接続の待ち時間（decorrelated jitter）
+    static final long BASE_DELAY_MILLIS = 500;
+    static final long MAX_DELAY_MILLIS = 16_000;
+    // 接続中の死活確認の間隔
+    private static final long HEALTH_CHECK_INTERVAL_MILLIS = 5_000;
+
+    private final String tag;
+    private volatile String url;
+    private final Callback callback;
+    private final ScheduledExecutorService scheduler;
+    private final Random random = new Random();
+    private final FeedHealth health;
+
+    // アプリ層の ping（フィードが対応している場合のみ）
+    private String pingText;
+    private long pingIntervalMillis;
+    private long lastPingAt = 0;
+
+    // 以下はスケジューラスレッドだけが書き換える
+    private volatile State state = State.STOPPED;
+    private volatile WebSocket webSocket;
+    // ネットワーク切替時に先に張る新しい接続（開いたら webSocket と入れ替える）
+    private volatile WebSocket standby;
+    private ScheduledFuture<?> pendingReconnect;
+    private ScheduledFuture<?> healthCheck;
+    private long lastDelay = BASE_DELAY_MILLIS;
+    private boolean networkAvailable = true;
+
+    public FeedConnection(String tag, String url, FeedHealth health, Callback callback) {
+        this.tag = tag;
+        this.url = url;
+        this.health = health;
+        this.callback = callback;
+        this.scheduler = FeedManager.getScheduler();
+    }
+
+    /** 接続中に text を intervalMillis ごとに送る（応答は Callback 側で FeedHealth.onPong に渡す） */
+    public void setPing(String text, long intervalMillis) {
+        scheduler.execute(() -> {
+            pingText = text;
+            pingIntervalMillis = intervalMillis;
+        });
+    }
+
+    public FeedHealth getHealth() {
+        return health;
+    }
+
+    /** 接続先を変える（次に接続するときから使う） */
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    // ------------------------
+    // 操作（どのスレッドからでも可）
+    // ------------------------
+    public void start() {
+        scheduler.execute(() -> {
+            if (state != State.STOPPED) return;
+            lastDelay = BASE_DELAY_MILLIS;
+            connect();
+        });
+    }
+
+    public void stop() {
+        scheduler.execute(() -> {
+            state = State.STOPPED;
+            cancelPendingReconnect();
+            stopHealthCheck();
+            health.onClosed();
+            WebSocket ws = webSocket;
+            WebSocket pending = standby;
+            webSocket = null;
+            standby = null;
+            if (ws != null) {
+                ws.close(1000, "アプリ終了");
+            }
+            if (pending != null) {
+                pending.close(1000, "アプリ終了");
+            }
+        });
+    }
+
+    /** 再接続待ちなら待たずに今すぐ接続する（ネットワーク復帰時など） */
+    public void reconnectNow() {
+        scheduler.execute(() -> {
+            if (state != State.WAITING) return;
+            cancelPendingReconnect();
+            lastDelay = BASE_DELAY_MILLIS;
+            FeedLog.d(tag, "待たずに再接続します");
+            connect();
+        });
+    }
+
+    /**
+     * ネットワークの有無を伝える
+     * オフラインの間は再接続を予約せずに待ち、オンラインに戻ったらすぐ接続する
+     */
+    public void setNetworkAvailable(boolean available) {
+        scheduler.execute(() -> {
+            networkAvailable = available;
+            if (!available) {
+                if (state == State.WAITING) {
+                    cancelPendingReconnect();
+                    FeedLog.d(tag, "オフラインのため再接続を保留します");
+                }
+                return;
+            }
+            if (state == State.WAITING) {
+                cancelPendingReconnect();
+                lastDelay = BASE_DELAY_MILLIS;
+                FeedLog.d(tag, "オンラインになったので再接続します");
+                connect();
+            }
+        });
+    }
+
+    /**
+     * 既定ネットワークが切り替わったときに接続を張り替える
+     * 新しい接続が開くまでは古い接続で受信を続ける（開けなければ古い接続のまま）
+     */
+    public void migrate() {
+        scheduler.execute(() -> {
+            if (state == State.WAITING) {
+                cancelPendingReconnect();
+                connect();
+                return;
+            }
+            if (state != State.OPEN || standby != null) return;
+            FeedLog.d(tag, "ネットワーク切替のため接続を張り替えます");
+            standby = openSocket();
+        });
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    // ------------------------
+    // 状態遷移（スケジューラスレッド）
+    // ------------------------
+    private void connect() {
+        state = State.CONNECTING;
+        webSocket = openSocket();
+    }
+
+    private WebSocket openSocket() {
+        Request request = new Request.Builder()
+                .url(url)
+                .build();
+
+        // 共有クライアントを使い、接続ごとにスレッドプールを作らない
+        return FeedManager.getHttpClient().newWebSocket(request, new WebSocketListener() {
+            @Override
+            public void onOpen(WebSocket ws, Response response) {
+                scheduler.execute(() -> onSocketOpen(ws, response));
+            }
+
+            @Override
+            public void onMessage(WebSocket ws, String text) {
+                // 張り替え中は両方から受ける（重複は後段で落とす）
+                if (ws != webSocket && ws != standby) return;
+                health.onMessage(SystemClock.elapsedRealtime());
+                // 解析〜通知が終わるまで CPU を起こしておく
+                FrameWakeLock wakeLock = FrameWakeLock.getInstance();
+                wakeLock.enter();
+                try {
+                    callback.onMessage(text);
+                } finally {
+                    wakeLock.exit();
+                }
+            }
+
+            @Override
+            public void onMessage(WebSocket ws, ByteString bytes) {
+                if (ws != webSocket && ws != standby) return;
+                health.onMessage(SystemClock.elapsedRealtime());
+                FrameWakeLock wakeLock = FrameWakeLock.getInstance();
+                wakeLock.enter();
+                try {
+                    callback.onMessage(bytes);
+                } finally {
+                    wakeLock.exit();
+                }
+            }
+
+            @Override
+            public void onClosing(WebSocket ws, int code, String reason) {
+                callback.onClosing(code, reason);
+                ws.close(1000, null);
+            }
+
+            @Override
+            public void onClosed(WebSocket ws, int code, String reason) {
+                callback.onClosed(code, reason);
+                scheduler.execute(() -> onSocketLost(ws));
+            }
+
+            @Override
+            public void onFailure(WebSocket ws, Throwable t, Response response) {
+                callback.onFailure(t, response);
+                scheduler.execute(() -> onSocketLost(ws));
+            }
+        });
+    }
+
+    /**
+     * callback.onOpen は接続・再接続で開いたとき（CONNECTING から開いたもの）だけ知らせる
+     * 張り替えで開いた接続は古い接続が受信を続けていたので、取り直しなどは要らない
+     */
+    private void onSocketOpen(WebSocket ws, Response response) {
+        if (ws == standby) {
+            // 新しいネットワークで開いたので古い接続を閉じる
+            WebSocket old = webSocket;
+            webSocket = ws;
+            standby = null;
+            if (old != null) {
+                old.close(1000, "ネットワーク切替");
+            }
+            state = State.OPEN;
+            FeedLog.d(tag, "張り替え完了");
+            return;
+        }
+        // 停止・張り直しで見捨てた接続
+        if (ws != webSocket || state != State.CONNECTING) return;
+        state = State.OPEN;
+        lastDelay = BASE_DELAY_MILLIS;
+        health.onOpen(SystemClock.elapsedRealtime());
+        startHealthCheck();
+        callback.onOpen(response);
+    }
+
+    private void onSocketLost(WebSocket ws) {
+        if (ws == standby) {
+            standby = null; // 張り替え失敗。古い接続を使い続ける
+            return;
+        }
+        if (ws != webSocket) return;
+        webSocket = null;
+        if (state == State.STOPPED) return;
+        stopHealthCheck();
+        health.onClosed();
+        if (standby != null) {
+            // 張り替え中に古い接続が切れた。新しい接続の結果を待つ
+            webSocket = standby;
+            standby = null;
+            state = State.CONNECTING;
+            return;
+        }
+        scheduleReconnect();
+    }
+
+    private void scheduleReconnect() {
+        state = State.WAITING;
+        if (!networkAvailable) {
+            FeedLog.d(tag, "オフラインのため再接続を保留します");
+            return;
+        }
+        lastDelay = nextDelay(lastDelay, random);
+        FeedLog.d(tag, "再接続を試みます " + lastDelay + "ms後");
+        pendingReconnect = scheduler.schedule(() -> {
+            pendingReconnect = null;
+            if (state == State.WAITING) {
+                connect();
+            }
+        }, lastDelay, TimeUnit.MILLISECONDS);
+    }
+
+    // ------------------------
+    // 死活確認（スケジューラスレッド）
+    // ------------------------
+    private void startHealthCheck() {
+        stopHealthCheck();
+        lastPingAt = 0;
+        healthCheck = scheduler.scheduleWithFixedDelay(this::checkHealth,
+                HEALTH_CHECK_INTERVAL_MILLIS, HEALTH_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void stopHealthCheck() {
+        if (healthCheck != null) {
+            healthCheck.cancel(false);
+            healthCheck = null;
+        }
+    }
+
+    private void checkHealth() {
+        WebSocket ws = webSocket;
+        if (state != State.OPEN || ws == null) return;
+        long now = SystemClock.elapsedRealtime();
+        if (health.isStalled(now)) {
+            // 半開きのTCPなどで受信が止まっている。切って再接続させる
+            FeedLog.w(tag, "受信が止まっているため接続し直します（最終受信 "
+                    + health.lastMessageAge(now) + "ms前）");
+            health.onStall();
+            ws.cancel(); // onFailure → 再接続
+            return;
+        }
+        if (pingText != null && now - lastPingAt >= pingIntervalMillis) {
+            lastPingAt = now;
+            if (ws.send(pingText)) {
+                health.onPingSent(now);
+            }
+        }
+    }
+
+    private void cancelPendingReconnect() {
+        if (pendingReconnect != null) {
+            pendingReconnect.cancel(false);
+            pendingReconnect = null;
+        }
+    }
+
+    /** decorrelated jitter: min(上限, [基準, 前回×3) の一様乱数) */
+    static long nextDelay(long previous, Random random) {
+        long upper = Math.max(BASE_DELAY_MILLIS + 1, previous * 3);
+        long delay = BASE_DELAY_MILLIS + (long) (random.nextDouble() * (upper - BASE_DELAY_MILLIS));
+        return Math.min(MAX_DELAY_MILLIS, delay);
+    }
+}
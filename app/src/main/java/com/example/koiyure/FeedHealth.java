@@ -0,0 +1,133 @@
+package com.example.koiyure;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 1本のフィードの接続状態の記録（開いているか・最後の受信からの経過・ping往復時間）
+ * 書き込みは受信スレッドと接続用スケジューラから、読み出しはどこからでも行う
+ * （張り替え中は新旧2本のソケットの受信スレッドから同時に onMessage が来るので、件数はアトミックに数える）
+ * 時刻はすべて単調増加の時計（SystemClock.elapsedRealtime など）のミリ秒
+ */
+public final class FeedHealth {
+
+    // RTT の平滑化係数（TCP の SRTT と同じ 1/8）
+    private static final double RTT_ALPHA = 0.125;
+
+    private final String name;
+    private final long stallTimeoutMillis;
+
+    private volatile boolean open = false;
+    private volatile long openedAt = 0;
+    private volatile long lastMessageAt = 0;
+    private volatile long lastHeartbeatAt = 0;
+    private volatile long pingSentAt = 0;
+    private volatile long lastRttMillis = -1;
+    private volatile double smoothedRttMillis = -1;
+    private final AtomicLong messageCount = new AtomicLong();
+    private final AtomicInteger stallCount = new AtomicInteger();
+    private final AtomicInteger reconnectCount = new AtomicInteger();
+
+    /**
+     * @param stallTimeoutMillis この時間何も受信しなければ停止とみなす（0 なら判定しない）
+     */
+    public FeedHealth(String name, long stallTimeoutMillis) {
+        this.name = name;
+        this.stallTimeoutMillis = stallTimeoutMillis;
+    }
+
+    // ------------------------
+    // 記録
+    // ------------------------
+    public void onOpen(long now) {
+        if (openedAt != 0) reconnectCount.incrementAndGet();
+        open = true;
+        openedAt = now;
+        pingSentAt = 0;
+    }
+
+    public void onClosed() {
+        open = false;
+    }
+
+    public void onMessage(long now) {
+        lastMessageAt = now;
+        messageCount.incrementAndGet();
+    }
+
+    public void onHeartbeat(long now) {
+        lastHeartbeatAt = now;
+    }
+
+    public void onPingSent(long now) {
+        pingSentAt = now;
+    }
+
+    public void onPong(long now) {
+        long sent = pingSentAt;
+        if (sent == 0) return;
+        pingSentAt = 0;
+        long rtt = now - sent;
+        lastRttMillis = rtt;
+        smoothedRttMillis = smoothedRttMillis < 0 ? rtt
+                : smoothedRttMillis + RTT_ALPHA * (rtt - smoothedRttMillis);
+    }
+
+    public void onStall() {
+        stallCount.incrementAndGet();
+    }
+
+    // ------------------------
+    // 判定・参照
+    // ------------------------
+    public boolean isOpen() {
+        return open;
+    }
+
+    /** 開いているのに stallTimeout より長く何も受信していない */
+    public boolean isStalled(long now) {
+        if (!open || stallTimeoutMillis <= 0) return false;
+        long last = Math.max(openedAt, lastMessageAt);
+        return now - last > stallTimeoutMillis;
+    }
+
+    /** 最後の受信からの経過ミリ秒（未受信なら -1） */
+    public long lastMessageAge(long now) {
+        return lastMessageAt == 0 ? -1 : now - lastMessageAt;
+    }
+
+    public long getLastRttMillis() {
+        return lastRttMillis;
+    }
+
+    public long getSmoothedRttMillis() {
+        return Math.round(smoothedRttMillis);
+    }
+
+    public long getMessageCount() {
+        return messageCount.get();
+    }
+
+    public int getStallCount() {
+        return stallCount.get();
+    }
+
+    public int getReconnectCount() {
+        return reconnectCount.get();
+    }
+
+    public String toJson(long now) {
+        StringBuilder sb = new StringBuilder(192);
+        sb.append("{\"name\":");
+        JsonCursor.appendQuoted(sb, name);
+        sb.append(",\"open\":").append(open);
+        sb.append(",\"lastMessageAgeMs\":").append(lastMessageAge(now));
+        sb.append(",\"lastHeartbeatAgeMs\":").append(lastHeartbeatAt == 0 ? -1 : now - lastHeartbeatAt);
+        sb.append(",\"rttMs\":").append(lastRttMillis);
+        sb.append(",\"smoothedRttMs\":").append(getSmoothedRttMillis());
+        sb.append(",\"messages\":").append(messageCount.get());
+        sb.append(",\"stalls\":").append(stallCount.get());
+        sb.append(",\"reconnects\":").append(reconnectCount.get());
+        return sb.append('}').toString();
+    }
+}
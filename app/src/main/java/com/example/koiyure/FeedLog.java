@@ -0,0 +1,228 @@
+package com.example.koiyure;
+
+import android.util.Log;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 受信スレッド用の非同期ログ
+ * 呼び出し側はリングバッファに積むだけで、logcat への書き込みは専用スレッドがまとめて行う
+ * ・満杯のときは古いものから捨てる（受信スレッドを待たせない）
+ * ・受信データ本文は書き込み時に MAX_PAYLOAD_CHARS で切り詰め、フィードごとに間引ける
+ */
+public final class FeedLog {
+
+    // android.util.Log と同じ値
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+
+    /** 書き出し先（既定は logcat） */
+    public interface Sink {
+        void write(int level, String tag, String message, Throwable t);
+    }
+
+    private static final int DEFAULT_CAPACITY = 512;
+    static final int MAX_PAYLOAD_CHARS = 200;
+
+    private static volatile FeedLog instance;
+
+    public static FeedLog get() {
+        FeedLog log = instance;
+        if (log == null) {
+            synchronized (FeedLog.class) {
+                log = instance;
+                if (log == null) {
+                    log = new FeedLog(DEFAULT_CAPACITY, DEBUG, FeedLog::writeLogcat);
+                    log.start();
+                    instance = log;
+                }
+            }
+        }
+        return log;
+    }
+
+    // ------------------------
+    // 静的な入口（受信スレッドから呼ぶ）
+    // ------------------------
+    public static void d(String tag, String message) {
+        get().enqueue(DEBUG, tag, message, null, null);
+    }
+
+    public static void i(String tag, String message) {
+        get().enqueue(INFO, tag, message, null, null);
+    }
+
+    public static void w(String tag, String message) {
+        get().enqueue(WARN, tag, message, null, null);
+    }
+
+    public static void e(String tag, String message, Throwable t) {
+        get().enqueue(ERROR, tag, message, null, t);
+    }
+
+    /**
+     * 受信データ本文を DEBUG で記録する（feed の間引き設定に従う）
+     * 本文の切り詰めは書き込みスレッドで行うので、ここでは文字列をコピーしない
+     */
+    public static void payload(String tag, String feed, String prefix, String text) {
+        FeedLog log = get();
+        if (log.minLevel > DEBUG || !log.sampler(feed).take()) return;
+        log.enqueue(DEBUG, tag, prefix, text, null);
+    }
+
+    /** feed の受信データ本文を every 件に1件だけ記録する（1 で全件、0 で記録しない） */
+    public static void setSampleRate(String feed, int every) {
+        get().sampler(feed).every = every;
+    }
+
+    public static void setMinLevel(int level) {
+        get().minLevel = level;
+    }
+
+    // ------------------------
+    // リングバッファ
+    // ------------------------
+    private final Object lock = new Object();
+    private final int[] levels;
+    private final String[] tags;
+    private final String[] messages;
+    private final String[] payloads;
+    private final Throwable[] throwables;
+    private int head = 0; // 最も古いエントリ
+    private int size = 0;
+    private long dropped = 0;
+
+    private final Sink sink;
+    private volatile int minLevel;
+    private final ConcurrentHashMap<String, Sampler> samplers = new ConcurrentHashMap<>();
+
+    FeedLog(int capacity, int minLevel, Sink sink) {
+        levels = new int[capacity];
+        tags = new String[capacity];
+        messages = new String[capacity];
+        payloads = new String[capacity];
+        throwables = new Throwable[capacity];
+        this.minLevel = minLevel;
+        this.sink = sink;
+    }
+
+    void enqueue(int level, String tag, String message, String payload, Throwable t) {
+        if (level < minLevel) return;
+        synchronized (lock) {
+            int slot;
+            if (size == levels.length) {
+                slot = head;
+                head = (head + 1) % levels.length;
+                dropped++;
+            } else {
+                slot = (head + size) % levels.length;
+                size++;
+            }
+            levels[slot] = level;
+            tags[slot] = tag;
+            messages[slot] = message;
+            payloads[slot] = payload;
+            throwables[slot] = t;
+            if (size == 1) lock.notify();
+        }
+    }
+
+    Sampler sampler(String feed) {
+        Sampler s = samplers.get(feed);
+        if (s == null) {
+            Sampler created = new Sampler();
+            s = samplers.putIfAbsent(feed, created);
+            if (s == null) s = created;
+        }
+        return s;
+    }
+
+    static final class Sampler {
+        volatile int every = 1;
+        private final AtomicLong count = new AtomicLong();
+
+        boolean take() {
+            int n = every;
+            if (n <= 0) return false;
+            return n == 1 || count.getAndIncrement() % n == 0;
+        }
+    }
+
+    // ------------------------
+    // 書き込みスレッド
+    // ------------------------
+    private void start() {
+        Thread thread = new Thread(() -> {
+            while (true) {
+                try {
+                    awaitEntries();
+                    drain();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "FeedLog");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    private void awaitEntries() throws InterruptedException {
+        synchronized (lock) {
+            while (size == 0) {
+                lock.wait();
+            }
+        }
+    }
+
+    /** 溜まっている分を書き出す（書き出した件数を返す） */
+    int drain() {
+        int written = 0;
+        while (true) {
+            int level;
+            String tag;
+            String message;
+            String payload;
+            Throwable t;
+            long lost;
+            synchronized (lock) {
+                if (size == 0) break;
+                level = levels[head];
+                tag = tags[head];
+                message = messages[head];
+                payload = payloads[head];
+                t = throwables[head];
+                tags[head] = null;
+                messages[head] = null;
+                payloads[head] = null;
+                throwables[head] = null;
+                head = (head + 1) % levels.length;
+                size--;
+                lost = dropped;
+                dropped = 0;
+            }
+            if (lost > 0) {
+                sink.write(WARN, "FeedLog", "ログが溢れたため " + lost + " 件を破棄しました", null);
+            }
+            sink.write(level, tag, payload == null ? message : message + truncate(payload), t);
+            written++;
+        }
+        return written;
+    }
+
+    static String truncate(String text) {
+        if (text.length() <= MAX_PAYLOAD_CHARS) return text;
+        return text.substring(0, MAX_PAYLOAD_CHARS) + "…（全" + text.length() + "文字）";
+    }
+
+    private static void writeLogcat(int level, String tag, String message, Throwable t) {
+        if (t != null) {
+            Log.println(level, tag, message + '\n' + Log.getStackTraceString(t));
+        } else {
+            Log.println(level, tag, message);
+        }
+    }
+}
@@ -0,0 +1,520 @@
+package com.example.koiyure;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * プロセス内の上流WebSocket（P2P地震情報 / Wolfx）を一元管理する
+ * 接続の開始・終了はEarthquakeServiceだけが行い、Activityはサービス経由で購読する
+ */
+public class FeedManager implements NetworkMonitor.Listener {
+
+    private static final String TAG = "FeedManager";
+
+    // WebSocketの生存確認間隔
+    private static final long PING_INTERVAL_SECONDS = 20;
+
+    // ------------------------
+    // 共有OkHttpClient（スレッドプール・コネクションプールを1つにまとめる）
+    // ------------------------
+    private static final OkHttpClient HTTP_CLIENT = new OkHttpClient.Builder()
+            .pingInterval(PING_INTERVAL_SECONDS, TimeUnit.SECONDS)
+            .connectTimeout(10, TimeUnit.SECONDS)
+            .readTimeout(0, TimeUnit.MILLISECONDS) // WebSocketは無期限
+            .retryOnConnectionFailure(true)
+            .build();
+
+    // ------------------------
+    // 接続状態の管理専用スレッド（UIスレッドの負荷に左右されないようにする）
+    // ------------------------
+    private static final ScheduledExecutorService SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "FeedScheduler"));
+
+    private static FeedManager instance;
+
+    public static OkHttpClient getHttpClient() {
+        return HTTP_CLIENT;
+    }
+
+    public static ScheduledExecutorService getScheduler() {
+        return SCHEDULER;
+    }
+
+    public static synchronized FeedManager getInstance() {
+        if (instance == null) {
+            instance = new FeedManager();
+        }
+        return instance;
+    }
+
+    private final P2PWebsocket p2pWebsocket = new P2PWebsocket();
+    private final WolfxWebsocket wolfxWebsocket = new WolfxWebsocket();
+    // 予備のWolfx接続（setWolfxBackupUrl で設定したときだけ）
+    private WolfxWebsocket wolfxBackup;
+
+    private final CopyOnWriteArrayList<P2PWebsocket.Listener> p2pListeners = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<WolfxWebsocket.Listener> wolfxListeners = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<IntensityEstimator.Listener> intensityListeners = new CopyOnWriteArrayList<>();
+
+    // Wolfx・P2P(556)・予備Wolfxの速報を1本にまとめ、同じ報は最初に届いたものだけ通す
+    private static final int DEDUP_CAPACITY = 64;
+    private final EewFanIn eewFanIn = new EewFanIn(DEDUP_CAPACITY);
+    private final LatencyMetrics metrics = LatencyMetrics.getInstance();
+
+    // 記録の再生（再生中でなければ null）
+    private FeedReplayer replayer;
+
+    private boolean p2pStarted = false;
+    private boolean wolfxStarted = false;
+
+    // 到達予測・地点照合（テーブルはサービスが非同期で読み込んでから設定する）
+    private volatile TravelTimeTable travelTimeTable;
+    private volatile SpatialIndex stationIndex;
+    private volatile SpatialIndex areaIndex;
+    private volatile double userLatitude = Double.NaN;
+    private volatile double userLongitude = Double.NaN;
+
+    // 全観測点の予測震度（受信スレッドを止めないよう専用スレッドで計算する）
+    private final ExecutorService intensityExecutor = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, "IntensityEstimator"));
+    private final AtomicReference<EewRecord> pendingEstimate = new AtomicReference<>();
+    private volatile IntensityEstimator intensityEstimator;
+
+    private FeedManager() {
+        p2pWebsocket.setListener(message -> {
+            if (message instanceof P2PQuakeDecoder.Eew) {
+                EewRecord record = ((P2PQuakeDecoder.Eew) message).record;
+                if (message.backfilled) {
+                    // 取り直した報は重複排除の枠を取らない（後から届くライブの同じ報を鳴らせるように）
+                    if (!eewFanIn.isNew(record)) return;
+                    record.feed = EewFanIn.SOURCE_P2P;
+                    estimateArrival(record);
+                } else if (!admitEew(record, EewFanIn.SOURCE_P2P)) {
+                    return;
+                }
+            } else if (message instanceof P2PQuakeDecoder.QuakeInfo) {
+                locatePoints((P2PQuakeDecoder.QuakeInfo) message);
+            }
+            for (P2PWebsocket.Listener l : p2pListeners) {
+                l.onP2PMessageReceived(message);
+            }
+        });
+        wolfxWebsocket.setListener(eew -> dispatchWolfx(eew, EewFanIn.SOURCE_WOLFX));
+    }
+
+    private void dispatchWolfx(EewRecord eew, int source) {
+        if (!admitEew(eew, source)) return;
+        for (WolfxWebsocket.Listener l : wolfxListeners) {
+            l.onWolfxEewReceived(eew);
+        }
+    }
+
+    /** 経路をまたいで最初に届いた報だけを通し、到達予測まで済ませる（各段階の遅延も記録する） */
+    private boolean admitEew(EewRecord eew, int source) {
+        eew.feed = source;
+        metrics.markNetwork(eew);
+        metrics.mark(eew, LatencyMetrics.STAGE_DECODE);
+        boolean first = eewFanIn.accept(eew, source);
+        metrics.mark(eew, LatencyMetrics.STAGE_DEDUP);
+        if (!first) return false;
+        estimateArrival(eew);
+        metrics.mark(eew, LatencyMetrics.STAGE_ARRIVAL);
+        requestIntensityEstimate(eew);
+        return true;
+    }
+
+    /**
+     * 予備のWolfx接続先を設定する（null で使わない）
+     * 本接続と同じ報を受けた場合は先に届いた方だけを通す
+     */
+    public synchronized void setWolfxBackupUrl(String url) {
+        if (wolfxBackup != null) {
+            wolfxBackup.stop();
+            wolfxBackup = null;
+        }
+        if (url == null || url.isEmpty()) return;
+        wolfxBackup = new WolfxWebsocket("wolfx2", url);
+        wolfxBackup.setListener(eew -> dispatchWolfx(eew, EewFanIn.SOURCE_WOLFX_BACKUP));
+        if (wolfxStarted) {
+            wolfxBackup.start();
+        }
+    }
+
+    /**
+     * 接続先を変える（null なら既定。試験用のローカルサーバーなどに向ける）
+     * 接続中のソケットはそのままで、次の接続から使う
+     */
+    public void setFeedUrls(String p2pUrl, String wolfxUrl) {
+        p2pWebsocket.setUrl(p2pUrl);
+        wolfxWebsocket.setUrl(wolfxUrl);
+    }
+
+    // ------------------------
+    // 記録の再生（負荷試験用）
+    // ------------------------
+
+    /**
+     * 記録したフレームを受信時と同じ経路（デコード→重複排除→各リスナー）に流す
+     * 流した報には replayed を付ける（履歴・報知音・取り直しの起点には入れない）
+     * @param speed 1 で記録どおりの間隔、10 で10倍速、FeedReplayer.MAX_SPEED で待たずに流す
+     */
+    public synchronized void startReplay(FeedRecording recording, double speed, FeedReplayer.Callback callback) {
+        stopReplay();
+        FeedReplayer r = new FeedReplayer(recording, speed, (feed, payload) -> {
+            if (FeedRecording.FEED_P2P.equals(feed)) {
+                p2pWebsocket.inject(payload);
+            } else if (FeedRecording.FEED_WOLFX.equals(feed)) {
+                wolfxWebsocket.inject(payload);
+            }
+        });
+        replayer = r;
+        r.start((sent, elapsed) -> {
+            synchronized (this) {
+                if (replayer == r) replayer = null;
+            }
+            Log.d(TAG, "記録の再生終了: " + sent + "件 " + elapsed + "ms");
+            if (callback != null) callback.onFinished(sent, elapsed);
+        });
+    }
+
+    public synchronized void stopReplay() {
+        if (replayer != null) {
+            replayer.stop();
+            replayer = null;
+        }
+    }
+
+    public synchronized boolean isReplaying() {
+        return replayer != null;
+    }
+
+    // ------------------------
+    // 到達予測
+    // ------------------------
+    public void setAssetTables(AssetTables tables) {
+        stationIndex = new SpatialIndex(tables.intensityStations);
+        areaIndex = new SpatialIndex(tables.epspAreas);
+        intensityEstimator = new IntensityEstimator(tables.intensityStations);
+        travelTimeTable = tables.travelTimes;
+    }
+
+    public TravelTimeTable getTravelTimeTable() {
+        return travelTimeTable;
+    }
+
+    public SpatialIndex getStationIndex() {
+        return stationIndex;
+    }
+
+    public void setUserLocation(double latitude, double longitude) {
+        userLatitude = latitude;
+        userLongitude = longitude;
+    }
+
+    /** 現在地での P/S 波到達時刻と予測震度を eew に書き込む（走時表・現在地・震源が揃わなければ何もしない） */
+    private void estimateArrival(EewRecord eew) {
+        TravelTimeTable table = travelTimeTable;
+        double lat = userLatitude;
+        double lon = userLongitude;
+        if (!Double.isNaN(lat) && !Double.isNaN(lon)) {
+            eew.estimatedIntensity = IntensityEstimator.estimateAt(eew, lat, lon);
+        }
+        if (table == null || Double.isNaN(lat) || Double.isNaN(lon) || eew.cancel
+                || eew.originTime == 0 || Double.isNaN(eew.latitude) || Double.isNaN(eew.longitude)) {
+            return;
+        }
+        double distance = TravelTimeTable.distanceKm(eew.latitude, eew.longitude, lat, lon);
+        int depth = Math.max(eew.depth, 0);
+        eew.distanceKm = distance;
+        eew.pArrivalTime = eew.originTime + Math.round(table.pTime(depth, distance) * 1000);
+        eew.sArrivalTime = eew.originTime + Math.round(table.sTime(depth, distance) * 1000);
+    }
+
+    // ------------------------
+    // 全観測点の予測震度
+    // ------------------------
+
+    /**
+     * 推定スレッドに計算を依頼する
+     * 計算中に次の報が来たら古い報は捨て、最新の報だけを計算する
+     */
+    private void requestIntensityEstimate(EewRecord eew) {
+        if (intensityEstimator == null || intensityListeners.isEmpty()) return;
+        EewRecord previous = pendingEstimate.getAndSet(eew.copy());
+        if (previous != null) {
+            previous.recycle();
+            return; // 実行待ちのタスクが最新の報を拾う
+        }
+        intensityExecutor.execute(this::runIntensityEstimate);
+    }
+
+    private void runIntensityEstimate() {
+        EewRecord eew = pendingEstimate.getAndSet(null);
+        if (eew == null) return;
+        try {
+            IntensityEstimator estimator = intensityEstimator;
+            if (estimator.estimate(eew)) {
+                for (IntensityEstimator.Listener l : intensityListeners) {
+                    l.onIntensityEstimated(eew, estimator);
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "予測震度の計算に失敗", e);
+        } finally {
+            eew.recycle();
+        }
+    }
+
+    // 現在地の震度として採用する観測点・地域までの距離
+    private static final double USER_POINT_RADIUS_KM = 30;
+
+    /** 551 の各震度観測点・地域に座標を付け、現在地に最も近い地点の震度を求める */
+    private void locatePoints(P2PQuakeDecoder.QuakeInfo q) {
+        SpatialIndex stations = stationIndex;
+        SpatialIndex areas = areaIndex;
+        if (stations == null || areas == null) return;
+
+        int n = q.pointAddrs.length;
+        q.pointLatitudes = new float[n];
+        q.pointLongitudes = new float[n];
+        double lat = userLatitude;
+        double lon = userLongitude;
+        double nearest = USER_POINT_RADIUS_KM;
+        for (int i = 0; i < n; i++) {
+            SpatialIndex index = stations;
+            int found = stations.indexOfName(q.pointAddrs[i]);
+            if (found < 0) {
+                // 地域単位（"石川県能登" → "石川能登"）
+                index = areas;
+                found = areas.indexOfName(shortAreaName(q.pointPrefs[i], q.pointAddrs[i]));
+            }
+            if (found < 0) {
+                q.pointLatitudes[i] = Float.NaN;
+                q.pointLongitudes[i] = Float.NaN;
+                continue;
+            }
+            q.pointLatitudes[i] = index.getTable().latitude(found);
+            q.pointLongitudes[i] = index.getTable().longitude(found);
+            if (!Double.isNaN(lat) && !Double.isNaN(lon)) {
+                double d = index.distanceKm(found, lat, lon);
+                if (d <= nearest) {
+                    nearest = d;
+                    q.userScale = q.pointScales[i];
+                }
+            }
+        }
+    }
+
+    private static String shortAreaName(String pref, String addr) {
+        if (pref == null || addr == null || !addr.startsWith(pref)) return addr;
+        if (pref.endsWith("県") || pref.endsWith("府") || pref.endsWith("都")) {
+            return pref.substring(0, pref.length() - 1) + addr.substring(pref.length());
+        }
+        return addr;
+    }
+
+    // ------------------------
+    // 購読
+    // ------------------------
+    public void addP2PListener(P2PWebsocket.Listener listener) {
+        p2pListeners.addIfAbsent(listener);
+    }
+
+    public void removeP2PListener(P2PWebsocket.Listener listener) {
+        p2pListeners.remove(listener);
+    }
+
+    public void addWolfxListener(WolfxWebsocket.Listener listener) {
+        wolfxListeners.addIfAbsent(listener);
+    }
+
+    public void removeWolfxListener(WolfxWebsocket.Listener listener) {
+        wolfxListeners.remove(listener);
+    }
+
+    public void addIntensityListener(IntensityEstimator.Listener listener) {
+        intensityListeners.addIfAbsent(listener);
+    }
+
+    public void removeIntensityListener(IntensityEstimator.Listener listener) {
+        intensityListeners.remove(listener);
+    }
+
+    // ------------------------
+    // 接続制御（二重接続しないよう冪等にする）
+    // ------------------------
+    public synchronized void startP2P() {
+        if (p2pStarted) return;
+        p2pStarted = true;
+        Log.d(TAG, "P2P接続開始");
+        p2pWebsocket.start();
+    }
+
+    public synchronized void stopP2P() {
+        if (!p2pStarted) return;
+        p2pStarted = false;
+        Log.d(TAG, "P2P接続終了");
+        p2pWebsocket.stop();
+    }
+
+    public synchronized void startWolfx() {
+        if (wolfxStarted) return;
+        wolfxStarted = true;
+        Log.d(TAG, "Wolfx接続開始");
+        wolfxWebsocket.start();
+        if (wolfxBackup != null) {
+            wolfxBackup.start();
+        }
+    }
+
+    public synchronized void stopWolfx() {
+        if (!wolfxStarted) return;
+        wolfxStarted = false;
+        Log.d(TAG, "Wolfx接続終了");
+        wolfxWebsocket.stop();
+        if (wolfxBackup != null) {
+            wolfxBackup.stop();
+        }
+    }
+
+    public void startAll() {
+        startP2P();
+        startWolfx();
+    }
+
+    public void stopAll() {
+        stopP2P();
+        stopWolfx();
+    }
+
+    // ------------------------
+    // ネットワーク状態（NetworkMonitor から）
+    // ------------------------
+    @Override
+    public void onOnline() {
+        setNetworkAvailable(true);
+    }
+
+    @Override
+    public void onOffline() {
+        setNetworkAvailable(false);
+    }
+
+    private synchronized void setNetworkAvailable(boolean available) {
+        p2pWebsocket.setNetworkAvailable(available);
+        wolfxWebsocket.setNetworkAvailable(available);
+        if (wolfxBackup != null) {
+            wolfxBackup.setNetworkAvailable(available);
+        }
+    }
+
+    @Override
+    public synchronized void onHandover() {
+        p2pWebsocket.migrate();
+        wolfxWebsocket.migrate();
+        if (wolfxBackup != null) {
+            wolfxBackup.migrate();
+        }
+    }
+
+    public boolean isP2PConnected() {
+        return p2pWebsocket.isConnected();
+    }
+
+    /** 本接続か予備のどちらかでWolfxを受信できる */
+    public synchronized boolean isWolfxConnected() {
+        return wolfxWebsocket.isConnected() || (wolfxBackup != null && wolfxBackup.isConnected());
+    }
+
+    public FeedHealth getP2PHealth() {
+        return p2pWebsocket.getHealth();
+    }
+
+    public FeedHealth getWolfxHealth() {
+        return wolfxWebsocket.getHealth();
+    }
+
+    public EewFanIn getEewFanIn() {
+        return eewFanIn;
+    }
+
+    // ------------------------
+    // 見張り（Watchdog から）
+    // ------------------------
+
+    /** 動かしているフィードの接続状態 */
+    public synchronized List<FeedHealth> getActiveHealths() {
+        List<FeedHealth> healths = new ArrayList<>(3);
+        if (p2pStarted) healths.add(p2pWebsocket.getHealth());
+        if (wolfxStarted) {
+            healths.add(wolfxWebsocket.getHealth());
+            if (wolfxBackup != null) healths.add(wolfxBackup.getHealth());
+        }
+        return healths;
+    }
+
+    /** 各フィードの状態と最後の受信時刻を ServiceLiveness に書く（サービスの心拍から） */
+    public synchronized void writeLiveness(ServiceLiveness liveness, long wallNow, long now) {
+        writeFeed(liveness, EewFanIn.SOURCE_P2P, p2pStarted, p2pWebsocket.getHealth(), wallNow, now);
+        writeFeed(liveness, EewFanIn.SOURCE_WOLFX, wolfxStarted, wolfxWebsocket.getHealth(), wallNow, now);
+        writeFeed(liveness, EewFanIn.SOURCE_WOLFX_BACKUP, wolfxStarted && wolfxBackup != null,
+                wolfxBackup != null ? wolfxBackup.getHealth() : null, wallNow, now);
+    }
+
+    private static void writeFeed(ServiceLiveness liveness, int feed, boolean started, FeedHealth health,
+                                  long wallNow, long now) {
+        int state;
+        if (!started) {
+            state = ServiceLiveness.STATE_STOPPED;
+        } else if (!health.isOpen()) {
+            state = ServiceLiveness.STATE_DOWN;
+        } else if (health.isStalled(now)) {
+            state = ServiceLiveness.STATE_STALLED;
+        } else {
+            state = ServiceLiveness.STATE_OPEN;
+        }
+        long age = health != null ? health.lastMessageAge(now) : -1;
+        liveness.setFeed(feed, state, age < 0 ? 0 : wallNow - age);
+    }
+
+    /** 切れている接続は待たずに張り直し、開いたまま止まっている接続は張り替える */
+    public synchronized void recover(long now) {
+        if (p2pStarted) recover(p2pWebsocket.getHealth(), p2pWebsocket::reconnectNow, p2pWebsocket::migrate, now);
+        if (wolfxStarted) {
+            recover(wolfxWebsocket.getHealth(), wolfxWebsocket::reconnectNow, wolfxWebsocket::migrate, now);
+            if (wolfxBackup != null) {
+                recover(wolfxBackup.getHealth(), wolfxBackup::reconnectNow, wolfxBackup::migrate, now);
+            }
+        }
+    }
+
+    private static void recover(FeedHealth health, Runnable reconnect, Runnable migrate, long now) {
+        if (!health.isOpen()) {
+            reconnect.run();
+        } else if (health.isStalled(now)) {
+            migrate.run();
+        }
+    }
+
+    /** 各フィードの接続状態と速報の経路別統計（{"p2p":{...},"wolfx":{...},["wolfx2":{...},]"sources":{...}}） */
+    public synchronized String healthJson(long now) {
+        StringBuilder sb = new StringBuilder(768);
+        sb.append("{\"p2p\":").append(p2pWebsocket.getHealth().toJson(now));
+        sb.append(",\"wolfx\":").append(wolfxWebsocket.getHealth().toJson(now));
+        if (wolfxBackup != null) {
+            sb.append(",\"wolfx2\":").append(wolfxBackup.getHealth().toJson(now));
+        }
+        sb.append(",\"sources\":").append(eewFanIn.toJson());
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.koiyure;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 受信フレームの記録（再生用）
+ * 1行1フレームのタブ区切り: 記録開始からのミリ秒 TAB フィード名（p2p / wolfx） TAB 本文
+ * 空行と # で始まる行は読み飛ばす。本文は JSON なので生のタブ・改行を含まない
+ */
+public final class FeedRecording {
+
+    public static final String FEED_P2P = "p2p";
+    public static final String FEED_WOLFX = "wolfx";
+
+    private final long[] offsets;
+    private final String[] feeds;
+    private final String[] payloads;
+
+    private FeedRecording(long[] offsets, String[] feeds, String[] payloads) {
+        this.offsets = offsets;
+        this.feeds = feeds;
+        this.payloads = payloads;
+    }
+
+    public static FeedRecording parse(InputStream in) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.charAt(0) == '#') continue;
+                lines.add(line);
+            }
+        }
+        int n = lines.size();
+        long[] offsets = new long[n];
+        String[] feeds = new String[n];
+        String[] payloads = new String[n];
+        long previous = 0;
+        for (int i = 0; i < n; i++) {
+            String line = lines.get(i);
+            int tab1 = line.indexOf('\t');
+            int tab2 = tab1 < 0 ? -1 : line.indexOf('\t', tab1 + 1);
+            if (tab2 < 0) {
+                throw new IOException("記録の形式が不正です（" + (i + 1) + "件目）");
+            }
+            long offset;
+            try {
+                offset = Long.parseLong(line.substring(0, tab1).trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("時刻が不正です（" + (i + 1) + "件目）", e);
+            }
+            // 時刻が戻る行は直前と同時刻として扱う（記録の順序どおりに流す）
+            previous = Math.max(previous, offset);
+            offsets[i] = previous;
+            feeds[i] = line.substring(tab1 + 1, tab2);
+            payloads[i] = line.substring(tab2 + 1);
+        }
+        return new FeedRecording(offsets, feeds, payloads);
+    }
+
+    /** 記録1行分を書く（FeedRecording.parse で読める形） */
+    public static void appendLine(StringBuilder sb, long offsetMillis, String feed, String payload) {
+        sb.append(offsetMillis).append('\t').append(feed).append('\t').append(payload).append('\n');
+    }
+
+    public int size() {
+        return offsets.length;
+    }
+
+    public long offsetMillis(int i) {
+        return offsets[i];
+    }
+
+    public String feed(int i) {
+        return feeds[i];
+    }
+
+    public String payload(int i) {
+        return payloads[i];
+    }
+
+    /** 記録全体の長さ（ミリ秒） */
+    public long durationMillis() {
+        return offsets.length == 0 ? 0 : offsets[offsets.length - 1];
+    }
+}
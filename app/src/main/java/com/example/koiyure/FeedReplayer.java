@@ -0,0 +1,78 @@
+package com.example.koiyure;
+
+/**
+ * 記録したフレームを元の間隔（の speed 倍の速さ）で Target に流す
+ * speed が 0 以下なら待たずに最速で流す。再生は専用スレッドで行う
+ */
+public final class FeedReplayer {
+
+    public static final double MAX_SPEED = 0;
+
+    /** フレームの受け取り先（呼び出しは再生スレッドから） */
+    public interface Target {
+        void onFrame(String feed, String payload);
+    }
+
+    /** 再生が終わった（最後まで流した / stop された）ときに呼ばれる */
+    public interface Callback {
+        void onFinished(int framesSent, long elapsedMillis);
+    }
+
+    private final FeedRecording recording;
+    private final double speed;
+    private final Target target;
+    private volatile boolean stopped = false;
+    private volatile int framesSent = 0;
+    private Thread thread;
+
+    public FeedReplayer(FeedRecording recording, double speed, Target target) {
+        this.recording = recording;
+        this.speed = speed;
+        this.target = target;
+    }
+
+    public synchronized void start(Callback callback) {
+        if (thread != null) return;
+        thread = new Thread(() -> {
+            long start = System.nanoTime();
+            run();
+            if (callback != null) {
+                callback.onFinished(framesSent, (System.nanoTime() - start) / 1_000_000);
+            }
+        }, "FeedReplayer");
+        thread.start();
+    }
+
+    public void stop() {
+        stopped = true;
+        Thread t;
+        synchronized (this) {
+            t = thread;
+        }
+        if (t != null) t.interrupt();
+    }
+
+    /** 呼び出しスレッドで最後まで再生する（start を使わない場合） */
+    public void run() {
+        long start = System.nanoTime();
+        for (int i = 0; i < recording.size() && !stopped; i++) {
+            if (speed > 0) {
+                long due = start + (long) (recording.offsetMillis(i) * 1_000_000L / speed);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    try {
+                        Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            target.onFrame(recording.feed(i), recording.payload(i));
+            framesSent++;
+        }
+    }
+
+    public int getFramesSent() {
+        return framesSent;
+    }
+}
@@ -8,12 +8,23 @@ import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
+import android.os.Binder;
 import android.os.Build;
 import android.os.IBinder;
 import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
 import android.provider.Settings;
+import android.util.Log;
 import androidx.core.app.NotificationCompat;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
 public class ForegroundManager {
 
     private Context context;
@@ -35,13 +46,15 @@ public class ForegroundManager {
     }
 
     public void stop() {
+        // 利用者が止めたときは見張りに起こし直させない
+        new Watchdog(context).stop();
         Intent serviceIntent = new Intent(context, EarthquakeService.class);
         context.stopService(serviceIntent);
     }
 
+    /** このプロセスでサービスが動いているか（状態ファイルの稼働フラグ・プロセスID・心拍で判定） */
     public boolean isRunning() {
-        // ServiceManagerで確認する方法もあるが、簡易的にStaticフラグを使用
-        return EarthquakeService.isRunning;
+        return ServiceLiveness.get(context).read(Process.myPid(), SystemClock.uptimeMillis()).alive;
     }
 
     private void createNotificationChannel() {
@@ -79,39 +92,116 @@ public class ForegroundManager {
     // ========================
     public static class EarthquakeService extends Service {
 
-        public static boolean isRunning = false;
-        private PowerManager.WakeLock wakeLock;
-        private P2PWebsocket p2pWebsocket;
-        private WolfxWebsocket wolfxWebsocket;
+        private static final String TAG = "EarthquakeService";
+
+        // 稼働状態の心拍（フィードの状態もこの間隔で書く）
+        private static final long HEARTBEAT_SECONDS = 30;
+        private ServiceLiveness liveness;
+        private ScheduledFuture<?> heartbeat;
+        private final IBinder binder = new LocalBinder();
+        private FeedManager feedManager;
+        private EventStore eventStore;
+        private AlertNotifier alertNotifier;
+        // 記録の再生で流した報は履歴に残さない（通知の間引きを確かめられるよう通知は鳴らさずに出す）
+        private final P2PWebsocket.Listener p2pListener = message -> {
+            if (!message.replayed) {
+                liveness.markEvent(System.currentTimeMillis());
+                eventStore.append(message);
+            }
+            alertNotifier.notifyMessage(message);
+        };
+        private final WolfxWebsocket.Listener wolfxListener = eew -> {
+            if (!eew.replayed) {
+                liveness.markEvent(System.currentTimeMillis());
+                eventStore.append(eew);
+            }
+            alertNotifier.notifyEew(eew);
+        };
+
+        // オフライン中は再接続を止め、復帰・切替時はすぐ接続し直す
+        private NetworkMonitor networkMonitor;
+        // 端末の位置情報から現在地を更新する（権限があるときだけ）
+        private LocationTracker locationTracker;
 
         @Override
         public void onCreate() {
             super.onCreate();
-            isRunning = true;
+            // 稼働中と書くのはフォアグラウンド化してから（bind だけで作られたときは書かない）
+            liveness = ServiceLiveness.get(this);
 
-            // WakeLockで画面OFF時も動作継続
+            // 待ち受け中はソケットとフォアグラウンドサービスに任せ、WakeLock は受信処理の間だけ時間制限付きで取る
             PowerManager pm = (PowerManager) getSystemService(Context.POWER_SERVICE);
             if (pm != null) {
-                wakeLock = pm.newWakeLock(
+                PowerManager.WakeLock wakeLock = pm.newWakeLock(
                         PowerManager.PARTIAL_WAKE_LOCK,
-                        "EarthquakeApp:WakeLock"
+                        "EarthquakeApp:Frame"
                 );
-                wakeLock.acquire();
+                wakeLock.setReferenceCounted(false);
+                FrameWakeLock.getInstance().setLock(new FrameWakeLock.Lock() {
+                    @Override
+                    public void acquire(long timeoutMillis) {
+                        wakeLock.acquire(timeoutMillis);
+                    }
+
+                    @Override
+                    public void release() {
+                        if (wakeLock.isHeld()) {
+                            wakeLock.release();
+                        }
+                    }
+                });
             }
 
-            // WebSocket接続開始
-            p2pWebsocket = new P2PWebsocket();
-            p2pWebsocket.setListener(message -> {
-                // サービス内での処理（通知送信など）
-                sendNotification("P2P地震情報", message);
-            });
-            p2pWebsocket.start();
+            // 受信履歴（書き込みは専用スレッドでまとめて行う）
+            eventStore = EventStore.getInstance(this);
+            // 地震情報の通知（雛形と報知音はここで用意しておき、初報では文面を埋めて鳴らすだけにする）
+            alertNotifier = new AlertNotifier(this);
 
-            wolfxWebsocket = new WolfxWebsocket();
-            wolfxWebsocket.setListener(message -> {
-                sendNotification("Wolfx", message);
-            });
-            wolfxWebsocket.start();
+            // ソケットを持つのはこのサービスだけ（Activityはbindして購読する）
+            feedManager = FeedManager.getInstance();
+            feedManager.addP2PListener(p2pListener);
+            feedManager.addWolfxListener(wolfxListener);
+            feedManager.setWolfxBackupUrl(getString(R.string.wolfx_backup_url));
+            feedManager.setFeedUrls(emptyToNull(getString(R.string.p2p_url)),
+                    emptyToNull(getString(R.string.wolfx_url)));
+
+            // 到達予測の準備
+            UserLocation location = new UserLocation(this);
+            if (location.isSet()) {
+                feedManager.setUserLocation(location.getLatitude(), location.getLongitude());
+            }
+            locationTracker = new LocationTracker(this, feedManager);
+            locationTracker.start();
+            loadAssetTables();
+
+            networkMonitor = new NetworkMonitor(this, feedManager);
+            networkMonitor.start();
+
+            heartbeat = FeedManager.getScheduler().scheduleWithFixedDelay(
+                    this::writeHeartbeat, 0, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+        }
+
+        private void writeHeartbeat() {
+            long wallNow = System.currentTimeMillis();
+            feedManager.writeLiveness(liveness, wallNow, SystemClock.elapsedRealtime());
+            liveness.heartbeat(wallNow, SystemClock.uptimeMillis());
+        }
+
+        private static String emptyToNull(String s) {
+            return s == null || s.isEmpty() ? null : s;
+        }
+
+        private void loadAssetTables() {
+            if (feedManager.getTravelTimeTable() != null) return;
+            new Thread(() -> {
+                try {
+                    // 2回目以降はバイナリキャッシュをメモリマップするだけ
+                    AssetTables tables = AssetCache.load(getApplicationContext());
+                    feedManager.setAssetTables(tables);
+                } catch (IOException e) {
+                    Log.e(TAG, "アセット読み込み失敗: " + e.getMessage(), e);
+                }
+            }, "AssetLoader").start();
         }
 
         @Override
@@ -119,6 +209,17 @@ public class ForegroundManager {
             // 通知を表示してフォアグラウンド化
             Notification notification = createNotification();
             startForeground(NOTIFICATION_ID, notification);
+            // 開始の指示は何度も来るので、稼働中でないときだけ開始を記録する
+            if (!liveness.read(Process.myPid(), SystemClock.uptimeMillis()).alive) {
+                liveness.markStarted(Process.myPid(), System.currentTimeMillis(), SystemClock.uptimeMillis());
+            }
+
+            // WebSocket接続開始（既に接続済みなら何もしない）
+            feedManager.startAll();
+
+            // サービスとフィードの見張り（止まっていたら起こし、接続が死んでいたら張り直す）
+            // 有効にするのは利用者の操作だけ。ここでは有効なら今の間隔でアラームを掛け直す
+            new Watchdog(this).ensureScheduled();
 
             // サービスが強制終了されても自動再起動
             return START_STICKY;
@@ -127,23 +228,121 @@ public class ForegroundManager {
         @Override
         public void onDestroy() {
             super.onDestroy();
-            isRunning = false;
+            if (heartbeat != null) {
+                heartbeat.cancel(false);
+            }
+            liveness.markStopped(System.currentTimeMillis());
 
-            if (wakeLock != null && wakeLock.isHeld()) {
-                wakeLock.release();
+            if (networkMonitor != null) {
+                networkMonitor.stop();
+            }
+            if (locationTracker != null) {
+                locationTracker.stop();
             }
 
-            if (p2pWebsocket != null) {
-                p2pWebsocket.stop();
+            if (feedManager != null) {
+                feedManager.removeP2PListener(p2pListener);
+                feedManager.removeWolfxListener(wolfxListener);
+                feedManager.stopAll();
             }
-            if (wolfxWebsocket != null) {
-                wolfxWebsocket.stop();
+
+            if (alertNotifier != null) {
+                alertNotifier.close();
             }
+            FrameWakeLock.getInstance().setLock(null);
         }
 
         @Override
         public IBinder onBind(Intent intent) {
-            return null;
+            return binder;
+        }
+
+        // ------------------------
+        // Activityからの操作（同一プロセス内のbind）
+        // ------------------------
+        public class LocalBinder extends Binder {
+            public EarthquakeService getService() {
+                return EarthquakeService.this;
+            }
+        }
+
+        public void subscribe(P2PWebsocket.Listener p2p, WolfxWebsocket.Listener wolfx,
+                              IntensityEstimator.Listener intensity) {
+            feedManager.addP2PListener(p2p);
+            feedManager.addWolfxListener(wolfx);
+            feedManager.addIntensityListener(intensity);
+        }
+
+        public void unsubscribe(P2PWebsocket.Listener p2p, WolfxWebsocket.Listener wolfx,
+                                IntensityEstimator.Listener intensity) {
+            feedManager.removeP2PListener(p2p);
+            feedManager.removeWolfxListener(wolfx);
+            feedManager.removeIntensityListener(intensity);
+        }
+
+        public void startP2P() {
+            feedManager.startP2P();
+        }
+
+        public void stopP2P() {
+            feedManager.stopP2P();
+        }
+
+        public void startWolfx() {
+            feedManager.startWolfx();
+        }
+
+        public void stopWolfx() {
+            feedManager.stopWolfx();
+        }
+
+        public void stopFeeds() {
+            feedManager.stopAll();
+        }
+
+        public boolean isP2PConnected() {
+            return feedManager.isP2PConnected();
+        }
+
+        public boolean isWolfxConnected() {
+            return feedManager.isWolfxConnected();
+        }
+
+        /**
+         * アプリ専用の外部ストレージに置いた記録（FeedRecording 形式）を受信経路に流す
+         * @return 記録を読めたら true
+         */
+        public boolean startReplay(String fileName, double speed) {
+            File dir = getExternalFilesDir(null);
+            if (dir == null) return false;
+            File file = new File(dir, fileName);
+            FeedRecording recording;
+            try (InputStream in = new FileInputStream(file)) {
+                recording = FeedRecording.parse(in);
+            } catch (IOException e) {
+                Log.w(TAG, "記録の読み込み失敗: " + e.getMessage());
+                return false;
+            }
+            Log.d(TAG, "記録の再生開始: " + file.getName() + " " + recording.size() + "件 ×" + speed);
+            feedManager.startReplay(recording, speed, null);
+            return true;
+        }
+
+        public void stopReplay() {
+            feedManager.stopReplay();
+        }
+
+        public String getFeedHealth() {
+            return feedManager.healthJson(SystemClock.elapsedRealtime());
+        }
+
+        public void setUserLocation(double latitude, double longitude) {
+            feedManager.setUserLocation(latitude, longitude);
+        }
+
+        /** 位置情報の権限が許可されたら受け取りを始める */
+        public void startLocationUpdates() {
+            locationTracker.start();
         }
 
         private Notification createNotification() {
@@ -161,20 +360,5 @@ public class ForegroundManager {
                     .setOngoing(true)
                     .build();
         }
-
-        private void sendNotification(String title, String message) {
-            NotificationManager manager = getSystemService(NotificationManager.class);
-            if (manager != null) {
-                Notification notification = new NotificationCompat.Builder(this, CHANNEL_ID)
-                        .setContentTitle(title)
-                        .setContentText(message)
-                        .setSmallIcon(android.R.drawable.ic_dialog_alert)
-                        .setPriority(NotificationCompat.PRIORITY_HIGH)
-                        .setAutoCancel(true)
-                        .build();
-
-                manager.notify((int) System.currentTimeMillis(), notification);
-            }
-        }
     }
 }
\ No newline at end of file
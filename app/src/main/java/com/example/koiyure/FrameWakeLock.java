@@ -0,0 +1,135 @@
+package com.example.koiyure;
+
+import android.os.SystemClock;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 受信フレームの処理中だけ CPU を起こしておく、時間制限付きの WakeLock
+ * ・enter で MAX_HOLD_MILLIS の制限付きで取り、処理中のものが無くなった exit で残りを TAIL_MILLIS に縮める
+ *   （放すのは OS の時間切れに任せる。履歴の書き込みスレッドなどが取りかかるまでの猶予を残す）
+ * ・exit を呼び損ねても MAX_HOLD_MILLIS で必ず放される
+ * ・待ち受け中は WakeLock を持たない（ソケットとフォアグラウンドサービスだけで待つ）
+ * 保持した時間を数えて LatencyMetrics の出力に含める
+ */
+public final class FrameWakeLock {
+
+    /** 実際の WakeLock（参照カウントなし。acquire し直すと時間制限が置き換わる） */
+    public interface Lock {
+        void acquire(long timeoutMillis);
+
+        void release();
+    }
+
+    // 1フレームの解析・保存・通知にかけてよい上限
+    static final long MAX_HOLD_MILLIS = 3_000;
+    // 処理が終わってから放すまでの猶予
+    static final long TAIL_MILLIS = 250;
+
+    private static final FrameWakeLock INSTANCE = new FrameWakeLock(SystemClock::elapsedRealtime);
+
+    public static FrameWakeLock getInstance() {
+        return INSTANCE;
+    }
+
+    private final LongSupplier clock;
+    private final long startedAt;
+    private Lock lock;
+    private int active = 0;
+    private boolean held = false;
+    private long heldSince;
+    private long deadline;
+
+    // 統計
+    private long acquireCount = 0;
+    private long heldMillis = 0;
+    private long maxHoldMillis = 0;
+
+    FrameWakeLock(LongSupplier clock) {
+        this.clock = clock;
+        startedAt = clock.getAsLong();
+    }
+
+    /** サービス開始時に WakeLock を渡す（null で外す。持っていれば放す） */
+    public synchronized void setLock(Lock lock) {
+        long now = clock.getAsLong();
+        settle(now);
+        if (held) {
+            this.lock.release();
+            endHold(now);
+        }
+        this.lock = lock;
+        active = 0;
+    }
+
+    /** フレームの処理を始める（WakeLock が無ければ何もしない） */
+    public synchronized void enter() {
+        if (lock == null) {
+            active++;
+            return;
+        }
+        long now = clock.getAsLong();
+        settle(now);
+        active++;
+        if (!held) {
+            held = true;
+            heldSince = now;
+            acquireCount++;
+        } else if (deadline - now >= MAX_HOLD_MILLIS / 2) {
+            // 十分残っているので取り直さない
+            return;
+        }
+        lock.acquire(MAX_HOLD_MILLIS);
+        deadline = now + MAX_HOLD_MILLIS;
+    }
+
+    /** フレームの処理を終えた */
+    public synchronized void exit() {
+        if (active > 0) active--;
+        if (lock == null || active > 0) return;
+        long now = clock.getAsLong();
+        settle(now);
+        if (held && deadline - now > TAIL_MILLIS) {
+            lock.acquire(TAIL_MILLIS);
+            deadline = now + TAIL_MILLIS;
+        }
+    }
+
+    public synchronized long getAcquireCount() {
+        return acquireCount;
+    }
+
+    /** これまでに保持した時間の合計（ミリ秒、保持中の分を含む） */
+    public synchronized long getHeldMillis() {
+        long now = clock.getAsLong();
+        settle(now);
+        return heldMillis + (held ? now - heldSince : 0);
+    }
+
+    /** {"acquired":n,"heldMs":..,"maxHoldMs":..,"heldRatio":..} */
+    public synchronized void appendJson(StringBuilder sb) {
+        long now = clock.getAsLong();
+        long total = getHeldMillis();
+        long elapsed = Math.max(1, now - startedAt);
+        sb.append("{\"acquired\":").append(acquireCount);
+        sb.append(",\"heldMs\":").append(total);
+        sb.append(",\"maxHoldMs\":").append(Math.max(maxHoldMillis, held ? now - heldSince : 0));
+        sb.append(",\"heldRatio\":").append(Math.round(total * 1_000_000.0 / elapsed) / 1_000_000.0);
+        sb.append('}');
+    }
+
+    /** 時間切れで OS が放した分を締める（上限まで終わらなかった処理は exit し損ねたものとして数え直す） */
+    private void settle(long now) {
+        if (held && now >= deadline) {
+            endHold(deadline);
+            active = 0;
+        }
+    }
+
+    private void endHold(long at) {
+        long hold = Math.max(0, at - heldSince);
+        heldMillis += hold;
+        maxHoldMillis = Math.max(maxHoldMillis, hold);
+        held = false;
+    }
+}
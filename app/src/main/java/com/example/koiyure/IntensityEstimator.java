@@ -0,0 +1,221 @@
+package com.example.koiyure;
+
+/**
+ * 緊急地震速報の震源・規模から各震度観測点の予測震度を一括で計算する
+ *
+ * 距離減衰式: 司・翠川 (1999) の最大速度式（工学的基盤 Vs=600m/s）
+ * 地盤増幅:   AVS30 から求める増幅率（藤本・翠川 2006）。地点ごとの値が無ければ既定の AVS30
+ * 震度換算:   藤本・翠川 (2005) の PGV → 計測震度式
+ *
+ * 地点の座標は構築時に単位ベクトルへ変換しておき、1回の計算では三角関数を使わない
+ * 結果の配列は使い回すので、読み出しはリスナーのコールバック中に済ませること（スレッドセーフではない）
+ */
+public final class IntensityEstimator {
+
+    /** 予測が更新されたときに推定スレッドから呼ばれる（estimator の配列はコールバック中だけ有効） */
+    public interface Listener {
+        void onIntensityEstimated(EewRecord eew, IntensityEstimator estimator);
+    }
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    // 地点ごとの値が無いときに仮定する表層30mの平均S波速度（m/s）
+    private static final double DEFAULT_AVS30 = 400;
+    // 断層最短距離の下限（km）
+    private static final double MIN_FAULT_DISTANCE_KM = 3;
+    // 地図に送る最小の計測震度（震度1未満は省く）
+    private static final double MIN_REPORTED_INTENSITY = 0.5;
+
+    private final PointTable table;
+    private final int size;
+    private final double[] unitX;
+    private final double[] unitY;
+    private final double[] unitZ;
+    private final float[] siteAmplification;
+    private final float[] intensities;
+
+    private float maxIntensity = Float.NaN;
+    private int maxIndex = -1;
+
+    public IntensityEstimator(PointTable table) {
+        this.table = table;
+        size = table.size();
+        unitX = new double[size];
+        unitY = new double[size];
+        unitZ = new double[size];
+        siteAmplification = new float[size];
+        intensities = new float[size];
+        float amp = (float) amplification(DEFAULT_AVS30);
+        for (int i = 0; i < size; i++) {
+            double lat = Math.toRadians(table.latitude(i));
+            double lon = Math.toRadians(table.longitude(i));
+            unitX[i] = Math.cos(lat) * Math.cos(lon);
+            unitY[i] = Math.cos(lat) * Math.sin(lon);
+            unitZ[i] = Math.sin(lat);
+            siteAmplification[i] = amp;
+        }
+    }
+
+    public PointTable getTable() {
+        return table;
+    }
+
+    /** 地点ごとの AVS30（m/s）を設定する。0 以下・NaN の地点は既定値のまま */
+    public void setSiteAvs30(float[] avs30) {
+        int n = Math.min(avs30.length, size);
+        for (int i = 0; i < n; i++) {
+            if (avs30[i] > 0) {
+                siteAmplification[i] = (float) amplification(avs30[i]);
+            }
+        }
+    }
+
+    // ------------------------
+    // 一括計算
+    // ------------------------
+
+    /**
+     * 全地点の計測震度を計算する。計算できない報（取消・震源不明）は false
+     * 座標の無い地点は NaN になる
+     */
+    public boolean estimate(EewRecord eew) {
+        maxIntensity = Float.NaN;
+        maxIndex = -1;
+        if (eew.cancel || Double.isNaN(eew.magnitude)
+                || Double.isNaN(eew.latitude) || Double.isNaN(eew.longitude)) {
+            return false;
+        }
+        double mw = momentMagnitude(eew.magnitude);
+        int depth = Math.max(eew.depth, 0);
+        double halfFault = faultLengthKm(mw) / 2;
+        double nearField = 0.0028 * Math.pow(10, 0.5 * mw);
+        double base = 0.58 * mw + 0.0038 * depth - 1.29;
+
+        // 震源を地球中心からの座標にする（観測点は地表）
+        double lat = Math.toRadians(eew.latitude);
+        double lon = Math.toRadians(eew.longitude);
+        double r = EARTH_RADIUS_KM - depth;
+        double hx = r * Math.cos(lat) * Math.cos(lon);
+        double hy = r * Math.cos(lat) * Math.sin(lon);
+        double hz = r * Math.sin(lat);
+
+        float max = Float.NEGATIVE_INFINITY;
+        int maxAt = -1;
+        for (int i = 0; i < size; i++) {
+            double dx = unitX[i] * EARTH_RADIUS_KM - hx;
+            double dy = unitY[i] * EARTH_RADIUS_KM - hy;
+            double dz = unitZ[i] * EARTH_RADIUS_KM - hz;
+            double hypo = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            double x = Math.max(hypo - halfFault, MIN_FAULT_DISTANCE_KM);
+            double logPgv = base - Math.log10(x + nearField) - 0.002 * x
+                    + Math.log10(siteAmplification[i]);
+            float value = (float) intensityFromLogPgv(logPgv);
+            intensities[i] = value;
+            if (value > max) {
+                max = value;
+                maxAt = i;
+            }
+        }
+        if (maxAt >= 0) {
+            maxIntensity = max;
+            maxIndex = maxAt;
+        }
+        return true;
+    }
+
+    public float intensity(int index) {
+        return intensities[index];
+    }
+
+    /** 直前の estimate() での最大計測震度（無ければ NaN） */
+    public float getMaxIntensity() {
+        return maxIntensity;
+    }
+
+    public int getMaxIndex() {
+        return maxIndex;
+    }
+
+    /**
+     * 直前の結果を地図用のJSONにする（震度1以上の地点だけ）
+     * {"eventId":..,"serial":..,"maxScale":..,"points":[[code,計測震度,震度コード],...]}
+     */
+    public String toJson(EewRecord eew) {
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("{\"eventId\":");
+        JsonCursor.appendQuoted(sb, eew.eventId);
+        sb.append(",\"serial\":").append(eew.serial);
+        sb.append(",\"maxScale\":").append(Float.isNaN(maxIntensity) ? -1 : toScale(maxIntensity));
+        sb.append(",\"points\":[");
+        boolean first = true;
+        if (maxIndex >= 0) {
+            for (int i = 0; i < size; i++) {
+                float v = intensities[i];
+                if (!(v >= MIN_REPORTED_INTENSITY)) continue;
+                if (!first) sb.append(',');
+                first = false;
+                sb.append('[').append(table.code(i))
+                        .append(',').append(Math.round(v * 10) / 10.0)
+                        .append(',').append(toScale(v)).append(']');
+            }
+        }
+        return sb.append("]}").toString();
+    }
+
+    // ------------------------
+    // 1地点の計算
+    // ------------------------
+
+    /** (lat, lon) の計測震度（既定の地盤で計算。震源・規模が不明なら NaN） */
+    public static double estimateAt(EewRecord eew, double lat, double lon) {
+        if (eew.cancel || Double.isNaN(eew.magnitude)
+                || Double.isNaN(eew.latitude) || Double.isNaN(eew.longitude)) {
+            return Double.NaN;
+        }
+        double mw = momentMagnitude(eew.magnitude);
+        int depth = Math.max(eew.depth, 0);
+        double epicentral = TravelTimeTable.distanceKm(eew.latitude, eew.longitude, lat, lon);
+        double hypo = Math.sqrt(epicentral * epicentral + (double) depth * depth);
+        double x = Math.max(hypo - faultLengthKm(mw) / 2, MIN_FAULT_DISTANCE_KM);
+        double logPgv = 0.58 * mw + 0.0038 * depth - 1.29
+                - Math.log10(x + 0.0028 * Math.pow(10, 0.5 * mw)) - 0.002 * x
+                + Math.log10(amplification(DEFAULT_AVS30));
+        return intensityFromLogPgv(logPgv);
+    }
+
+    /** 計測震度を P2P地震情報と同じ震度コード（10=震度1 … 45=5弱 … 70=震度7、0=震度0）にする */
+    public static int toScale(double intensity) {
+        if (intensity < 0.5) return 0;
+        if (intensity < 1.5) return 10;
+        if (intensity < 2.5) return 20;
+        if (intensity < 3.5) return 30;
+        if (intensity < 4.5) return 40;
+        if (intensity < 5.0) return 45;
+        if (intensity < 5.5) return 50;
+        if (intensity < 6.0) return 55;
+        if (intensity < 6.5) return 60;
+        return 70;
+    }
+
+    // ------------------------
+    // 経験式
+    // ------------------------
+
+    /** 気象庁マグニチュード → モーメントマグニチュード */
+    static double momentMagnitude(double mj) {
+        return mj - 0.171;
+    }
+
+    /** 断層長さ（宇津 1977 の経験式） */
+    static double faultLengthKm(double mw) {
+        return Math.pow(10, 0.5 * mw - 1.85);
+    }
+
+    /** 工学的基盤（Vs=600m/s）に対する地表の速度増幅率 */
+    static double amplification(double avs30) {
+        return Math.pow(10, 0.66 * Math.log10(600 / avs30));
+    }
+
+    static double intensityFromLogPgv(double logPgv) {
+        return 2.002 + 2.603 * logPgv - 0.213 * logPgv * logPgv;
+    }
+}
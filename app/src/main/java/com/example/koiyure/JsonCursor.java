@@ -0,0 +1,484 @@
+package com.example.koiyure;
+
+/**
+ * 受信フレーム用の軽量JSONカーソル
+ * 文字列を先頭から1回だけ走査し、ツリーを作らずに必要な値だけを取り出す
+ * （1インスタンスを使い回す前提。スレッドセーフではない）
+ */
+public final class JsonCursor {
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+            1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+    };
+
+    // JST(+09:00) → UTC
+    private static final long JST_OFFSET_MILLIS = 9 * 60 * 60 * 1000L;
+
+    private String src;
+    private int pos;
+    private int end;
+    private int keyStart;
+    private int keyEnd;
+
+    private final StringBuilder scratch = new StringBuilder(64);
+
+    public JsonCursor reset(String json) {
+        src = json;
+        pos = 0;
+        end = json.length();
+        keyStart = keyEnd = 0;
+        return this;
+    }
+
+    public int position() {
+        return pos;
+    }
+
+    public String slice(int from, int to) {
+        return src.substring(from, to);
+    }
+
+    // ------------------------
+    // 構造
+    // ------------------------
+
+    /** 次の値の先頭文字（'{', '[', '"', 't', 'f', 'n', 数字）を返す */
+    public char peek() {
+        skipWhitespace();
+        if (pos >= end) throw error("入力の終端");
+        return src.charAt(pos);
+    }
+
+    public void beginObject() {
+        expect('{');
+    }
+
+    public void beginArray() {
+        expect('[');
+    }
+
+    /**
+     * オブジェクト内の次のキーへ進む。'}' に達したら false
+     * true の場合、カーソルは値の先頭にある
+     */
+    public boolean nextField() {
+        skipWhitespace();
+        char c = charAt(pos);
+        if (c == ',') {
+            pos++;
+            skipWhitespace();
+            c = charAt(pos);
+        }
+        if (c == '}') {
+            pos++;
+            return false;
+        }
+        if (c != '"') throw error("キーが必要です");
+        pos++;
+        keyStart = pos;
+        keyEnd = scanStringEnd();
+        pos = keyEnd + 1;
+        expect(':');
+        skipWhitespace();
+        return true;
+    }
+
+    /** 配列内の次の要素へ進む。']' に達したら false */
+    public boolean nextElement() {
+        skipWhitespace();
+        char c = charAt(pos);
+        if (c == ',') {
+            pos++;
+            skipWhitespace();
+            c = charAt(pos);
+        }
+        if (c == ']') {
+            pos++;
+            return false;
+        }
+        return true;
+    }
+
+    /** 現在のキーが name と一致するか（文字列を生成しない） */
+    public boolean fieldIs(String name) {
+        int len = keyEnd - keyStart;
+        return len == name.length() && src.regionMatches(keyStart, name, 0, len);
+    }
+
+    public String fieldName() {
+        return src.substring(keyStart, keyEnd);
+    }
+
+    // ------------------------
+    // 値
+    // ------------------------
+    public boolean isNull() {
+        return peek() == 'n';
+    }
+
+    /** 文字列値（null は null）。数値が来た場合はその表記を返す */
+    public String readString() {
+        char c = peek();
+        if (c == 'n') {
+            skipLiteral();
+            return null;
+        }
+        if (c != '"') {
+            int start = pos;
+            skipLiteral();
+            return src.substring(start, pos);
+        }
+        pos++;
+        int start = pos;
+        int close = scanStringEnd();
+        pos = close + 1;
+        int backslash = src.indexOf('\\', start);
+        if (backslash < 0 || backslash > close) {
+            return src.substring(start, close);
+        }
+        return unescape(start, close);
+    }
+
+    /** 文字列値が expected と一致するかを調べて読み進める（文字列を生成しない） */
+    public boolean readStringEquals(String expected) {
+        if (peek() != '"') {
+            skipValue();
+            return false;
+        }
+        int start = ++pos;
+        int close = scanStringEnd();
+        pos = close + 1;
+        int len = close - start;
+        return len == expected.length() && src.regionMatches(start, expected, 0, len);
+    }
+
+    public long readLong(long fallback) {
+        char c = peek();
+        if (c == '"') {
+            // "1" のように文字列で来る場合もある
+            pos++;
+            long v = parseLong(fallback);
+            pos = scanStringEnd() + 1;
+            return v;
+        }
+        if (c == 'n') {
+            skipLiteral();
+            return fallback;
+        }
+        long v = parseLong(fallback);
+        skipLiteral();
+        return v;
+    }
+
+    public int readInt(int fallback) {
+        return (int) readLong(fallback);
+    }
+
+    public double readDouble(double fallback) {
+        char c = peek();
+        if (c == '"') {
+            pos++;
+            double v = parseDouble(fallback);
+            pos = scanStringEnd() + 1;
+            return v;
+        }
+        if (c == 'n') {
+            skipLiteral();
+            return fallback;
+        }
+        double v = parseDouble(fallback);
+        skipLiteral();
+        return v;
+    }
+
+    public boolean readBoolean() {
+        char c = peek();
+        skipLiteral();
+        return c == 't';
+    }
+
+    /**
+     * "2024/01/01 16:10:09" / "2024/01/01 16:10:09.123" 形式（JST）を
+     * UTCのエポックミリ秒に変換する。解釈できなければ fallback
+     */
+    public long readJmaTime(long fallback) {
+        if (peek() != '"') {
+            skipValue();
+            return fallback;
+        }
+        int start = ++pos;
+        int close = scanStringEnd();
+        pos = close + 1;
+        if (close - start < 19) return fallback;
+        int year = digits(start, 4);
+        int month = digits(start + 5, 2);
+        int day = digits(start + 8, 2);
+        int hour = digits(start + 11, 2);
+        int minute = digits(start + 14, 2);
+        int second = digits(start + 17, 2);
+        if (year < 0 || month < 0 || day < 0 || hour < 0 || minute < 0 || second < 0) {
+            return fallback;
+        }
+        int millis = 0;
+        if (close - start >= 23 && src.charAt(start + 19) == '.') {
+            millis = Math.max(0, digits(start + 20, 3));
+        }
+        long days = daysFromCivil(year, month, day);
+        return ((days * 24 + hour) * 60 + minute) * 60_000L + second * 1000L + millis
+                - JST_OFFSET_MILLIS;
+    }
+
+    /** 現在の値を読み飛ばす（ネストしたオブジェクト・配列も含む） */
+    public void skipValue() {
+        char c = peek();
+        if (c == '"') {
+            pos++;
+            pos = scanStringEnd() + 1;
+        } else if (c == '{' || c == '[') {
+            int depth = 0;
+            while (pos < end) {
+                char ch = src.charAt(pos);
+                if (ch == '"') {
+                    pos++;
+                    pos = scanStringEnd();
+                } else if (ch == '{' || ch == '[') {
+                    depth++;
+                } else if (ch == '}' || ch == ']') {
+                    depth--;
+                    if (depth == 0) {
+                        pos++;
+                        return;
+                    }
+                }
+                pos++;
+            }
+            throw error("閉じ括弧がありません");
+        } else {
+            skipLiteral();
+        }
+    }
+
+    /**
+     * トップレベルのオブジェクトから数値フィールドだけを先読みする
+     * カーソル位置は先頭に戻る
+     */
+    public long peekTopLevelLong(String name, long fallback) {
+        int saved = pos;
+        try {
+            beginObject();
+            while (nextField()) {
+                if (fieldIs(name)) {
+                    return readLong(fallback);
+                }
+                skipValue();
+            }
+            return fallback;
+        } finally {
+            pos = saved;
+        }
+    }
+
+    // ------------------------
+    // 書き出し用ユーティリティ
+    // ------------------------
+
+    /** JSON文字列リテラルとして追記する（JavaScriptにそのまま埋め込んでも安全） */
+    public static StringBuilder appendQuoted(StringBuilder sb, String value) {
+        if (value == null) {
+            return sb.append("null");
+        }
+        sb.append('"');
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                case '\u2028': sb.append("\\u2028"); break;
+                case '\u2029': sb.append("\\u2029"); break;
+                case '<': sb.append("\\u003c"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"');
+    }
+
+    // ------------------------
+    // 内部処理
+    // ------------------------
+    private char charAt(int i) {
+        if (i >= end) throw error("入力の終端");
+        return src.charAt(i);
+    }
+
+    private void expect(char c) {
+        skipWhitespace();
+        if (charAt(pos) != c) throw error("'" + c + "' が必要です");
+        pos++;
+    }
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            char c = src.charAt(pos);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return;
+            pos++;
+        }
+    }
+
+    /** pos は開き引用符の直後。閉じ引用符の位置を返す */
+    private int scanStringEnd() {
+        int i = pos;
+        while (i < end) {
+            char c = src.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '"') return i;
+            i++;
+        }
+        throw error("文字列が閉じていません");
+    }
+
+    private void skipLiteral() {
+        while (pos < end) {
+            char c = src.charAt(pos);
+            if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private long parseLong(long fallback) {
+        int i = pos;
+        boolean negative = false;
+        if (i < end && src.charAt(i) == '-') {
+            negative = true;
+            i++;
+        }
+        int start = i;
+        long v = 0;
+        while (i < end) {
+            char c = src.charAt(i);
+            if (c < '0' || c > '9') break;
+            v = v * 10 + (c - '0');
+            i++;
+        }
+        if (i == start) return fallback;
+        pos = i;
+        return negative ? -v : v;
+    }
+
+    private double parseDouble(double fallback) {
+        int i = pos;
+        boolean negative = false;
+        if (i < end && src.charAt(i) == '-') {
+            negative = true;
+            i++;
+        }
+        int start = i;
+        long mantissa = 0;
+        int scale = 0;
+        int digitCount = 0;
+        boolean fraction = false;
+        while (i < end) {
+            char c = src.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digitCount < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digitCount++;
+                    if (fraction) scale--;
+                } else if (!fraction) {
+                    scale++;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+            i++;
+        }
+        if (i == start) return fallback;
+        if (i < end && (src.charAt(i) == 'e' || src.charAt(i) == 'E')) {
+            i++;
+            boolean expNegative = false;
+            if (i < end && (src.charAt(i) == '+' || src.charAt(i) == '-')) {
+                expNegative = src.charAt(i) == '-';
+                i++;
+            }
+            int exp = 0;
+            while (i < end && src.charAt(i) >= '0' && src.charAt(i) <= '9') {
+                exp = exp * 10 + (src.charAt(i) - '0');
+                i++;
+            }
+            scale += expNegative ? -exp : exp;
+        }
+        pos = i;
+        double v = mantissa;
+        if (scale < 0) {
+            v = -scale < POW10.length ? v / POW10[-scale] : v / Math.pow(10, -scale);
+        } else if (scale > 0) {
+            v = scale < POW10.length ? v * POW10[scale] : v * Math.pow(10, scale);
+        }
+        return negative ? -v : v;
+    }
+
+    private int digits(int from, int count) {
+        int v = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = src.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    private String unescape(int start, int close) {
+        StringBuilder sb = scratch;
+        sb.setLength(0);
+        for (int i = start; i < close; i++) {
+            char c = src.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            char e = src.charAt(++i);
+            switch (e) {
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    sb.append((char) Integer.parseInt(src.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                default: sb.append(e);
+            }
+        }
+        return sb.toString();
+    }
+
+    // Howard Hinnant の days_from_civil
+    private static long daysFromCivil(int y, int m, int d) {
+        y -= m <= 2 ? 1 : 0;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yoe = y - era * 400;
+        long doy = (153L * (m + (m > 2 ? -3 : 9)) + 2) / 5 + d - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    private IllegalStateException error(String message) {
+        return new IllegalStateException(message + " (位置 " + pos + ")");
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.koiyure;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 遅延（マイクロ秒）の分布をロックなしで数えるヒストグラム
+ * 2のべき乗ごとに8分割したバケットに数える（代表値の誤差は 1/16 以内）
+ * 記録はどのスレッドからでも同時に行える。集計値は記録と並行して読むので厳密な断面ではない
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // 2^40 µs（約12日）を超える値は最後のバケットに入れる
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long micros) {
+        if (micros < 0) micros = 0;
+        counts.incrementAndGet(indexOf(micros));
+        total.incrementAndGet();
+        sum.addAndGet(micros);
+        long current;
+        while (micros > (current = max.get())) {
+            if (max.compareAndSet(current, micros)) break;
+        }
+    }
+
+    public long getCount() {
+        return total.get();
+    }
+
+    public long getMaxMicros() {
+        return max.get();
+    }
+
+    public long getMeanMicros() {
+        long n = total.get();
+        return n == 0 ? -1 : sum.get() / n;
+    }
+
+    /** q（0〜1）分位の値（マイクロ秒、記録なしなら -1） */
+    public long percentileMicros(double q) {
+        long n = total.get();
+        if (n == 0) return -1;
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(valueOf(i), max.get());
+        }
+        return max.get();
+    }
+
+    /** {"count":n,"p50Ms":..,"p99Ms":..,"maxMs":..,"meanMs":..} */
+    public void appendJson(StringBuilder sb) {
+        sb.append("{\"count\":").append(getCount());
+        sb.append(",\"p50Ms\":").append(toMillis(percentileMicros(0.50)));
+        sb.append(",\"p99Ms\":").append(toMillis(percentileMicros(0.99)));
+        sb.append(",\"maxMs\":").append(getCount() == 0 ? -1 : toMillis(getMaxMicros()));
+        sb.append(",\"meanMs\":").append(toMillis(getMeanMicros()));
+        sb.append('}');
+    }
+
+    private static double toMillis(long micros) {
+        return micros < 0 ? -1 : micros / 1000.0;
+    }
+
+    // ------------------------
+    // バケット
+    // ------------------------
+    static int indexOf(long micros) {
+        if (micros < SUB_BUCKETS) return (int) micros;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) return BUCKET_COUNT - 1;
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /** バケットの代表値（範囲の中央） */
+    static long valueOf(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        long lower = (long) (SUB_BUCKETS + sub) << shift;
+        return lower + ((1L << shift) >> 1);
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.koiyure;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 緊急地震速報が届いてから表示されるまでの遅延を、経路・段階ごとのヒストグラムに記録する
+ * ・network: 発表時刻 → 端末で受信（壁時計。発表時刻は秒単位）
+ * ・decode / dedup / arrival / notify / render / audible: ソケット受信からの累積（単調時計）
+ * 記録はロックを取らないので受信スレッドからそのまま呼んでよい
+ */
+public final class LatencyMetrics {
+
+    public static final int STAGE_NETWORK = 0;
+    public static final int STAGE_DECODE = 1;
+    public static final int STAGE_DEDUP = 2;
+    public static final int STAGE_ARRIVAL = 3;
+    public static final int STAGE_NOTIFY = 4;
+    public static final int STAGE_RENDER = 5;
+    public static final int STAGE_AUDIBLE = 6; // 報知音の再生開始
+    private static final String[] STAGE_NAMES = {"network", "decode", "dedup", "arrival", "notify", "render", "audible"};
+
+    // これより遅い受信（記録の再生・取り直しなど）は network に入れない
+    private static final long MAX_NETWORK_MILLIS = 10 * 60_000;
+
+    // 描画完了の報告待ち（JS から返ってこないものは上書きされて消える）
+    private static final int RENDER_SLOTS = 64;
+
+    private static final LatencyMetrics INSTANCE = new LatencyMetrics();
+
+    public static LatencyMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /** 段階の計測に使う単調時計（ナノ秒） */
+    public static long now() {
+        return System.nanoTime();
+    }
+
+    private final LatencyHistogram[][] histograms =
+            new LatencyHistogram[EewFanIn.SOURCE_COUNT][STAGE_NAMES.length];
+    private final long startedAt = System.currentTimeMillis();
+
+    private final AtomicInteger renderSequence = new AtomicInteger();
+    private final AtomicIntegerArray renderTokens = new AtomicIntegerArray(RENDER_SLOTS);
+    private final AtomicIntegerArray renderFeeds = new AtomicIntegerArray(RENDER_SLOTS);
+    private final AtomicLongArray renderStarts = new AtomicLongArray(RENDER_SLOTS);
+
+    LatencyMetrics() {
+        for (LatencyHistogram[] feed : histograms) {
+            for (int i = 0; i < feed.length; i++) {
+                feed[i] = new LatencyHistogram();
+            }
+        }
+    }
+
+    public LatencyHistogram getHistogram(int feed, int stage) {
+        return histograms[feed][stage];
+    }
+
+    // ------------------------
+    // 記録
+    // ------------------------
+    public void record(int feed, int stage, long micros) {
+        histograms[feed][stage].record(micros);
+    }
+
+    /** ソケット受信から今までの時間を stage に記録する（受信時刻が無い報は記録しない） */
+    public void mark(EewRecord eew, int stage) {
+        if (eew.receivedNanos == 0) return;
+        record(eew.feed, stage, (now() - eew.receivedNanos) / 1000);
+    }
+
+    /** 発表時刻から端末で受信するまでの時間を記録する（取り直し・保留した報は receivedNanos = 0 で、記録しない） */
+    public void markNetwork(EewRecord eew) {
+        if (eew.receivedNanos == 0 || eew.announcedTime <= 0 || eew.receivedAt < eew.announcedTime
+                || eew.receivedAt - eew.announcedTime > MAX_NETWORK_MILLIS) return;
+        record(eew.feed, STAGE_NETWORK, (eew.receivedAt - eew.announcedTime) * 1000);
+    }
+
+    /**
+     * WebView へ送る直前に呼び、描画完了時に endRender に渡す番号を得る
+     * @return 番号（計測しない報は -1）
+     */
+    public int beginRender(EewRecord eew) {
+        if (eew.receivedNanos == 0) return -1;
+        int token = renderSequence.getAndIncrement() & Integer.MAX_VALUE;
+        int slot = token % RENDER_SLOTS;
+        renderStarts.set(slot, 0);
+        renderTokens.set(slot, token);
+        renderFeeds.set(slot, eew.feed);
+        renderStarts.set(slot, eew.receivedNanos);
+        return token;
+    }
+
+    /** JS 側で描画が終わった（同じ番号の2回目以降・上書き済みの番号は無視する） */
+    public void endRender(int token) {
+        if (token < 0) return;
+        int slot = token % RENDER_SLOTS;
+        if (renderTokens.get(slot) != token) return;
+        int feed = renderFeeds.get(slot);
+        long start = renderStarts.getAndSet(slot, 0);
+        if (start == 0 || renderTokens.get(slot) != token) return;
+        record(feed, STAGE_RENDER, (now() - start) / 1000);
+    }
+
+    // ------------------------
+    // 出力
+    // ------------------------
+
+    /** {"since":..,"wolfx":{"network":{...},"decode":{...},...},"p2p":{...},"wolfx2":{...},"wakeLock":{...}} */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(2048);
+        sb.append("{\"since\":").append(startedAt);
+        for (int feed = 0; feed < histograms.length; feed++) {
+            sb.append(",\"").append(EewFanIn.sourceName(feed)).append("\":{");
+            for (int stage = 0; stage < STAGE_NAMES.length; stage++) {
+                if (stage > 0) sb.append(',');
+                sb.append('"').append(STAGE_NAMES[stage]).append("\":");
+                histograms[feed][stage].appendJson(sb);
+            }
+            sb.append('}');
+        }
+        // 受信処理で WakeLock を持った時間
+        sb.append(",\"wakeLock\":");
+        FrameWakeLock.getInstance().appendJson(sb);
+        return sb.append('}').toString();
+    }
+
+    /** 現在の集計を JSON ファイルに書き出す */
+    public void writeTo(File file) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(toJson().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.koiyure;
+
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.os.Looper;
+import android.util.Log;
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+
+/**
+ * 端末の位置情報から到達予測の現在地を更新する（play-services-location）
+ * ・位置情報の権限があるときだけ、省電力の精度で間隔を空けて受け取る
+ * ・受け取った位置は UserLocation に残し、FeedManager に渡す
+ * バックグラウンドの位置情報が許可されていなければアプリを開いている間だけ更新され、それ以外は最後の位置を使う
+ */
+public class LocationTracker {
+
+    private static final String TAG = "LocationTracker";
+
+    // 地震の到達予測には市区町村程度の精度で足りるので、電池を優先する
+    private static final long INTERVAL_MILLIS = 15 * 60_000;
+    private static final long MIN_INTERVAL_MILLIS = 60_000;
+    private static final float MIN_DISTANCE_METERS = 1_000;
+
+    private final Context context;
+    private final FeedManager feedManager;
+    private final UserLocation userLocation;
+    private final FusedLocationProviderClient client;
+    private boolean started = false;
+
+    private final LocationCallback callback = new LocationCallback() {
+        @Override
+        public void onLocationResult(LocationResult result) {
+            Location location = result.getLastLocation();
+            if (location != null) {
+                apply(location);
+            }
+        }
+    };
+
+    public LocationTracker(Context context, FeedManager feedManager) {
+        this.context = context.getApplicationContext();
+        this.feedManager = feedManager;
+        this.userLocation = new UserLocation(this.context);
+        this.client = LocationServices.getFusedLocationProviderClient(this.context);
+    }
+
+    public static boolean hasPermission(Context context) {
+        return ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_COARSE_LOCATION)
+                == PackageManager.PERMISSION_GRANTED
+                || ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION)
+                == PackageManager.PERMISSION_GRANTED;
+    }
+
+    /** 権限があれば受け取りを始める（後から許可されたときは呼び直す） */
+    @SuppressLint("MissingPermission")
+    public synchronized void start() {
+        if (started || !hasPermission(context)) return;
+        try {
+            // まずは端末が持っている最後の位置ですぐに埋める
+            client.getLastLocation().addOnSuccessListener(location -> {
+                if (location != null) {
+                    apply(location);
+                }
+            });
+            LocationRequest request = new LocationRequest.Builder(
+                    Priority.PRIORITY_BALANCED_POWER_ACCURACY, INTERVAL_MILLIS)
+                    .setMinUpdateIntervalMillis(MIN_INTERVAL_MILLIS)
+                    .setMinUpdateDistanceMeters(MIN_DISTANCE_METERS)
+                    .build();
+            client.requestLocationUpdates(request, callback, Looper.getMainLooper());
+            started = true;
+            Log.d(TAG, "位置情報の受け取り開始");
+        } catch (SecurityException e) {
+            // 確認の直後に権限を取り消された
+            Log.w(TAG, "位置情報の権限がありません: " + e.getMessage());
+        }
+    }
+
+    public synchronized void stop() {
+        if (!started) return;
+        started = false;
+        client.removeLocationUpdates(callback);
+        Log.d(TAG, "位置情報の受け取り停止");
+    }
+
+    private void apply(Location location) {
+        double latitude = location.getLatitude();
+        double longitude = location.getLongitude();
+        userLocation.save(latitude, longitude);
+        feedManager.setUserLocation(latitude, longitude);
+    }
+}
@@ -1,28 +1,51 @@
 package com.example.koiyure;
 
+import android.Manifest;
+import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.IBinder;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
 import android.webkit.JavascriptInterface;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
 import android.widget.Toast;
 import androidx.activity.EdgeToEdge;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
+import java.io.File;
+import java.io.IOException;
+
 public class MainActivity extends AppCompatActivity
-        implements P2PWebsocket.Listener, WolfxWebsocket.Listener {
+        implements P2PWebsocket.Listener, WolfxWebsocket.Listener, IntensityEstimator.Listener {
+
+    private static final String TAG = "MainActivity";
 
     private WebView webView;
-    private P2PWebsocket p2pWebsocket;
-    private WolfxWebsocket wolfxWebsocket;
+    private WebBridge webBridge;
+    private volatile ForegroundManager.EarthquakeService earthquakeService;
     private ForegroundManager foregroundManager;
-    private AlarmManagerController alarmmanagercontroller;
-    private WorkManager workManager;
+    private Watchdog watchdog;
+
+    // 位置情報の権限（許可されたらサービスが現在地の受け取りを始める）
+    private final ActivityResultLauncher<String[]> locationPermission = registerForActivityResult(
+            new ActivityResultContracts.RequestMultiplePermissions(), result -> {
+                ForegroundManager.EarthquakeService service = earthquakeService;
+                if (service != null && LocationTracker.hasPermission(this)) {
+                    service.startLocationUpdates();
+                }
+            });
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -39,15 +62,20 @@ public class MainActivity extends AppCompatActivity
 
         // マネージャー初期化
         foregroundManager = new ForegroundManager(this);
-        alarmmanagercontroller = new AlarmManagerController(this);
-        workManager = new WorkManager(this);
-
-        // WebSocket初期化
-        p2pWebsocket = new P2PWebsocket();
-        p2pWebsocket.setListener(this);
-
-        wolfxWebsocket = new WolfxWebsocket();
-        wolfxWebsocket.setListener(this);
+        watchdog = new Watchdog(this);
+        // 以前の版が登録した定期ワークは Watchdog にまとめたので取り消す
+        new WorkManager(this).stop();
+
+        // サービスにbindして受信を購読（ソケットはサービスだけが持つ）
+        bindService(new Intent(this, ForegroundManager.EarthquakeService.class),
+                serviceConnection, Context.BIND_AUTO_CREATE);
+
+        // 到達予測・現在地の予測震度のために位置情報の権限を求める
+        if (!LocationTracker.hasPermission(this)) {
+            locationPermission.launch(new String[]{
+                    Manifest.permission.ACCESS_FINE_LOCATION,
+                    Manifest.permission.ACCESS_COARSE_LOCATION});
+        }
 
         // WebView 設定
         webView = findViewById(R.id.webView);
@@ -58,31 +86,53 @@ public class MainActivity extends AppCompatActivity
         // JavaScriptインターフェース追加
         webView.addJavascriptInterface(new WebAppInterface(), "Android");
 
-        webView.setWebViewClient(new WebViewClient());
+        // 受信イベントは WebMessagePort 経由でまとめて送る
+        webBridge = new WebBridge(webView);
+        webView.setWebViewClient(new WebViewClient() {
+            @Override
+            public void onPageFinished(WebView view, String url) {
+                webBridge.connect();
+            }
+        });
         webView.loadUrl("file:///android_asset/MainIndex.html");
     }
 
+    // ========================
+    // サービス接続
+    // ========================
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            earthquakeService =
+                    ((ForegroundManager.EarthquakeService.LocalBinder) service).getService();
+            earthquakeService.subscribe(MainActivity.this, MainActivity.this, MainActivity.this);
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            earthquakeService = null;
+        }
+    };
+
     // ========================
     // WebSocket リスナー
     // ========================
     @Override
-    public void onP2PMessageReceived(String message) {
-        runOnUiThread(() -> {
-            webView.evaluateJavascript(
-                    "if(window.onP2PMessage) window.onP2PMessage(" +
-                            escapeJson(message) + ");", null
-            );
-        });
+    public void onP2PMessageReceived(P2PQuakeDecoder.Message message) {
+        int trace = message instanceof P2PQuakeDecoder.Eew
+                ? LatencyMetrics.getInstance().beginRender(((P2PQuakeDecoder.Eew) message).record) : -1;
+        webBridge.post("p2p", message.toJson(), trace);
     }
 
     @Override
-    public void onWolfxMessageReceived(String message) {
-        runOnUiThread(() -> {
-            webView.evaluateJavascript(
-                    "if(window.onWolfxMessage) window.onWolfxMessage(" +
-                            escapeJson(message) + ");", null
-            );
-        });
+    public void onWolfxEewReceived(EewRecord eew) {
+        // レコードはコールバック後に再利用されるので、ここでJSONにしておく
+        webBridge.post("wolfx_eew", eew.toJson(), LatencyMetrics.getInstance().beginRender(eew));
+    }
+
+    @Override
+    public void onIntensityEstimated(EewRecord eew, IntensityEstimator estimator) {
+        webBridge.post("intensity", estimator.toJson(eew));
     }
 
     // ========================
@@ -114,43 +164,50 @@ public class MainActivity extends AppCompatActivity
             return foregroundManager.isRunning();
         }
 
-        // --- Alarm Manager ---
+        /** サービスの稼働状態（フィードごとの状態・最後の受信・稼働時間）を JSON で返す */
+        @JavascriptInterface
+        public String getLiveness() {
+            return ServiceLiveness.get(MainActivity.this).read(Process.myPid(), SystemClock.uptimeMillis())
+                    .toJson(System.currentTimeMillis());
+        }
+
+        // --- 見張り（アラーム・WorkManager は Watchdog にまとめた） ---
+        // 間隔はフィードの状態に合わせて Watchdog が決めるので intervalMinutes は使わない
         @JavascriptInterface
         public void startAlarm(int intervalMinutes) {
-            runOnUiThread(() -> {
-                alarmmanagercontroller.start(intervalMinutes);
-                Toast.makeText(MainActivity.this,
-                        "定期アラーム開始: " + intervalMinutes + "分間隔",
-                        Toast.LENGTH_SHORT).show();
-            });
+            startWatchdog();
         }
 
         @JavascriptInterface
         public void stopAlarm() {
-            runOnUiThread(() -> {
-                alarmmanagercontroller.stop();
-                Toast.makeText(MainActivity.this,
-                        "定期アラーム停止", Toast.LENGTH_SHORT).show();
-            });
+            stopWatchdog();
         }
 
-        // --- Work Manager ---
         @JavascriptInterface
         public void startWork(int intervalMinutes) {
+            startWatchdog();
+        }
+
+        @JavascriptInterface
+        public void stopWork() {
+            stopWatchdog();
+        }
+
+        @JavascriptInterface
+        public void startWatchdog() {
             runOnUiThread(() -> {
-                workManager.start(intervalMinutes);
+                watchdog.start();
                 Toast.makeText(MainActivity.this,
-                        "WorkManager開始: " + intervalMinutes + "分間隔",
-                        Toast.LENGTH_SHORT).show();
+                        "見張り開始", Toast.LENGTH_SHORT).show();
             });
         }
 
         @JavascriptInterface
-        public void stopWork() {
+        public void stopWatchdog() {
             runOnUiThread(() -> {
-                workManager.stop();
+                watchdog.stop();
                 Toast.makeText(MainActivity.this,
-                        "WorkManager停止", Toast.LENGTH_SHORT).show();
+                        "見張り停止", Toast.LENGTH_SHORT).show();
             });
         }
 
@@ -158,7 +215,7 @@ public class MainActivity extends AppCompatActivity
         @JavascriptInterface
         public void startP2P() {
             runOnUiThread(() -> {
-                p2pWebsocket.start();
+                if (earthquakeService != null) earthquakeService.startP2P();
                 Toast.makeText(MainActivity.this,
                         "P2P地震情報 接続開始", Toast.LENGTH_SHORT).show();
             });
@@ -167,7 +224,7 @@ public class MainActivity extends AppCompatActivity
         @JavascriptInterface
         public void stopP2P() {
             runOnUiThread(() -> {
-                p2pWebsocket.stop();
+                if (earthquakeService != null) earthquakeService.stopP2P();
                 Toast.makeText(MainActivity.this,
                         "P2P地震情報 切断", Toast.LENGTH_SHORT).show();
             });
@@ -176,7 +233,7 @@ public class MainActivity extends AppCompatActivity
         @JavascriptInterface
         public void startWolfx() {
             runOnUiThread(() -> {
-                wolfxWebsocket.start();
+                if (earthquakeService != null) earthquakeService.startWolfx();
                 Toast.makeText(MainActivity.this,
                         "Wolfx緊急地震速報 接続開始", Toast.LENGTH_SHORT).show();
             });
@@ -185,7 +242,7 @@ public class MainActivity extends AppCompatActivity
         @JavascriptInterface
         public void stopWolfx() {
             runOnUiThread(() -> {
-                wolfxWebsocket.stop();
+                if (earthquakeService != null) earthquakeService.stopWolfx();
                 Toast.makeText(MainActivity.this,
                         "Wolfx緊急地震速報 切断", Toast.LENGTH_SHORT).show();
             });
@@ -193,23 +250,71 @@ public class MainActivity extends AppCompatActivity
 
         @JavascriptInterface
         public boolean isP2PConnected() {
-            return p2pWebsocket.isConnected();
+            return earthquakeService != null && earthquakeService.isP2PConnected();
         }
 
         @JavascriptInterface
         public boolean isWolfxConnected() {
-            return wolfxWebsocket.isConnected();
+            return earthquakeService != null && earthquakeService.isWolfxConnected();
+        }
+
+        @JavascriptInterface
+        public String getFeedHealth() {
+            ForegroundManager.EarthquakeService service = earthquakeService;
+            return service != null ? service.getFeedHealth() : "{}";
+        }
+
+        // --- 遅延計測 ---
+        @JavascriptInterface
+        public String getMetrics() {
+            return LatencyMetrics.getInstance().toJson();
+        }
+
+        /** 描画完了の報告（KoiyureBridge がイベントの trace を返す） */
+        @JavascriptInterface
+        public void reportRendered(int trace) {
+            LatencyMetrics.getInstance().endRender(trace);
+        }
+
+        /** 集計をアプリ専用の外部ストレージに書き出し、パスを返す（失敗時は空文字） */
+        @JavascriptInterface
+        public String exportMetrics() {
+            File dir = getExternalFilesDir(null);
+            if (dir == null) dir = getFilesDir();
+            File file = new File(dir, "latency-metrics-" + System.currentTimeMillis() + ".json");
+            try {
+                LatencyMetrics.getInstance().writeTo(file);
+                return file.getAbsolutePath();
+            } catch (IOException e) {
+                Log.w(TAG, "遅延計測の書き出し失敗: " + e.getMessage());
+                return "";
+            }
+        }
+
+        // --- 記録の再生（負荷試験） ---
+
+        /**
+         * アプリ専用の外部ストレージに置いた記録を再生する
+         * @param speed 1 で記録どおり、10 で10倍速、0 で最速
+         */
+        @JavascriptInterface
+        public boolean startReplay(String fileName, double speed) {
+            ForegroundManager.EarthquakeService service = earthquakeService;
+            return service != null && service.startReplay(fileName, speed);
+        }
+
+        @JavascriptInterface
+        public void stopReplay() {
+            ForegroundManager.EarthquakeService service = earthquakeService;
+            if (service != null) service.stopReplay();
         }
 
         // --- 全機能一括制御 ---
         @JavascriptInterface
         public void startAll() {
             runOnUiThread(() -> {
-                foregroundManager.start();
-                alarmmanagercontroller.start(15); // 15分間隔
-                workManager.start(15);
-                p2pWebsocket.start();
-                wolfxWebsocket.start();
+                foregroundManager.start(); // WebSocketもサービス側で接続される
+                watchdog.start();
                 Toast.makeText(MainActivity.this,
                         "すべてのサービス開始", Toast.LENGTH_LONG).show();
             });
@@ -218,11 +323,8 @@ public class MainActivity extends AppCompatActivity
         @JavascriptInterface
         public void stopAll() {
             runOnUiThread(() -> {
-                foregroundManager.stop();
-                alarmmanagercontroller.stop();
-                workManager.stop();
-                p2pWebsocket.stop();
-                wolfxWebsocket.stop();
+                foregroundManager.stop(); // 見張りも止まる
+                if (earthquakeService != null) earthquakeService.stopFeeds();
                 Toast.makeText(MainActivity.this,
                         "すべてのサービス停止", Toast.LENGTH_LONG).show();
             });
@@ -238,6 +340,28 @@ public class MainActivity extends AppCompatActivity
             }
         }
 
+        // --- 現在地（S波到達予測用） ---
+        @JavascriptInterface
+        public void setUserLocation(double latitude, double longitude) {
+            new UserLocation(MainActivity.this).save(latitude, longitude);
+            ForegroundManager.EarthquakeService service = earthquakeService;
+            if (service != null) {
+                service.setUserLocation(latitude, longitude);
+            }
+        }
+
+        // --- 受信履歴（新しい順。続きは前ページ最後の time / id を渡す） ---
+        @JavascriptInterface
+        public String getHistory(double beforeTime, double beforeId, int limit) {
+            return EventStore.getInstance(MainActivity.this)
+                    .queryPage((long) beforeTime, (long) beforeId, limit, null, null);
+        }
+
+        @JavascriptInterface
+        public String getEventHistory(String eventId) {
+            return EventStore.getInstance(MainActivity.this).queryEvent(eventId);
+        }
+
         // --- システム情報 ---
         @JavascriptInterface
         public String getDeviceInfo() {
@@ -247,18 +371,16 @@ public class MainActivity extends AppCompatActivity
         }
     }
 
-    // ========================
-    // ユーティリティ
-    // ========================
-    private String escapeJson(String json) {
-        return "'" + json.replace("'", "\\'") + "'";
-    }
-
     @Override
     protected void onDestroy() {
         super.onDestroy();
         // アクティビティ破棄時もサービスは継続
         // （完全停止はWebViewから明示的に指示）
+        if (earthquakeService != null) {
+            earthquakeService.unsubscribe(this, this, this);
+        }
+        unbindService(serviceConnection);
+        webBridge.close();
     }
 
     @Override
@@ -0,0 +1,109 @@
+package com.example.koiyure;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.util.Log;
+
+/**
+ * 既定ネットワークの変化を監視し、フィードの接続制御に伝える
+ * ・インターネット到達が確認された（VALIDATED）ネットワークが現れたらオンライン
+ * ・既定ネットワークを失ったらオフライン（再接続を止める）
+ * ・別のネットワークへ切り替わったら（Wi-Fi⇔モバイル）ハンドオーバー
+ * コールバックは ConnectivityManager のスレッドから呼ばれる
+ */
+public class NetworkMonitor {
+
+    private static final String TAG = "NetworkMonitor";
+
+    public interface Listener {
+        void onOnline();
+
+        void onOffline();
+
+        /** 既定ネットワークが別のものに切り替わった（旧ネットワークのソケットはやがて切れる） */
+        void onHandover();
+    }
+
+    private final ConnectivityManager connectivityManager;
+    private final Listener listener;
+
+    // 登録前に start() が今の状態で埋め、その後はコールバックスレッドだけが触る
+    private Network current;
+    private boolean online = true;
+
+    private final ConnectivityManager.NetworkCallback callback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities caps) {
+            if (!isUsable(caps)) return; // 到達確認が済むまで待つ
+
+            Network previous = current;
+            current = network;
+            if (!online) {
+                online = true;
+                Log.d(TAG, "オンライン: " + describe(caps));
+                listener.onOnline();
+            } else if (previous != null && !previous.equals(network)) {
+                Log.d(TAG, "ネットワーク切替: " + describe(caps));
+                listener.onHandover();
+            }
+        }
+
+        @Override
+        public void onLost(Network network) {
+            if (current != null && !current.equals(network)) return;
+            current = null;
+            if (online) {
+                online = false;
+                Log.d(TAG, "オフライン");
+                listener.onOffline();
+            }
+        }
+    };
+
+    public NetworkMonitor(Context context, Listener listener) {
+        this.connectivityManager = context.getSystemService(ConnectivityManager.class);
+        this.listener = listener;
+    }
+
+    public void start() {
+        if (connectivityManager == null) return;
+        // 既定ネットワークが無いまま登録しても onLost は来ないので、今の状態から始める
+        Network active = connectivityManager.getActiveNetwork();
+        NetworkCapabilities caps = active != null ? connectivityManager.getNetworkCapabilities(active) : null;
+        if (isUsable(caps)) {
+            current = active;
+            online = true;
+        } else {
+            current = null;
+            online = false;
+            Log.d(TAG, "開始時オフライン");
+            listener.onOffline();
+        }
+        connectivityManager.registerDefaultNetworkCallback(callback);
+    }
+
+    public void stop() {
+        if (connectivityManager != null) {
+            try {
+                connectivityManager.unregisterNetworkCallback(callback);
+            } catch (IllegalArgumentException e) {
+                // 未登録
+            }
+        }
+    }
+
+    private static boolean isUsable(NetworkCapabilities caps) {
+        return caps != null
+                && caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                && caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+    }
+
+    private static String describe(NetworkCapabilities caps) {
+        if (caps.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) return "Wi-Fi";
+        if (caps.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) return "モバイル";
+        if (caps.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET)) return "有線";
+        return "その他";
+    }
+}
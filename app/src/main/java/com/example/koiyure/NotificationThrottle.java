@@ -0,0 +1,166 @@
+package com.example.koiyure;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 通知の更新を間引く
+ * ・同じ通知IDの更新は window に1回（先頭はすぐ出し、間の更新は最新の1件にまとめて窓の終わりに出す）
+ * ・全体でも window あたり maxPerWindow 件まで（超えた分は空きができるまで待たせる）
+ * ・重要度（level）が前回出したものより上がったときだけ音・振動を鳴らし直す
+ * どのスレッドから submit してもよい。Host.post はロックの外で呼ぶ
+ */
+public final class NotificationThrottle {
+
+    /** 通知の中身（ID が同じものは同じ通知を置き換える） */
+    public static final class Alert {
+        public final int id;
+        public final String channel;
+        public final String title;
+        public final String text;
+        public final int level;
+        // 通知までの遅延を記録する経路と受信時刻（記録しない通知は receivedNanos = 0）
+        public final int feed;
+        public final long receivedNanos;
+        // true なら重要度が上がっても鳴らさない（後から取り直した報など）
+        public final boolean silent;
+
+        public Alert(int id, String channel, String title, String text, int level,
+                     int feed, long receivedNanos) {
+            this(id, channel, title, text, level, feed, receivedNanos, false);
+        }
+
+        public Alert(int id, String channel, String title, String text, int level,
+                     int feed, long receivedNanos, boolean silent) {
+            this.id = id;
+            this.channel = channel;
+            this.title = title;
+            this.text = text;
+            this.level = level;
+            this.feed = feed;
+            this.receivedNanos = receivedNanos;
+            this.silent = silent;
+        }
+    }
+
+    /** 実際に通知を出す側 */
+    public interface Host {
+        /** @param audible false なら音・振動なしで中身だけ置き換える */
+        void post(Alert alert, boolean audible);
+
+        void schedule(Runnable task, long delayMillis);
+
+        /** 単調時計（ミリ秒） */
+        long now();
+    }
+
+    // これより長く更新のない通知IDは忘れる（次に来たら新しい通知として鳴らす）
+    private static final long FORGET_AFTER_MILLIS = 10 * 60_000;
+
+    private static final class Slot {
+        long lastPostAt;
+        int lastLevel;
+        Alert pending;
+        int pendingLevel;
+    }
+
+    private final long window;
+    private final Host host;
+    private final Map<Integer, Slot> slots = new HashMap<>();
+    // 直近に出した時刻（全体の件数制限用のリング）
+    private final long[] recentPosts;
+    private int nextPost = 0;
+
+    public NotificationThrottle(long windowMillis, int maxPerWindow, Host host) {
+        this.window = windowMillis;
+        this.host = host;
+        recentPosts = new long[maxPerWindow];
+        for (int i = 0; i < maxPerWindow; i++) {
+            recentPosts[i] = Long.MIN_VALUE / 2;
+        }
+    }
+
+    public void submit(Alert alert) {
+        boolean audible;
+        synchronized (this) {
+            long now = host.now();
+            prune(now);
+            Slot slot = slots.get(alert.id);
+            if (slot == null) {
+                slot = new Slot();
+                slot.lastPostAt = Long.MIN_VALUE / 2;
+                slot.lastLevel = Integer.MIN_VALUE;
+                slots.put(alert.id, slot);
+            }
+            if (slot.pending != null) {
+                // 既に待っている更新を最新のものに差し替える
+                slot.pending = alert;
+                slot.pendingLevel = Math.max(slot.pendingLevel, alert.level);
+                return;
+            }
+            long wait = Math.max(slot.lastPostAt + window - now, globalWait(now));
+            if (wait > 0) {
+                slot.pending = alert;
+                slot.pendingLevel = alert.level;
+                int id = alert.id;
+                host.schedule(() -> flush(id), wait);
+                return;
+            }
+            audible = markPosted(slot, alert.level, alert.level, now);
+        }
+        host.post(alert, audible);
+    }
+
+    private void flush(int id) {
+        Alert alert;
+        boolean audible;
+        synchronized (this) {
+            Slot slot = slots.get(id);
+            if (slot == null || slot.pending == null) return;
+            long now = host.now();
+            long wait = globalWait(now);
+            if (wait > 0) {
+                host.schedule(() -> flush(id), wait);
+                return;
+            }
+            alert = slot.pending;
+            slot.pending = null;
+            audible = markPosted(slot, slot.pendingLevel, alert.level, now);
+        }
+        host.post(alert, audible);
+    }
+
+    /** まだ出していない更新を捨てる（サービス終了時） */
+    public synchronized void clear() {
+        slots.clear();
+    }
+
+    /**
+     * @param maxLevel まとめた更新の中で最も高い重要度
+     * @param level 実際に出す更新の重要度（次回の比較に使う）
+     */
+    private boolean markPosted(Slot slot, int maxLevel, int level, long now) {
+        boolean audible = maxLevel > slot.lastLevel;
+        slot.lastPostAt = now;
+        slot.lastLevel = level;
+        recentPosts[nextPost] = now;
+        nextPost = (nextPost + 1) % recentPosts.length;
+        return audible;
+    }
+
+    /** 全体の件数制限で待つ時間（0 以下ならすぐ出せる） */
+    private long globalWait(long now) {
+        return recentPosts[nextPost] + window - now;
+    }
+
+    private void prune(long now) {
+        Iterator<Slot> it = slots.values().iterator();
+        while (it.hasNext()) {
+            Slot slot = it.next();
+            if (slot.pending == null && now - slot.lastPostAt > FORGET_AFTER_MILLIS) {
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.koiyure;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * P2P地震情報の切断中に配信された分を REST の /v2/history から取り直す
+ * 最後に受け取った配信時刻より新しいものだけをページ単位で遡って取得し、
+ * 受信済みの id は除いて古い順に返す（取得するページ数と遡る時間には上限がある）
+ */
+public class P2PHistoryBackfill {
+
+    public static final String DEFAULT_BASE_URL = "https://api.p2pquake.net/";
+
+    // 取り直す情報（555 / 561 は件数が多く、集計にしか使わないので対象外）
+    private static final int[] CODES = {
+            P2PQuakeDecoder.CODE_QUAKE,
+            P2PQuakeDecoder.CODE_TSUNAMI,
+            P2PQuakeDecoder.CODE_EEW_DETECTION,
+            P2PQuakeDecoder.CODE_EEW,
+            P2PQuakeDecoder.CODE_USERQUAKE_EVALUATION,
+    };
+    static final int PAGE_SIZE = 100;
+    static final int MAX_PAGES = 5;
+    // これより前の分は取り直さない（長い切断の後に古い情報をまとめて流さない）
+    static final long MAX_GAP_MILLIS = 30 * 60_000;
+    // 重複判定のために覚えておく id の数
+    private static final int MAX_SEEN_IDS = 1024;
+
+    private final OkHttpClient client;
+    private final HttpUrl historyUrl;
+    private final JsonCursor cursor = new JsonCursor();
+
+    private final Map<String, Boolean> seenIds = new LinkedHashMap<String, Boolean>(64, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_SEEN_IDS;
+        }
+    };
+    private long lastTime = 0;
+    private String lastId;
+
+    public P2PHistoryBackfill(OkHttpClient client, String baseUrl) {
+        // WebSocket 用の共有クライアントは読み取り無期限なので、REST 用にだけタイムアウトを付ける
+        this.client = client.newBuilder()
+                .readTimeout(10, TimeUnit.SECONDS)
+                .build();
+        this.historyUrl = HttpUrl.get(baseUrl).newBuilder()
+                .addPathSegments("v2/history")
+                .build();
+    }
+
+    // ------------------------
+    // 受信済みの記録
+    // ------------------------
+
+    /**
+     * 配信した（する）メッセージを記録する。同じ id を既に記録していれば false
+     * id の無いもの（561 の集計など）は常に true で、取り直しの起点も進めない
+     * （集計の時刻は端末の時計で、窓を閉じたときに付くので、切断後の時刻になることがある）
+     */
+    public synchronized boolean markDelivered(String id, long time) {
+        if (id == null) return true;
+        if (time > lastTime) {
+            lastTime = time;
+        }
+        if (seenIds.put(id, Boolean.TRUE) != null) return false;
+        lastId = id;
+        return true;
+    }
+
+    /** 最後に受け取った配信時刻（まだ何も受け取っていなければ 0） */
+    public synchronized long getLastTime() {
+        return lastTime;
+    }
+
+    /**
+     * 取り直しの起点（まだ何も受け取っていなければ 0）
+     * 最後の配信時刻が古すぎるときは直近 MAX_GAP_MILLIS に詰める
+     */
+    public synchronized long backfillSince(long now) {
+        if (lastTime == 0) return 0;
+        return Math.max(lastTime, now - MAX_GAP_MILLIS);
+    }
+
+    public synchronized String getLastId() {
+        return lastId;
+    }
+
+    private synchronized boolean isSeen(String id) {
+        return id != null && seenIds.containsKey(id);
+    }
+
+    // ------------------------
+    // 取得
+    // ------------------------
+
+    /**
+     * since（エポックミリ秒）以降に配信された未受信のフレームを古い順に返す
+     * 新しい順のページを since より古いものが出るまで、最大 MAX_PAGES ページ遡る
+     */
+    public List<String> fetchSince(long since) throws IOException {
+        List<String> frames = new ArrayList<>();
+        Set<String> ids = new HashSet<>(); // 取得中に新着があるとページ境界で重なる
+        for (int page = 0; page < MAX_PAGES; page++) {
+            String body = fetchPage(page * PAGE_SIZE);
+            int count = collect(body, since, frames, ids);
+            if (count < PAGE_SIZE) break; // since より古いもの、または最後のページに達した
+        }
+        Collections.reverse(frames);
+        return frames;
+    }
+
+    private String fetchPage(int offset) throws IOException {
+        HttpUrl.Builder url = historyUrl.newBuilder();
+        for (int code : CODES) {
+            url.addQueryParameter("codes", Integer.toString(code));
+        }
+        url.addQueryParameter("limit", Integer.toString(PAGE_SIZE));
+        url.addQueryParameter("offset", Integer.toString(offset));
+
+        Request request = new Request.Builder().url(url.build()).build();
+        try (Response response = client.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                throw new IOException("history: HTTP " + response.code());
+            }
+            return body.string();
+        }
+    }
+
+    /**
+     * 1ページ分（新しい順の配列）から since 以降の未受信フレームを out に加える
+     * @return since 以降だった要素数（受信済みも数える）。PAGE_SIZE 未満なら次のページは不要
+     */
+    int collect(String body, long since, List<String> out, Set<String> ids) {
+        JsonCursor c = cursor.reset(body);
+        int count = 0;
+        c.beginArray();
+        while (c.nextElement()) {
+            int start = c.position();
+            String id = null;
+            long time = 0;
+            c.beginObject();
+            while (c.nextField()) {
+                if (c.fieldIs("id") || c.fieldIs("_id")) {
+                    id = c.readString();
+                } else if (c.fieldIs("time")) {
+                    time = c.readJmaTime(0);
+                } else {
+                    c.skipValue();
+                }
+            }
+            if (time < since) {
+                return count;
+            }
+            count++;
+            if (!isSeen(id) && (id == null || ids.add(id))) {
+                out.add(c.slice(start, c.position()));
+            }
+        }
+        return count;
+    }
+}
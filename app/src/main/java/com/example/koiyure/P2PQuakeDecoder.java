@@ -0,0 +1,640 @@
+package com.example.koiyure;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * P2P地震情報 API v2 のフレームを型付きメッセージに変換する
+ * まず "code" だけを先読みし、件数の多い 555 / 561 は本文を解析せずに破棄・集計する
+ * （ソケットごとに1インスタンス。スレッドセーフではない）
+ */
+public final class P2PQuakeDecoder {
+
+    public static final int CODE_QUAKE = 551;               // 地震情報
+    public static final int CODE_TSUNAMI = 552;             // 津波予報
+    public static final int CODE_EEW_DETECTION = 554;       // 緊急地震速報 発表検出
+    public static final int CODE_AREAPEERS = 555;           // 各地域ピア数
+    public static final int CODE_EEW = 556;                 // 緊急地震速報（警報）
+    public static final int CODE_USERQUAKE = 561;           // 地震感知情報
+    public static final int CODE_USERQUAKE_EVALUATION = 9611; // 地震感知情報 解析結果
+
+    // 561 はこの間隔でまとめて1件にする
+    private static final long USERQUAKE_WINDOW_MILLIS = 10_000;
+    private static final int MAX_AREA_CODE = 1000;
+
+    private final JsonCursor cursor = new JsonCursor();
+
+    // 561 集計用
+    private final int[] userQuakeCounts = new int[MAX_AREA_CODE];
+    private final int[] userQuakeAreas = new int[MAX_AREA_CODE];
+    private int userQuakeAreaCount = 0;
+    private int userQuakeTotal = 0;
+    private long userQuakeWindowStart = 0;
+
+    private long droppedAreapeers = 0;
+
+    public long getDroppedAreapeers() {
+        return droppedAreapeers;
+    }
+
+    /**
+     * フレームを解析する。破棄・集計中のフレームや未対応のコードは null
+     * @param now 受信時刻（エポックミリ秒）
+     */
+    public Message decode(String text, long now) {
+        JsonCursor c = cursor.reset(text);
+        int code = (int) c.peekTopLevelLong("code", -1);
+        switch (code) {
+            case CODE_AREAPEERS:
+                droppedAreapeers++;
+                return null;
+            case CODE_USERQUAKE:
+                return addUserQuake((int) c.peekTopLevelLong("area", -1), now);
+            case CODE_QUAKE:
+                return parseQuake(c);
+            case CODE_TSUNAMI:
+                return parseTsunami(c);
+            case CODE_EEW_DETECTION:
+                return parseEewDetection(c);
+            case CODE_EEW:
+                return parseEew(c, now);
+            case CODE_USERQUAKE_EVALUATION:
+                return parseEvaluation(c);
+            default:
+                return null;
+        }
+    }
+
+    /** フレームの code だけを読む（無ければ -1） */
+    public int peekCode(String text) {
+        return (int) cursor.reset(text).peekTopLevelLong("code", -1);
+    }
+
+    /** 集計中の 561 の窓が閉じる時刻（集計中でなければ 0）。この時刻に flushUserQuakeIfDue を呼ぶ */
+    public long userQuakeDeadline() {
+        return userQuakeTotal == 0 ? 0 : userQuakeWindowStart + USERQUAKE_WINDOW_MILLIS;
+    }
+
+    /** 窓が閉じた 561 の集計を1件にまとめる（集計中でない・まだ窓の途中なら null） */
+    public UserQuakeSummary flushUserQuakeIfDue(long now) {
+        if (userQuakeTotal == 0 || now - userQuakeWindowStart < USERQUAKE_WINDOW_MILLIS) return null;
+        return flushUserQuake(now);
+    }
+
+    /** 集計中の 561 を強制的に1件にまとめる（無ければ null） */
+    public UserQuakeSummary flushUserQuake(long now) {
+        if (userQuakeTotal == 0) return null;
+        UserQuakeSummary s = new UserQuakeSummary();
+        s.time = now;
+        s.windowStart = userQuakeWindowStart;
+        s.windowEnd = now;
+        s.total = userQuakeTotal;
+        s.areas = new int[userQuakeAreaCount];
+        s.counts = new int[userQuakeAreaCount];
+        for (int i = 0; i < userQuakeAreaCount; i++) {
+            int area = userQuakeAreas[i];
+            s.areas[i] = area;
+            s.counts[i] = userQuakeCounts[area];
+            userQuakeCounts[area] = 0;
+        }
+        userQuakeAreaCount = 0;
+        userQuakeTotal = 0;
+        userQuakeWindowStart = 0;
+        return s;
+    }
+
+    // ------------------------
+    // コード別パーサ
+    // ------------------------
+    private Message addUserQuake(int area, long now) {
+        if (userQuakeTotal == 0) {
+            userQuakeWindowStart = now;
+        }
+        if (area >= 0 && area < MAX_AREA_CODE) {
+            if (userQuakeCounts[area]++ == 0) {
+                userQuakeAreas[userQuakeAreaCount++] = area;
+            }
+        }
+        userQuakeTotal++;
+        if (now - userQuakeWindowStart >= USERQUAKE_WINDOW_MILLIS) {
+            return flushUserQuake(now);
+        }
+        return null;
+    }
+
+    private QuakeInfo parseQuake(JsonCursor c) {
+        QuakeInfo q = new QuakeInfo();
+        List<String> prefs = new ArrayList<>();
+        List<String> addrs = new ArrayList<>();
+        List<Integer> scales = new ArrayList<>();
+        c.beginObject();
+        while (c.nextField()) {
+            if (readCommon(c, q)) continue;
+            if (c.fieldIs("issue")) {
+                c.beginObject();
+                while (c.nextField()) {
+                    if (c.fieldIs("type")) {
+                        q.issueType = c.readString();
+                    } else {
+                        c.skipValue();
+                    }
+                }
+            } else if (c.fieldIs("earthquake")) {
+                c.beginObject();
+                while (c.nextField()) {
+                    if (c.fieldIs("time")) {
+                        q.originTime = c.readJmaTime(0);
+                    } else if (c.fieldIs("maxScale")) {
+                        q.maxScale = c.readInt(-1);
+                    } else if (c.fieldIs("domesticTsunami")) {
+                        q.domesticTsunami = c.readString();
+                    } else if (c.fieldIs("hypocenter")) {
+                        c.beginObject();
+                        while (c.nextField()) {
+                            if (c.fieldIs("name")) {
+                                q.hypocenter = c.readString();
+                            } else if (c.fieldIs("latitude")) {
+                                q.latitude = known(c.readDouble(-200), -200);
+                            } else if (c.fieldIs("longitude")) {
+                                q.longitude = known(c.readDouble(-200), -200);
+                            } else if (c.fieldIs("depth")) {
+                                q.depth = c.readInt(-1);
+                            } else if (c.fieldIs("magnitude")) {
+                                q.magnitude = known(c.readDouble(-1), -1);
+                            } else {
+                                c.skipValue();
+                            }
+                        }
+                    } else {
+                        c.skipValue();
+                    }
+                }
+            } else if (c.fieldIs("points")) {
+                c.beginArray();
+                while (c.nextElement()) {
+                    String pref = null;
+                    String addr = null;
+                    int scale = -1;
+                    c.beginObject();
+                    while (c.nextField()) {
+                        if (c.fieldIs("pref")) {
+                            pref = c.readString();
+                        } else if (c.fieldIs("addr")) {
+                            addr = c.readString();
+                        } else if (c.fieldIs("scale")) {
+                            scale = c.readInt(-1);
+                        } else {
+                            c.skipValue();
+                        }
+                    }
+                    prefs.add(pref);
+                    addrs.add(addr);
+                    scales.add(scale);
+                }
+            } else {
+                c.skipValue();
+            }
+        }
+        int n = addrs.size();
+        q.pointPrefs = prefs.toArray(new String[n]);
+        q.pointAddrs = addrs.toArray(new String[n]);
+        q.pointScales = new int[n];
+        for (int i = 0; i < n; i++) {
+            q.pointScales[i] = scales.get(i);
+        }
+        return q;
+    }
+
+    private Tsunami parseTsunami(JsonCursor c) {
+        Tsunami t = new Tsunami();
+        List<String> names = new ArrayList<>();
+        List<String> grades = new ArrayList<>();
+        List<Boolean> immediates = new ArrayList<>();
+        c.beginObject();
+        while (c.nextField()) {
+            if (readCommon(c, t)) continue;
+            if (c.fieldIs("cancelled")) {
+                t.cancelled = c.readBoolean();
+            } else if (c.fieldIs("areas")) {
+                c.beginArray();
+                while (c.nextElement()) {
+                    String name = null;
+                    String grade = null;
+                    boolean immediate = false;
+                    c.beginObject();
+                    while (c.nextField()) {
+                        if (c.fieldIs("name")) {
+                            name = c.readString();
+                        } else if (c.fieldIs("grade")) {
+                            grade = c.readString();
+                        } else if (c.fieldIs("immediate")) {
+                            immediate = c.readBoolean();
+                        } else {
+                            c.skipValue();
+                        }
+                    }
+                    names.add(name);
+                    grades.add(grade);
+                    immediates.add(immediate);
+                }
+            } else {
+                c.skipValue();
+            }
+        }
+        int n = names.size();
+        t.areaNames = names.toArray(new String[n]);
+        t.areaGrades = grades.toArray(new String[n]);
+        t.areaImmediate = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            t.areaImmediate[i] = immediates.get(i);
+        }
+        return t;
+    }
+
+    private EewDetection parseEewDetection(JsonCursor c) {
+        EewDetection d = new EewDetection();
+        c.beginObject();
+        while (c.nextField()) {
+            if (readCommon(c, d)) continue;
+            if (c.fieldIs("type")) {
+                d.type = c.readString();
+            } else {
+                c.skipValue();
+            }
+        }
+        return d;
+    }
+
+    private Eew parseEew(JsonCursor c, long now) {
+        Eew e = new Eew();
+        EewRecord r = EewRecord.obtain();
+        e.record = r;
+        r.source = EewRecord.SOURCE_P2P;
+        r.warning = true; // 556 は警報のみ
+        r.receivedAt = now;
+        r.title = "緊急地震速報（警報）";
+        int maxScale = -1;
+        try {
+            c.beginObject();
+            while (c.nextField()) {
+                if (readCommon(c, e)) continue;
+                if (c.fieldIs("test")) {
+                    r.training = c.readBoolean();
+                } else if (c.fieldIs("cancelled")) {
+                    r.cancel = c.readBoolean();
+                } else if (c.fieldIs("issue")) {
+                    c.beginObject();
+                    while (c.nextField()) {
+                        if (c.fieldIs("eventId")) {
+                            r.eventId = c.readString();
+                        } else if (c.fieldIs("serial")) {
+                            r.serial = c.readInt(0);
+                        } else if (c.fieldIs("time")) {
+                            r.announcedTime = c.readJmaTime(0);
+                        } else {
+                            c.skipValue();
+                        }
+                    }
+                } else if (c.fieldIs("earthquake")) {
+                    c.beginObject();
+                    while (c.nextField()) {
+                        if (c.fieldIs("originTime")) {
+                            r.originTime = c.readJmaTime(0);
+                        } else if (c.fieldIs("condition")) {
+                            r.assumption = c.readStringEquals("仮定震源要素");
+                        } else if (c.fieldIs("hypocenter")) {
+                            c.beginObject();
+                            while (c.nextField()) {
+                                if (c.fieldIs("name")) {
+                                    r.hypocenter = c.readString();
+                                } else if (c.fieldIs("latitude")) {
+                                    r.latitude = known(c.readDouble(-200), -200);
+                                } else if (c.fieldIs("longitude")) {
+                                    r.longitude = known(c.readDouble(-200), -200);
+                                } else if (c.fieldIs("depth")) {
+                                    r.depth = c.readInt(-1);
+                                } else if (c.fieldIs("magnitude")) {
+                                    r.magnitude = known(c.readDouble(-1), -1);
+                                } else {
+                                    c.skipValue();
+                                }
+                            }
+                        } else {
+                            c.skipValue();
+                        }
+                    }
+                } else if (c.fieldIs("areas")) {
+                    c.beginArray();
+                    while (c.nextElement()) {
+                        c.beginObject();
+                        while (c.nextField()) {
+                            if (c.fieldIs("scaleFrom")) {
+                                maxScale = Math.max(maxScale, c.readInt(-1));
+                            } else {
+                                c.skipValue();
+                            }
+                        }
+                    }
+                } else {
+                    c.skipValue();
+                }
+            }
+        } catch (RuntimeException ex) {
+            r.recycle();
+            throw ex;
+        }
+        if (maxScale > 0) {
+            r.maxIntensity = scaleToString(maxScale);
+        }
+        return e;
+    }
+
+    private UserQuakeEvaluation parseEvaluation(JsonCursor c) {
+        UserQuakeEvaluation v = new UserQuakeEvaluation();
+        c.beginObject();
+        while (c.nextField()) {
+            if (readCommon(c, v)) continue;
+            if (c.fieldIs("count")) {
+                v.count = c.readInt(0);
+            } else if (c.fieldIs("confidence")) {
+                v.confidence = c.readDouble(0);
+            } else if (c.fieldIs("started_at")) {
+                v.startedAt = c.readJmaTime(0);
+            } else if (c.fieldIs("updated_at")) {
+                v.updatedAt = c.readJmaTime(0);
+            } else {
+                c.skipValue();
+            }
+        }
+        return v;
+    }
+
+    /** 全コード共通のフィールド（id / time / code）を読んだら true */
+    private static boolean readCommon(JsonCursor c, Message m) {
+        if (c.fieldIs("_id") || c.fieldIs("id")) {
+            m.id = c.readString();
+        } else if (c.fieldIs("time")) {
+            m.time = c.readJmaTime(0);
+        } else if (c.fieldIs("code")) {
+            c.skipValue();
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static double known(double v, double unknown) {
+        return v == unknown ? Double.NaN : v;
+    }
+
+    /** P2P地震情報の震度コード（10〜70）を表示用文字列に変換 */
+    public static String scaleToString(int scale) {
+        switch (scale) {
+            case 10: return "1";
+            case 20: return "2";
+            case 30: return "3";
+            case 40: return "4";
+            case 45: return "5弱";
+            case 46: return "5弱以上（推定）";
+            case 50: return "5強";
+            case 55: return "6弱";
+            case 60: return "6強";
+            case 70: return "7";
+            default: return "不明";
+        }
+    }
+
+    // ========================
+    // 型付きメッセージ
+    // ========================
+    public abstract static class Message {
+        public final int code;
+        public String id;
+        public long time; // 配信時刻（エポックミリ秒）
+        public boolean backfilled; // 切断中の分を後から取り直したもの（記録・表示はするが鳴らさない）
+        public boolean replayed;   // 記録の再生で流したもの（履歴に残さず、鳴らさない）
+
+        Message(int code) {
+            this.code = code;
+        }
+
+        /** 通知はしても音・振動は鳴らさない報 */
+        public boolean isSilent() {
+            return backfilled || replayed;
+        }
+
+        /** 通知用の要約。通知しない種類は null */
+        public String summary() {
+            return null;
+        }
+
+        public String toJson() {
+            StringBuilder sb = new StringBuilder(256);
+            sb.append("{\"code\":").append(code).append(",\"id\":");
+            JsonCursor.appendQuoted(sb, id);
+            sb.append(",\"time\":").append(time);
+            if (backfilled) sb.append(",\"backfilled\":true");
+            if (replayed) sb.append(",\"replayed\":true");
+            appendFields(sb);
+            return sb.append('}').toString();
+        }
+
+        abstract void appendFields(StringBuilder sb);
+    }
+
+    /** 551 地震情報 */
+    public static final class QuakeInfo extends Message {
+        public String issueType;
+        public long originTime;
+        public String hypocenter;
+        public double latitude = Double.NaN;
+        public double longitude = Double.NaN;
+        public int depth = -1;
+        public double magnitude = Double.NaN;
+        public int maxScale = -1;
+        public String domesticTsunami;
+        public String[] pointPrefs;
+        public String[] pointAddrs;
+        public int[] pointScales;
+        // FeedManager が空間索引で照合して埋める（未照合なら null / 要素は NaN）
+        public float[] pointLatitudes;
+        public float[] pointLongitudes;
+        public int userScale = -1;
+
+        QuakeInfo() {
+            super(CODE_QUAKE);
+        }
+
+        @Override
+        public String summary() {
+            StringBuilder sb = new StringBuilder(64);
+            sb.append(hypocenter != null && !hypocenter.isEmpty() ? hypocenter : "震源調査中");
+            if (!Double.isNaN(magnitude)) sb.append(" M").append(magnitude);
+            if (depth > 0) sb.append(" 深さ").append(depth).append("km");
+            if (maxScale > 0) sb.append(" 最大震度").append(scaleToString(maxScale));
+            if (userScale > 0) sb.append(" 現在地付近 震度").append(scaleToString(userScale));
+            return sb.toString();
+        }
+
+        @Override
+        void appendFields(StringBuilder sb) {
+            sb.append(",\"issueType\":");
+            JsonCursor.appendQuoted(sb, issueType);
+            sb.append(",\"originTime\":").append(originTime);
+            sb.append(",\"hypocenter\":");
+            JsonCursor.appendQuoted(sb, hypocenter);
+            appendNumber(sb.append(",\"latitude\":"), latitude);
+            appendNumber(sb.append(",\"longitude\":"), longitude);
+            sb.append(",\"depth\":").append(depth);
+            appendNumber(sb.append(",\"magnitude\":"), magnitude);
+            sb.append(",\"maxScale\":").append(maxScale);
+            sb.append(",\"domesticTsunami\":");
+            JsonCursor.appendQuoted(sb, domesticTsunami);
+            sb.append(",\"userScale\":").append(userScale);
+            sb.append(",\"points\":[");
+            for (int i = 0; i < pointAddrs.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append("{\"pref\":");
+                JsonCursor.appendQuoted(sb, pointPrefs[i]);
+                sb.append(",\"addr\":");
+                JsonCursor.appendQuoted(sb, pointAddrs[i]);
+                sb.append(",\"scale\":").append(pointScales[i]);
+                if (pointLatitudes != null) {
+                    appendNumber(sb.append(",\"lat\":"), pointLatitudes[i]);
+                    appendNumber(sb.append(",\"lon\":"), pointLongitudes[i]);
+                }
+                sb.append('}');
+            }
+            sb.append(']');
+        }
+    }
+
+    /** 552 津波予報 */
+    public static final class Tsunami extends Message {
+        public boolean cancelled;
+        public String[] areaNames;
+        public String[] areaGrades;
+        public boolean[] areaImmediate;
+
+        Tsunami() {
+            super(CODE_TSUNAMI);
+        }
+
+        @Override
+        public String summary() {
+            if (cancelled) return "津波予報は解除されました";
+            return "津波予報 " + areaNames.length + "区域";
+        }
+
+        @Override
+        void appendFields(StringBuilder sb) {
+            sb.append(",\"cancelled\":").append(cancelled);
+            sb.append(",\"areas\":[");
+            for (int i = 0; i < areaNames.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append("{\"name\":");
+                JsonCursor.appendQuoted(sb, areaNames[i]);
+                sb.append(",\"grade\":");
+                JsonCursor.appendQuoted(sb, areaGrades[i]);
+                sb.append(",\"immediate\":").append(areaImmediate[i]).append('}');
+            }
+            sb.append(']');
+        }
+    }
+
+    /** 554 緊急地震速報 発表検出 */
+    public static final class EewDetection extends Message {
+        public String type;
+
+        EewDetection() {
+            super(CODE_EEW_DETECTION);
+        }
+
+        @Override
+        public String summary() {
+            return "緊急地震速報の発表を検出しました";
+        }
+
+        @Override
+        void appendFields(StringBuilder sb) {
+            sb.append(",\"type\":");
+            JsonCursor.appendQuoted(sb, type);
+        }
+    }
+
+    /**
+     * 556 緊急地震速報（警報）
+     * record はコールバック中だけ有効（P2PWebsocket が recycle する）
+     */
+    public static final class Eew extends Message {
+        public EewRecord record;
+
+        Eew() {
+            super(CODE_EEW);
+        }
+
+        @Override
+        public String summary() {
+            return record.summary();
+        }
+
+        @Override
+        void appendFields(StringBuilder sb) {
+            sb.append(",\"eew\":").append(record.toJson());
+        }
+    }
+
+    /** 561 地震感知情報を一定時間まとめたもの */
+    public static final class UserQuakeSummary extends Message {
+        public long windowStart;
+        public long windowEnd;
+        public int total;
+        public int[] areas;
+        public int[] counts;
+
+        UserQuakeSummary() {
+            super(CODE_USERQUAKE);
+        }
+
+        @Override
+        void appendFields(StringBuilder sb) {
+            sb.append(",\"windowStart\":").append(windowStart);
+            sb.append(",\"windowEnd\":").append(windowEnd);
+            sb.append(",\"total\":").append(total);
+            sb.append(",\"areas\":[");
+            for (int i = 0; i < areas.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append('[').append(areas[i]).append(',').append(counts[i]).append(']');
+            }
+            sb.append(']');
+        }
+    }
+
+    /** 9611 地震感知情報 解析結果（地域別信頼度は読み飛ばす） */
+    public static final class UserQuakeEvaluation extends Message {
+        public int count;
+        public double confidence;
+        public long startedAt;
+        public long updatedAt;
+
+        UserQuakeEvaluation() {
+            super(CODE_USERQUAKE_EVALUATION);
+        }
+
+        @Override
+        void appendFields(StringBuilder sb) {
+            sb.append(",\"count\":").append(count);
+            sb.append(",\"confidence\":").append(confidence);
+            sb.append(",\"startedAt\":").append(startedAt);
+            sb.append(",\"updatedAt\":").append(updatedAt);
+        }
+    }
+
+    private static void appendNumber(StringBuilder sb, double v) {
+        if (Double.isNaN(v)) {
+            sb.append("null");
+        } else {
+            sb.append(v);
+        }
+    }
+}
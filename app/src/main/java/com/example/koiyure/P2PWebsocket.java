@@ -1,35 +1,87 @@
 package com.example.koiyure;
 
-import android.os.Handler;
-import android.os.Looper;
-import android.util.Log;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
 import okhttp3.Response;
-import okhttp3.WebSocket;
-import okhttp3.WebSocketListener;
 import okio.ByteString;
 
 public class P2PWebsocket {
 
     private static final String TAG = "P2PWebsocket";
     private static final String URL = "wss://api.p2pquake.net/v2/ws";
+    // P2P はアプリ層の heartbeat が無く、静かな時間帯は数十分何も届かないので
+    // 受信間隔では判定しない（半開きの検出は OkHttp の ping に任せる）
+    private static final long STALL_TIMEOUT_MILLIS = 0;
+    // 大きな地震の直後は 561/9611 などが大量に届くので、本文のログは5件に1件だけ残す
+    private static final int PAYLOAD_SAMPLE_RATE = 5;
+    // フレームの出どころ
+    private static final int ORIGIN_LIVE = 0;
+    private static final int ORIGIN_BACKFILL = 1; // /v2/history から取り直した分
+    private static final int ORIGIN_REPLAY = 2;   // 記録の再生
+    // 取り直しが終わらなくても、保留したライブのフレームはこの時間で流す
+    private static final long HOLD_LIMIT_MILLIS = 2_000;
 
-    private OkHttpClient client;
-    private WebSocket webSocket;
+    static {
+        FeedLog.setSampleRate("p2p", PAYLOAD_SAMPLE_RATE);
+    }
+
+    // 接続・再接続は FeedConnection が接続用スケジューラ上で管理する
+    private final FeedConnection connection = new FeedConnection(TAG, URL,
+            new FeedHealth("p2p", STALL_TIMEOUT_MILLIS), new FeedConnection.Callback() {
+        @Override
+        public void onOpen(Response response) {
+            P2PonOpen(response);
+        }
+
+        @Override
+        public void onMessage(String text) {
+            P2PonMessage(text);
+        }
+
+        @Override
+        public void onMessage(ByteString bytes) {
+            P2PonMessageBinary(bytes);
+        }
+
+        @Override
+        public void onClosing(int code, String reason) {
+            P2PonClosing(code, reason);
+        }
+
+        @Override
+        public void onClosed(int code, String reason) {
+            P2PonClosed(code, reason);
+        }
+
+        @Override
+        public void onFailure(Throwable t, Response response) {
+            P2PonFailure(t, response);
+        }
+    });
     private Listener listener;
+    private final P2PQuakeDecoder decoder = new P2PQuakeDecoder();
 
-    private Handler handler = new Handler(Looper.getMainLooper());
-    private boolean shouldReconnect = true;
-    private int reconnectDelay = 1000; // 初回は1秒後に再接続
-    private final int MAX_DELAY = 16000; // 最大16秒まで延ばす
+    // 再接続後の取り直し（切断中に配信された分）
+    private final P2PHistoryBackfill backfill =
+            new P2PHistoryBackfill(FeedManager.getHttpClient(), P2PHistoryBackfill.DEFAULT_BASE_URL);
+    // デコーダと配信順を守るため、受信・取り直しの配信はこのロックの中で行う
+    private final Object deliveryLock = new Object();
+    // 取り直し中に届いたライブのフレーム（取り直し中でなければ null）
+    // 緊急地震速報（556 / 554）は保留せずにすぐ流す
+    private List<String> heldFrames;
+    // 561 の集計を窓の終わりに出す予約（後続の 561 が来なくても最後の集計を出す）
+    private ScheduledFuture<?> userQuakeFlush;
 
     // ------------------------
     // 外部クラス用インターフェース
     // ------------------------
+    // 555 は破棄、561 は集計済みのものだけが届く
     public interface Listener {
-        void onP2PMessageReceived(String message);
+        void onP2PMessageReceived(P2PQuakeDecoder.Message message);
     }
 
     public void setListener(Listener listener) {
@@ -40,107 +92,199 @@ public class P2PWebsocket {
     // 外部から操作できるメソッド
     // ------------------------
     public void start() {
-        shouldReconnect = true;
-        connect();
+        connection.start();
     }
 
     public void stop() {
-        shouldReconnect = false;
-        if (webSocket != null) {
-            webSocket.close(1000, "アプリ終了");
-        }
+        connection.stop();
+    }
+
+    /** 再接続待ちなら今すぐ接続する */
+    public void reconnectNow() {
+        connection.reconnectNow();
+    }
+
+    public void setNetworkAvailable(boolean available) {
+        connection.setNetworkAvailable(available);
+    }
+
+    /** ネットワーク切替時に接続を張り替える */
+    public void migrate() {
+        connection.migrate();
     }
 
     public boolean isConnected() {
-        return webSocket != null; 
+        return connection.getState() == FeedConnection.State.OPEN;
+    }
+
+    public FeedHealth getHealth() {
+        return connection.getHealth();
+    }
+
+    /** 接続先を変える（null なら既定。次の接続から） */
+    public void setUrl(String url) {
+        connection.setUrl(url != null ? url : URL);
+    }
+
+    /** 受信したのと同じ経路でフレームを処理する（記録の再生用） */
+    void inject(String text) {
+        // 再生した分は取り直しの起点・重複判定に入れず、保留もしない
+        FeedLog.payload(TAG, "p2p", "P2P再生: ", text);
+        synchronized (deliveryLock) {
+            deliver(text, LatencyMetrics.now(), ORIGIN_REPLAY);
+        }
     }
 
     // ------------------------
-    // 内部メソッド（private）
+    // P2P専用メソッド（ログ用）
     // ------------------------
-    private void connect() {
-        client = new OkHttpClient();
-
-        Request request = new Request.Builder()
-                .url(URL)
-                .build();
-
-        webSocket = client.newWebSocket(request, new WebSocketListener() {
-            @Override
-            public void onOpen(WebSocket webSocket, Response response) {
-                reconnectDelay = 1000;
-                P2PonOpen(response);
-            }
-
-            @Override
-            public void onMessage(WebSocket webSocket, String text) {
-                P2PonMessage(text);
-            }
+    private void P2PonOpen(Response response) {
+        FeedLog.d(TAG, "P2P接続成功: " + response.message());
+        startBackfill();
+    }
 
-            @Override
-            public void onMessage(WebSocket webSocket, ByteString bytes) {
-                P2PonMessageBinary(bytes);
+    private void P2PonMessage(String text) {
+        FeedLog.payload(TAG, "p2p", "P2P受信: ", text);
+        long receivedNanos = LatencyMetrics.now();
+        synchronized (deliveryLock) {
+            if (heldFrames != null && !isUrgent(text)) {
+                heldFrames.add(text); // 取り直した分の後に流す
+                return;
             }
+            deliver(text, receivedNanos, ORIGIN_LIVE);
+        }
+    }
 
-            @Override
-            public void onClosing(WebSocket webSocket, int code, String reason) {
-                P2PonClosing(code, reason);
-                webSocket.close(1000, null);
+    // ------------------------
+    // 切断中の取り直し
+    // ------------------------
+    private void startBackfill() {
+        long since = backfill.backfillSince(System.currentTimeMillis());
+        if (since == 0) return; // 初回接続（取り直す区間が無い）
+        List<String> held = new ArrayList<>();
+        synchronized (deliveryLock) {
+            if (heldFrames != null) return;
+            heldFrames = held;
+        }
+        // REST が遅くてもライブの地震情報を待たせすぎない
+        ScheduledFuture<?> holdLimit = FeedManager.getScheduler().schedule(() -> {
+            synchronized (deliveryLock) {
+                if (heldFrames != held) return;
+                FeedLog.w(TAG, "P2P取り直しが長引いたので保留分を先に流す: " + held.size() + "件");
+                releaseHeld();
             }
-
-            @Override
-            public void onClosed(WebSocket webSocket, int code, String reason) {
-                P2PonClosed(code, reason);
-                attemptReconnect();
+        }, HOLD_LIMIT_MILLIS, TimeUnit.MILLISECONDS);
+        // 共有クライアントのスレッドプールで取得する
+        FeedManager.getHttpClient().dispatcher().executorService().execute(() -> {
+            List<String> missing = new ArrayList<>();
+            try {
+                missing = backfill.fetchSince(since);
+                FeedLog.d(TAG, "P2P取り直し: " + missing.size() + "件");
+            } catch (IOException | RuntimeException e) {
+                FeedLog.w(TAG, "P2P取り直し失敗: " + e.getMessage());
             }
-
-            @Override
-            public void onFailure(WebSocket webSocket, Throwable t, Response response) {
-                P2PonFailure(t, response);
-                attemptReconnect();
+            holdLimit.cancel(false);
+            synchronized (deliveryLock) {
+                // 取り直し・保留した分は遅延を計測しない。取り直した分は記録・表示だけで鳴らさない
+                for (String frame : missing) {
+                    deliver(frame, 0, ORIGIN_BACKFILL);
+                }
+                if (heldFrames == held) {
+                    releaseHeld();
+                }
             }
         });
     }
 
-    private void attemptReconnect() {
-        if (!shouldReconnect) return;
-        Log.d(TAG, "再接続を試みます " + reconnectDelay + "ms後");
+    /** 保留したライブのフレームを流して保留をやめる（deliveryLock の中で呼ぶ） */
+    private void releaseHeld() {
+        List<String> held = heldFrames;
+        heldFrames = null;
+        for (String frame : held) {
+            deliver(frame, 0, ORIGIN_LIVE);
+        }
+    }
+
+    /** 保留せずにすぐ流すフレーム（取り直した分との重複は markDelivered で除く） */
+    private boolean isUrgent(String text) {
+        int code = decoder.peekCode(text);
+        return code == P2PQuakeDecoder.CODE_EEW || code == P2PQuakeDecoder.CODE_EEW_DETECTION;
+    }
 
-        handler.postDelayed(() -> {
-            if (shouldReconnect) {
-                connect();
-                reconnectDelay = Math.min(reconnectDelay * 2, MAX_DELAY);
+    private void deliver(String text, long receivedNanos, int origin) {
+        P2PQuakeDecoder.Message message;
+        try {
+            message = decoder.decode(text, System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            FeedLog.w(TAG, "P2P解析失敗: " + e.getMessage());
+            return;
+        }
+        scheduleUserQuakeFlush();
+        if (message == null) return;
+        message.backfilled = origin == ORIGIN_BACKFILL;
+        message.replayed = origin == ORIGIN_REPLAY;
+        if (message instanceof P2PQuakeDecoder.Eew) {
+            EewRecord record = ((P2PQuakeDecoder.Eew) message).record;
+            record.receivedNanos = receivedNanos;
+            record.replayed = message.replayed;
+        }
+        dispatch(message);
+    }
+
+    /** デコード済みのメッセージを重複を除いて流す（deliveryLock の中で呼ぶ） */
+    private void dispatch(P2PQuakeDecoder.Message message) {
+        try {
+            if (!message.replayed && !backfill.markDelivered(message.id, message.time)) {
+                return; // 取り直しとライブで重複した分
+            }
+            if (listener != null) {
+                listener.onP2PMessageReceived(message);
             }
-        }, reconnectDelay);
+        } finally {
+            if (message instanceof P2PQuakeDecoder.Eew) {
+                ((P2PQuakeDecoder.Eew) message).record.recycle();
+            }
+        }
     }
 
     // ------------------------
-    // P2P専用メソッド（ログ用）
+    // 561 の集計
     // ------------------------
-    private void P2PonOpen(Response response) {
-        Log.d(TAG, "P2P接続成功: " + response.message());
+
+    /** 集計中なら窓の終わりに出す予約をする（deliveryLock の中で呼ぶ） */
+    private void scheduleUserQuakeFlush() {
+        long deadline = decoder.userQuakeDeadline();
+        if (deadline == 0 || userQuakeFlush != null) return;
+        long delay = Math.max(0, deadline - System.currentTimeMillis());
+        userQuakeFlush = FeedManager.getScheduler().schedule(
+                this::flushUserQuake, delay, TimeUnit.MILLISECONDS);
     }
 
-    private void P2PonMessage(String text) {
-        Log.d(TAG, "P2P受信: " + text);
-        if (listener != null) {
-            listener.onP2PMessageReceived(text);
+    private void flushUserQuake() {
+        synchronized (deliveryLock) {
+            userQuakeFlush = null;
+            P2PQuakeDecoder.Message summary = decoder.flushUserQuakeIfDue(System.currentTimeMillis());
+            // 予約の間に集計が出て次の窓が始まっていれば、その終わりに予約し直す
+            scheduleUserQuakeFlush();
+            if (summary != null) {
+                dispatch(summary);
+            }
         }
     }
 
     private void P2PonMessageBinary(ByteString bytes) {
-        Log.d(TAG, "P2P受信(バイナリ): " + bytes.hex());
+        FeedLog.d(TAG, "P2P受信(バイナリ): " + bytes.size() + "バイト");
     }
 
     private void P2PonClosing(int code, String reason) {
-        Log.d(TAG, "P2P切断中: " + reason);
+        FeedLog.d(TAG, "P2P切断中: " + reason);
     }
 
     private void P2PonClosed(int code, String reason) {
-        Log.d(TAG, "P2P切断完了: " + reason);
+        FeedLog.d(TAG, "P2P切断完了: " + reason);
     }
 
     private void P2PonFailure(Throwable t, Response response) {
-        Log.e(TAG, "P2Pエラー: " + t.getMessage(), t);
+        FeedLog.e(TAG, "P2Pエラー: " + t.getMessage(), t);
     }
 }
@@ -0,0 +1,251 @@
+package com.example.koiyure;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * コード・名称・緯度経度を持つ地点表（震度観測点 / P2P地域 / 津波予報区）
+ * 名称は UTF-8 のまま1本の配列に詰め、参照されたときだけ文字列にする
+ * 読み込み後は不変なので、どのスレッドから参照してもよい
+ */
+public final class PointTable {
+
+    public static final String INTENSITY_STATIONS_ASSET = "Item/PointSeismicIntensityLocation.json";
+    public static final String EPSP_AREA_ASSET = "Item/epsp-area.csv";
+    public static final String P2P_SAIBUNN_ASSET = "Item/EpspP2PSaibunn.json";
+    public static final String TSUNAMI_REGION_ASSET = "Item/TunamiRegion.csv";
+
+    private final int[] codes;
+    private final float[] latitudes;   // 不明は NaN
+    private final float[] longitudes;  // 不明は NaN
+    private final byte[] nameBlob;
+    private final int[] nameOffsets;   // 長さ size()+1
+
+    PointTable(int[] codes, float[] latitudes, float[] longitudes, byte[] nameBlob, int[] nameOffsets) {
+        this.codes = codes;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.nameBlob = nameBlob;
+        this.nameOffsets = nameOffsets;
+    }
+
+    public int size() {
+        return codes.length;
+    }
+
+    public int code(int i) {
+        return codes[i];
+    }
+
+    public float latitude(int i) {
+        return latitudes[i];
+    }
+
+    public float longitude(int i) {
+        return longitudes[i];
+    }
+
+    public String name(int i) {
+        return new String(nameBlob, nameOffsets[i], nameOffsets[i + 1] - nameOffsets[i],
+                StandardCharsets.UTF_8);
+    }
+
+    int[] codes() {
+        return codes;
+    }
+
+    float[] latitudes() {
+        return latitudes;
+    }
+
+    float[] longitudes() {
+        return longitudes;
+    }
+
+    // ========================
+    // アセット（テキスト）からの読み込み
+    // ========================
+
+    /** PointSeismicIntensityLocation.json: {"1020101":{"name":"...","location":[lat,lon]}, ...} */
+    public static PointTable parseIntensityStations(InputStream in) throws IOException {
+        Builder b = new Builder();
+        JsonCursor c = new JsonCursor().reset(readAll(in));
+        c.beginObject();
+        while (c.nextField()) {
+            int code = Integer.parseInt(c.fieldName());
+            String name = null;
+            float lat = Float.NaN;
+            float lon = Float.NaN;
+            c.beginObject();
+            while (c.nextField()) {
+                if (c.fieldIs("name")) {
+                    name = c.readString();
+                } else if (c.fieldIs("location")) {
+                    c.beginArray();
+                    int n = 0;
+                    while (c.nextElement()) {
+                        double v = c.readDouble(Double.NaN);
+                        if (n == 0) lat = (float) v;
+                        else if (n == 1) lon = (float) v;
+                        n++;
+                    }
+                } else {
+                    c.skipValue();
+                }
+            }
+            b.add(code, lat, lon, name);
+        }
+        return b.build();
+    }
+
+    /** epsp-area.csv: 地域コード(文字列),地域コード(数値),地方,都道府県,地域,緯度,経度 */
+    public static PointTable parseEpspAreas(InputStream in) throws IOException {
+        Builder b = new Builder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        reader.readLine(); // ヘッダ
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] f = line.split(",", -1);
+            if (f.length < 7) continue;
+            b.add(Integer.parseInt(f[1].trim()), parseFloat(f[5]), parseFloat(f[6]), f[4]);
+        }
+        return b.build();
+    }
+
+    /** EpspP2PSaibunn.json: [{"id":0,"NumID":10,"latitude":..,"longitude":..,"place":"..","region":".."}, ...] */
+    public static PointTable parseP2PSaibunn(InputStream in) throws IOException {
+        Builder b = new Builder();
+        JsonCursor c = new JsonCursor().reset(readAll(in));
+        c.beginArray();
+        while (c.nextElement()) {
+            int code = -1;
+            float lat = Float.NaN;
+            float lon = Float.NaN;
+            String region = null;
+            c.beginObject();
+            while (c.nextField()) {
+                if (c.fieldIs("NumID")) {
+                    code = c.readInt(-1);
+                } else if (c.fieldIs("latitude")) {
+                    lat = (float) c.readDouble(Double.NaN);
+                } else if (c.fieldIs("longitude")) {
+                    lon = (float) c.readDouble(Double.NaN);
+                } else if (c.fieldIs("region")) {
+                    region = c.readString();
+                } else {
+                    c.skipValue();
+                }
+            }
+            b.add(code, lat, lon, region);
+        }
+        return b.build();
+    }
+
+    /** TunamiRegion.csv: コード,地域名,よみがな（座標なし） */
+    public static PointTable parseTsunamiRegions(InputStream in) throws IOException {
+        Builder b = new Builder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        reader.readLine(); // ヘッダ（BOM付き）
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] f = line.split(",", -1);
+            if (f.length < 2 || f[0].trim().isEmpty()) continue;
+            b.add(Integer.parseInt(f[0].trim()), Float.NaN, Float.NaN, f[1]);
+        }
+        return b.build();
+    }
+
+    private static float parseFloat(String s) {
+        s = s.trim();
+        return s.isEmpty() ? Float.NaN : Float.parseFloat(s);
+    }
+
+    static String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        byte[] buf = new byte[16 * 1024];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            out.write(buf, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    // ========================
+    // バイナリキャッシュ（AssetCache 用）
+    // ========================
+    void writeTo(DataOutputStream out) throws IOException {
+        int n = codes.length;
+        out.writeInt(n);
+        out.writeInt(nameBlob.length);
+        for (int v : codes) out.writeInt(v);
+        for (float v : latitudes) out.writeFloat(v);
+        for (float v : longitudes) out.writeFloat(v);
+        for (int v : nameOffsets) out.writeInt(v);
+        out.write(nameBlob);
+    }
+
+    static PointTable readFrom(ByteBuffer in) {
+        int n = in.getInt();
+        int blobLength = in.getInt();
+        int[] codes = new int[n];
+        float[] lats = new float[n];
+        float[] lons = new float[n];
+        int[] offsets = new int[n + 1];
+        byte[] blob = new byte[blobLength];
+        in.asIntBuffer().get(codes);
+        in.position(in.position() + n * 4);
+        in.asFloatBuffer().get(lats);
+        in.position(in.position() + n * 4);
+        in.asFloatBuffer().get(lons);
+        in.position(in.position() + n * 4);
+        in.asIntBuffer().get(offsets);
+        in.position(in.position() + (n + 1) * 4);
+        in.get(blob);
+        return new PointTable(codes, lats, lons, blob, offsets);
+    }
+
+    // ------------------------
+    // 組み立て用
+    // ------------------------
+    static final class Builder {
+        private int size = 0;
+        private int[] codes = new int[256];
+        private float[] lats = new float[256];
+        private float[] lons = new float[256];
+        private int[] offsets = new int[257];
+        private final ByteArrayOutputStream names = new ByteArrayOutputStream(4096);
+
+        void add(int code, float lat, float lon, String name) {
+            if (size == codes.length) {
+                int cap = size * 2;
+                codes = Arrays.copyOf(codes, cap);
+                lats = Arrays.copyOf(lats, cap);
+                lons = Arrays.copyOf(lons, cap);
+                offsets = Arrays.copyOf(offsets, cap + 1);
+            }
+            codes[size] = code;
+            lats[size] = lat;
+            lons[size] = lon;
+            byte[] bytes = (name != null ? name : "").getBytes(StandardCharsets.UTF_8);
+            names.write(bytes, 0, bytes.length);
+            size++;
+            offsets[size] = names.size();
+        }
+
+        PointTable build() {
+            return new PointTable(
+                    Arrays.copyOf(codes, size),
+                    Arrays.copyOf(lats, size),
+                    Arrays.copyOf(lons, size),
+                    names.toByteArray(),
+                    Arrays.copyOf(offsets, size + 1));
+        }
+    }
+}
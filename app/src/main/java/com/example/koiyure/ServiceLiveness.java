@@ -0,0 +1,204 @@
+package com.example.koiyure;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * サービスの稼働状態（メモリマップした小さな状態ファイル）
+ * サービスが開始・停止・定期の心拍・受信のたびに書き、見張り・WebView・端末起動時の処理が読む
+ * ・稼働中かどうかは「稼働フラグ」「書いたプロセスID」「心拍の新しさ」で判定する
+ *   （プロセスが死ねばIDが合わなくなり、プロセスが固まれば心拍が途切れる）
+ * ・フィードごとの状態・最後の受信時刻、最後の地震情報の時刻、開始時刻（稼働時間）を持つ
+ * 時刻はプロセスをまたいで比べるので壁時計（エポックミリ秒）
+ * ただし心拍の途切れは SystemClock.uptimeMillis で測る（スリープ中は心拍の予約も進まないので、その間を途切れと数えない）
+ */
+public final class ServiceLiveness {
+
+    private static final String TAG = "ServiceLiveness";
+    private static final String FILE_NAME = "liveness.bin";
+
+    public static final int STATE_STOPPED = 0; // 動かしていない
+    public static final int STATE_OPEN = 1;    // 接続中
+    public static final int STATE_DOWN = 2;    // 切れていて再接続待ち
+    public static final int STATE_STALLED = 3; // 開いているが受信が止まっている
+    private static final String[] STATE_NAMES = {"stopped", "open", "down", "stalled"};
+
+    // 心拍（30秒ごと）がこれだけ途切れたら固まったとみなす
+    static final long HEARTBEAT_TIMEOUT_MILLIS = 120_000;
+
+    // ------------------------
+    // ファイルの配置（128バイト固定）
+    // ------------------------
+    private static final int MAGIC = 0x4B594C56; // "KYLV"
+    private static final int VERSION = 2;
+    private static final int OFF_MAGIC = 0;
+    private static final int OFF_VERSION = 4;
+    private static final int OFF_PID = 8;
+    private static final int OFF_RUNNING = 12;
+    private static final int OFF_STARTED_AT = 16;
+    private static final int OFF_HEARTBEAT_AT = 24;
+    private static final int OFF_LAST_EVENT_AT = 32;
+    private static final int OFF_STARTS = 40;
+    private static final int OFF_FEEDS = 48;
+    // フィードごとに state(int) + 予備(int) + lastMessageAt(long)。並びは EewFanIn.SOURCE_*
+    private static final int FEED_STRIDE = 16;
+    private static final int OFF_HEARTBEAT_UPTIME = OFF_FEEDS + EewFanIn.SOURCE_COUNT * FEED_STRIDE;
+    static final int SIZE = 128;
+
+    private static ServiceLiveness instance;
+
+    public static synchronized ServiceLiveness get(Context context) {
+        if (instance == null) {
+            File file = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+            try {
+                instance = open(file);
+            } catch (IOException e) {
+                // 読み書きできなくてもプロセス内の状態としては使えるようにする
+                Log.e(TAG, "状態ファイルを開けません: " + e.getMessage(), e);
+                instance = new ServiceLiveness(ByteBuffer.allocate(SIZE), null);
+            }
+        }
+        return instance;
+    }
+
+    static ServiceLiveness open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // マップは閉じた後も有効
+            MappedByteBuffer map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SIZE);
+            return new ServiceLiveness(map, map);
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final MappedByteBuffer mapped;
+
+    private ServiceLiveness(ByteBuffer buffer, MappedByteBuffer mapped) {
+        this.buffer = buffer;
+        this.mapped = mapped;
+        if (buffer.getInt(OFF_MAGIC) != MAGIC || buffer.getInt(OFF_VERSION) != VERSION) {
+            for (int i = 0; i < SIZE; i += 8) {
+                buffer.putLong(i, 0);
+            }
+            buffer.putInt(OFF_MAGIC, MAGIC);
+            buffer.putInt(OFF_VERSION, VERSION);
+        }
+    }
+
+    // ------------------------
+    // 書き込み（サービスから）
+    // ------------------------
+    // uptimeNow は SystemClock.uptimeMillis
+
+    public synchronized void markStarted(int pid, long wallNow, long uptimeNow) {
+        buffer.putInt(OFF_PID, pid);
+        buffer.putLong(OFF_STARTED_AT, wallNow);
+        buffer.putLong(OFF_HEARTBEAT_AT, wallNow);
+        buffer.putLong(OFF_HEARTBEAT_UPTIME, uptimeNow);
+        buffer.putInt(OFF_STARTS, buffer.getInt(OFF_STARTS) + 1);
+        for (int feed = 0; feed < EewFanIn.SOURCE_COUNT; feed++) {
+            buffer.putInt(OFF_FEEDS + feed * FEED_STRIDE, STATE_STOPPED);
+        }
+        buffer.putInt(OFF_RUNNING, 1);
+        force();
+    }
+
+    public synchronized void markStopped(long wallNow) {
+        buffer.putLong(OFF_HEARTBEAT_AT, wallNow);
+        buffer.putInt(OFF_RUNNING, 0);
+        force();
+    }
+
+    public synchronized void heartbeat(long wallNow, long uptimeNow) {
+        buffer.putLong(OFF_HEARTBEAT_AT, wallNow);
+        buffer.putLong(OFF_HEARTBEAT_UPTIME, uptimeNow);
+    }
+
+    /** feed（EewFanIn.SOURCE_*）の状態と最後の受信時刻（未受信なら 0） */
+    public synchronized void setFeed(int feed, int state, long lastMessageAt) {
+        int base = OFF_FEEDS + feed * FEED_STRIDE;
+        buffer.putInt(base, state);
+        buffer.putLong(base + 8, lastMessageAt);
+    }
+
+    /** 地震情報・緊急地震速報を受けた */
+    public synchronized void markEvent(long wallNow) {
+        buffer.putLong(OFF_LAST_EVENT_AT, wallNow);
+    }
+
+    /** 開始・停止は端末の再起動後も読めるよう書き出しておく（心拍はページキャッシュに任せる） */
+    private void force() {
+        if (mapped != null) mapped.force();
+    }
+
+    // ------------------------
+    // 読み出し
+    // ------------------------
+
+    /**
+     * @param myPid     呼び出し側のプロセスID（書いたプロセスと同じなら稼働中とみなせる）
+     * @param uptimeNow SystemClock.uptimeMillis（心拍が HEARTBEAT_TIMEOUT_MILLIS 以上途切れていれば稼働中とみなさない）
+     */
+    public synchronized Snapshot read(int myPid, long uptimeNow) {
+        Snapshot s = new Snapshot();
+        s.pid = buffer.getInt(OFF_PID);
+        long heartbeatAge = uptimeNow - buffer.getLong(OFF_HEARTBEAT_UPTIME);
+        s.alive = buffer.getInt(OFF_RUNNING) != 0 && s.pid == myPid
+                && heartbeatAge >= 0 && heartbeatAge < HEARTBEAT_TIMEOUT_MILLIS;
+        s.startedAt = buffer.getLong(OFF_STARTED_AT);
+        s.heartbeatAt = buffer.getLong(OFF_HEARTBEAT_AT);
+        s.lastEventAt = buffer.getLong(OFF_LAST_EVENT_AT);
+        s.starts = buffer.getInt(OFF_STARTS);
+        for (int feed = 0; feed < EewFanIn.SOURCE_COUNT; feed++) {
+            int base = OFF_FEEDS + feed * FEED_STRIDE;
+            s.feedStates[feed] = buffer.getInt(base);
+            s.feedLastMessageAt[feed] = buffer.getLong(base + 8);
+        }
+        return s;
+    }
+
+    public static final class Snapshot {
+        /** このプロセスでサービスが動いている */
+        public boolean alive;
+        public int pid;
+        public long startedAt;
+        public long heartbeatAt;
+        public long lastEventAt;
+        public int starts;
+        public final int[] feedStates = new int[EewFanIn.SOURCE_COUNT];
+        public final long[] feedLastMessageAt = new long[EewFanIn.SOURCE_COUNT];
+
+        /** 稼働時間（止まっていれば最後の稼働の長さ） */
+        public long uptimeMillis(long wallNow) {
+            if (startedAt == 0) return 0;
+            return Math.max(0, (alive ? wallNow : heartbeatAt) - startedAt);
+        }
+
+        /** {"alive":..,"pid":..,"startedAt":..,"uptimeMs":..,"heartbeatAgeMs":..,"lastEventAt":..,"starts":..,"feeds":{"wolfx":{"state":"open","lastMessageAt":..},...}} */
+        public String toJson(long wallNow) {
+            StringBuilder sb = new StringBuilder(384);
+            sb.append("{\"alive\":").append(alive);
+            sb.append(",\"pid\":").append(pid);
+            sb.append(",\"startedAt\":").append(startedAt);
+            sb.append(",\"uptimeMs\":").append(uptimeMillis(wallNow));
+            sb.append(",\"heartbeatAgeMs\":").append(heartbeatAt == 0 ? -1 : wallNow - heartbeatAt);
+            sb.append(",\"lastEventAt\":").append(lastEventAt);
+            sb.append(",\"starts\":").append(starts);
+            sb.append(",\"feeds\":{");
+            for (int feed = 0; feed < EewFanIn.SOURCE_COUNT; feed++) {
+                if (feed > 0) sb.append(',');
+                int state = feedStates[feed];
+                sb.append('"').append(EewFanIn.sourceName(feed)).append("\":{\"state\":\"")
+                        .append(state >= 0 && state < STATE_NAMES.length ? STATE_NAMES[state] : "unknown")
+                        .append("\",\"lastMessageAt\":").append(feedLastMessageAt[feed]).append('}');
+            }
+            return sb.append("}}").toString();
+        }
+    }
+}
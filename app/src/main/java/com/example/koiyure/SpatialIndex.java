@@ -0,0 +1,225 @@
+package com.example.koiyure;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * PointTable の地点を緯度経度の格子に振り分けた空間索引
+ * 最近傍N件・半径内検索・コード/名称からの O(1) 参照を行う
+ * 構築後は不変。検索結果は呼び出し側の配列に書き込む（内部で確保しない）
+ */
+public final class SpatialIndex {
+
+    // 格子の大きさ（度）。観測点の密度に対して1セル数件程度になる大きさ
+    private static final float CELL_DEG = 0.25f;
+    private static final double KM_PER_DEG = 111.195;
+
+    private final PointTable table;
+    private final float minLat;
+    private final float minLon;
+    private final int rows;
+    private final int cols;
+    private final int[] cellStart;  // rows*cols+1
+    private final int[] cellItems;  // セル順に並べた地点番号
+    private final double minCellKm; // 1セルの最短辺（探索打ち切り用）
+
+    // コード → 地点番号（オープンアドレス法）
+    private final int[] hashKeys;
+    private final int[] hashValues;
+    private final int hashMask;
+
+    // 名称（空白除去）→ 地点番号
+    private final HashMap<String, Integer> names;
+
+    public SpatialIndex(PointTable table) {
+        this.table = table;
+        int n = table.size();
+
+        float loLat = Float.MAX_VALUE, hiLat = -Float.MAX_VALUE;
+        float loLon = Float.MAX_VALUE, hiLon = -Float.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            if (!hasLocation(i)) continue;
+            loLat = Math.min(loLat, table.latitude(i));
+            hiLat = Math.max(hiLat, table.latitude(i));
+            loLon = Math.min(loLon, table.longitude(i));
+            hiLon = Math.max(hiLon, table.longitude(i));
+        }
+        if (loLat > hiLat) {
+            loLat = hiLat = loLon = hiLon = 0;
+        }
+        minLat = loLat;
+        minLon = loLon;
+        rows = (int) ((hiLat - loLat) / CELL_DEG) + 1;
+        cols = (int) ((hiLon - loLon) / CELL_DEG) + 1;
+        double maxAbsLat = Math.max(Math.abs(loLat), Math.abs(hiLat));
+        minCellKm = CELL_DEG * KM_PER_DEG * Math.cos(Math.toRadians(maxAbsLat));
+
+        // 計数ソートでセルごとに並べる
+        cellStart = new int[rows * cols + 1];
+        for (int i = 0; i < n; i++) {
+            if (hasLocation(i)) cellStart[cellOf(i) + 1]++;
+        }
+        for (int c = 0; c < rows * cols; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        cellItems = new int[cellStart[rows * cols]];
+        int[] fill = Arrays.copyOf(cellStart, rows * cols);
+        for (int i = 0; i < n; i++) {
+            if (hasLocation(i)) cellItems[fill[cellOf(i)]++] = i;
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(n, 1) * 2) << 1;
+        hashKeys = new int[capacity];
+        hashValues = new int[capacity];
+        hashMask = capacity - 1;
+        Arrays.fill(hashValues, -1);
+        names = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            int slot = mix(table.code(i)) & hashMask;
+            while (hashValues[slot] >= 0 && hashKeys[slot] != table.code(i)) {
+                slot = (slot + 1) & hashMask;
+            }
+            hashKeys[slot] = table.code(i);
+            hashValues[slot] = i;
+            names.put(normalize(table.name(i)), i);
+        }
+    }
+
+    public PointTable getTable() {
+        return table;
+    }
+
+    // ------------------------
+    // 参照
+    // ------------------------
+
+    /** コードから地点番号（無ければ -1） */
+    public int indexOf(int code) {
+        int slot = mix(code) & hashMask;
+        while (hashValues[slot] >= 0) {
+            if (hashKeys[slot] == code) return hashValues[slot];
+            slot = (slot + 1) & hashMask;
+        }
+        return -1;
+    }
+
+    /** 名称から地点番号（空白の有無は区別しない。無ければ -1） */
+    public int indexOfName(String name) {
+        if (name == null) return -1;
+        Integer i = names.get(normalize(name));
+        return i != null ? i : -1;
+    }
+
+    public double distanceKm(int index, double lat, double lon) {
+        return TravelTimeTable.distanceKm(table.latitude(index), table.longitude(index), lat, lon);
+    }
+
+    // ------------------------
+    // 検索
+    // ------------------------
+
+    /**
+     * (lat, lon) に近い順に最大 outIndex.length 件を書き込み、件数を返す
+     * @param outDistanceKm outIndex と同じ長さ。対応する距離（km）
+     */
+    public int nearest(double lat, double lon, int[] outIndex, double[] outDistanceKm) {
+        int limit = Math.min(outIndex.length, outDistanceKm.length);
+        if (limit == 0) return 0;
+        int count = 0;
+        int r0 = clamp((int) Math.floor((lat - minLat) / CELL_DEG), rows);
+        int c0 = clamp((int) Math.floor((lon - minLon) / CELL_DEG), cols);
+        int maxRing = Math.max(rows, cols);
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            for (int r = r0 - ring; r <= r0 + ring; r++) {
+                if (r < 0 || r >= rows) continue;
+                boolean edgeRow = r == r0 - ring || r == r0 + ring;
+                int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+                for (int c = c0 - ring; c <= c0 + ring; c += step) {
+                    if (c < 0 || c >= cols) continue;
+                    int cell = r * cols + c;
+                    for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                        int i = cellItems[k];
+                        double d = distanceKm(i, lat, lon);
+                        count = insertSorted(outIndex, outDistanceKm, count, limit, i, d);
+                    }
+                }
+            }
+            // 次の輪のセルはどれも ring*minCellKm より遠い
+            if (count == limit && outDistanceKm[limit - 1] <= ring * minCellKm) break;
+        }
+        return count;
+    }
+
+    /**
+     * (lat, lon) から radiusKm 以内の地点を最大 out.length 件書き込み、件数を返す（順不同）
+     */
+    public int within(double lat, double lon, double radiusKm, int[] out) {
+        double dLat = radiusKm / KM_PER_DEG;
+        double cos = Math.max(0.01, Math.cos(Math.toRadians(lat)));
+        double dLon = radiusKm / (KM_PER_DEG * cos);
+        int rLo = Math.max(0, rowOf(lat - dLat));
+        int rHi = Math.min(rows - 1, rowOf(lat + dLat));
+        int cLo = Math.max(0, colOf(lon - dLon));
+        int cHi = Math.min(cols - 1, colOf(lon + dLon));
+        int count = 0;
+        for (int r = rLo; r <= rHi; r++) {
+            for (int c = cLo; c <= cHi; c++) {
+                int cell = r * cols + c;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = cellItems[k];
+                    if (distanceKm(i, lat, lon) <= radiusKm) {
+                        if (count == out.length) return count;
+                        out[count++] = i;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    // ------------------------
+    // 内部処理
+    // ------------------------
+    private boolean hasLocation(int i) {
+        return !Float.isNaN(table.latitude(i)) && !Float.isNaN(table.longitude(i));
+    }
+
+    private int cellOf(int i) {
+        return rowOf(table.latitude(i)) * cols + colOf(table.longitude(i));
+    }
+
+    private int rowOf(double lat) {
+        return (int) Math.floor((lat - minLat) / CELL_DEG);
+    }
+
+    private int colOf(double lon) {
+        return (int) Math.floor((lon - minLon) / CELL_DEG);
+    }
+
+    private static int clamp(int v, int size) {
+        return v < 0 ? 0 : Math.min(v, size - 1);
+    }
+
+    private static int insertSorted(int[] idx, double[] dist, int count, int limit, int i, double d) {
+        if (count == limit && d >= dist[limit - 1]) return count;
+        int pos = count < limit ? count++ : limit - 1;
+        while (pos > 0 && dist[pos - 1] > d) {
+            idx[pos] = idx[pos - 1];
+            dist[pos] = dist[pos - 1];
+            pos--;
+        }
+        idx[pos] = i;
+        dist[pos] = d;
+        return count;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static String normalize(String name) {
+        return name.replace(" ", "").replace("　", "");
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.koiyure;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * JMA2001 走時表（assets/Item/tjma2001h.txt）
+ * 深さ×震央距離の格子をプリミティブ配列に持ち、双線形補間で P/S 波の走時を返す
+ * 読み込み後は不変なので、どのスレッドから参照してもよい
+ */
+public final class TravelTimeTable {
+
+    public static final String ASSET_PATH = "Item/tjma2001h.txt";
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    private final int[] depths;     // km（昇順）
+    private final int[] distances;  // km（昇順）
+    private final float[] pTimes;   // [depthIndex * distances.length + distanceIndex] 秒
+    private final float[] sTimes;
+
+    TravelTimeTable(int[] depths, int[] distances, float[] pTimes, float[] sTimes) {
+        this.depths = depths;
+        this.distances = distances;
+        this.pTimes = pTimes;
+        this.sTimes = sTimes;
+    }
+
+    /**
+     * "P    0.082 S    0.139   0      0"（P走時, S走時, 深さ, 距離）形式を読む
+     */
+    public static TravelTimeTable parse(InputStream in) throws IOException {
+        List<float[]> rows = new ArrayList<>(25_100);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+        float[] values = new float[4];
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (parseRow(line, values)) {
+                rows.add(values.clone());
+            }
+        }
+
+        int[] depths = distinct(rows, 2);
+        int[] distances = distinct(rows, 3);
+        int n = depths.length * distances.length;
+        if (rows.size() != n) {
+            throw new IOException("走時表の格子が欠けています: " + rows.size() + " / " + n);
+        }
+        float[] p = new float[n];
+        float[] s = new float[n];
+        for (float[] r : rows) {
+            int i = Arrays.binarySearch(depths, (int) r[2]) * distances.length
+                    + Arrays.binarySearch(distances, (int) r[3]);
+            p[i] = r[0];
+            s[i] = r[1];
+        }
+        return new TravelTimeTable(depths, distances, p, s);
+    }
+
+    /** "P" と "S" を読み飛ばしながら4つの数値を取り出す（正規表現を使わない） */
+    private static boolean parseRow(String line, float[] out) {
+        int n = 0;
+        int i = 0;
+        int len = line.length();
+        while (i < len && n < out.length) {
+            char c = line.charAt(i);
+            if ((c >= '0' && c <= '9') || c == '.' || c == '-') {
+                int start = i;
+                while (i < len && line.charAt(i) != ' ' && line.charAt(i) != '\t') i++;
+                out[n++] = Float.parseFloat(line.substring(start, i));
+            } else {
+                i++;
+            }
+        }
+        return n == out.length && line.trim().startsWith("P");
+    }
+
+    private static int[] distinct(List<float[]> rows, int column) {
+        int[] values = new int[rows.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (int) rows.get(i)[column];
+        }
+        Arrays.sort(values);
+        int n = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0 || values[i] != values[n - 1]) {
+                values[n++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, n);
+    }
+
+    // ------------------------
+    // 走時
+    // ------------------------
+
+    /** P波走時（秒）。範囲外の深さ・距離は端の値に丸める */
+    public double pTime(double depthKm, double distanceKm) {
+        return interpolate(pTimes, depthKm, distanceKm);
+    }
+
+    /** S波走時（秒）。範囲外の深さ・距離は端の値に丸める */
+    public double sTime(double depthKm, double distanceKm) {
+        return interpolate(sTimes, depthKm, distanceKm);
+    }
+
+    /**
+     * 地点 (lat, lon) に S 波が到達するまでの残り秒数（到達済みなら負）
+     * 震源情報が不完全なら NaN
+     */
+    public double secondsUntilS(EewRecord eew, double lat, double lon, long nowMillis) {
+        if (eew.originTime == 0 || Double.isNaN(eew.latitude) || Double.isNaN(eew.longitude)
+                || Double.isNaN(lat) || Double.isNaN(lon)) {
+            return Double.NaN;
+        }
+        double distance = distanceKm(eew.latitude, eew.longitude, lat, lon);
+        double travel = sTime(Math.max(eew.depth, 0), distance);
+        return (eew.originTime - nowMillis) / 1000.0 + travel;
+    }
+
+    public int[] getDepths() {
+        return depths;
+    }
+
+    public int[] getDistances() {
+        return distances;
+    }
+
+    float[] getPTimes() {
+        return pTimes;
+    }
+
+    float[] getSTimes() {
+        return sTimes;
+    }
+
+    private double interpolate(float[] table, double depthKm, double distanceKm) {
+        int cols = distances.length;
+        int di = lowerIndex(depths, depthKm);
+        int xi = lowerIndex(distances, distanceKm);
+        double dt = fraction(depths, di, depthKm);
+        double xt = fraction(distances, xi, distanceKm);
+
+        int row0 = di * cols;
+        int row1 = Math.min(di + 1, depths.length - 1) * cols;
+        int x1 = Math.min(xi + 1, cols - 1);
+        double a = table[row0 + xi] + (table[row0 + x1] - table[row0 + xi]) * xt;
+        double b = table[row1 + xi] + (table[row1 + x1] - table[row1 + xi]) * xt;
+        return a + (b - a) * dt;
+    }
+
+    /** axis[i] <= v < axis[i+1] となる i（範囲外は端） */
+    private static int lowerIndex(int[] axis, double v) {
+        if (v <= axis[0]) return 0;
+        int last = axis.length - 1;
+        if (v >= axis[last]) return last;
+        int lo = 0;
+        int hi = last;
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (axis[mid] <= v) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static double fraction(int[] axis, int i, double v) {
+        if (i >= axis.length - 1) return 0;
+        double t = (v - axis[i]) / (axis[i + 1] - axis[i]);
+        return t < 0 ? 0 : Math.min(t, 1);
+    }
+
+    // ------------------------
+    // バイナリキャッシュ（AssetCache 用）
+    // ------------------------
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(depths.length);
+        out.writeInt(distances.length);
+        for (int v : depths) out.writeInt(v);
+        for (int v : distances) out.writeInt(v);
+        for (float v : pTimes) out.writeFloat(v);
+        for (float v : sTimes) out.writeFloat(v);
+    }
+
+    static TravelTimeTable readFrom(ByteBuffer in) {
+        int[] depths = new int[in.getInt()];
+        int[] distances = new int[in.getInt()];
+        int n = depths.length * distances.length;
+        float[] p = new float[n];
+        float[] s = new float[n];
+        in.asIntBuffer().get(depths);
+        in.position(in.position() + depths.length * 4);
+        in.asIntBuffer().get(distances);
+        in.position(in.position() + distances.length * 4);
+        in.asFloatBuffer().get(p);
+        in.position(in.position() + n * 4);
+        in.asFloatBuffer().get(s);
+        in.position(in.position() + n * 4);
+        return new TravelTimeTable(depths, distances, p, s);
+    }
+
+    // ------------------------
+    // 距離
+    // ------------------------
+
+    /** 2点間の大円距離（km） */
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double p1 = Math.toRadians(lat1);
+        double p2 = Math.toRadians(lat2);
+        double dp = p2 - p1;
+        double dl = Math.toRadians(lon2 - lon1);
+        double h = Math.sin(dp / 2) * Math.sin(dp / 2)
+                + Math.cos(p1) * Math.cos(p2) * Math.sin(dl / 2) * Math.sin(dl / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+}
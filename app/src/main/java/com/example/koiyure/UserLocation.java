@@ -0,0 +1,40 @@
+package com.example.koiyure;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * 到達予測に使う現在地（LocationTracker・WebViewから設定され、サービス再起動後も残す）
+ */
+public class UserLocation {
+
+    private static final String PREFS_NAME = "user_location";
+    private static final String KEY_LATITUDE = "latitude";
+    private static final String KEY_LONGITUDE = "longitude";
+
+    private final SharedPreferences prefs;
+
+    public UserLocation(Context context) {
+        this.prefs = context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public void save(double latitude, double longitude) {
+        prefs.edit()
+                .putFloat(KEY_LATITUDE, (float) latitude)
+                .putFloat(KEY_LONGITUDE, (float) longitude)
+                .apply();
+    }
+
+    public boolean isSet() {
+        return prefs.contains(KEY_LATITUDE) && prefs.contains(KEY_LONGITUDE);
+    }
+
+    public double getLatitude() {
+        return prefs.getFloat(KEY_LATITUDE, Float.NaN);
+    }
+
+    public double getLongitude() {
+        return prefs.getFloat(KEY_LONGITUDE, Float.NaN);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.koiyure;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.List;
+
+/**
+ * サービスとフィードの見張り（アラーム・WorkManager・端末起動からの再起動をここにまとめる）
+ * ・AlarmManagerController の1本のアラームで起き、フィードの実際の状態を見て直す
+ *   サービスが止まっていれば起動し、切れた接続は張り直し、止まった接続は張り替える
+ * ・正常なら次に起きるまでの間隔を倍にしていき（最大 MAX_INTERVAL_MILLIS）、異常なら最短に戻す
+ * 間隔はプロセスが作り直されても続くように SharedPreferences に残す
+ */
+public class Watchdog {
+
+    private static final String TAG = "Watchdog";
+
+    public static final int HEALTHY = 0;
+    public static final int RECONNECT = 1; // サービスは動いているが接続に問題がある
+    public static final int RESTART = 2;   // サービスが動いていない
+
+    static final long MIN_INTERVAL_MILLIS = 5 * 60_000;
+    static final long MAX_INTERVAL_MILLIS = 60 * 60_000;
+
+    private static final String PREFS_NAME = "watchdog";
+    private static final String KEY_ENABLED = "enabled";
+    private static final String KEY_INTERVAL = "interval";
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private final AlarmManagerController alarm;
+
+    public Watchdog(Context context) {
+        this.context = context.getApplicationContext();
+        this.prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.alarm = new AlarmManagerController(this.context);
+    }
+
+    // ========================
+    // 開始・停止
+    // ========================
+
+    /** 見張りを始める（最短の間隔から） */
+    public void start() {
+        prefs.edit()
+                .putBoolean(KEY_ENABLED, true)
+                .putLong(KEY_INTERVAL, MIN_INTERVAL_MILLIS)
+                .apply();
+        alarm.schedule(MIN_INTERVAL_MILLIS);
+        Log.d(TAG, "見張り開始");
+    }
+
+    /** 見張りをやめる（利用者がサービスを止めたとき） */
+    public void stop() {
+        prefs.edit().putBoolean(KEY_ENABLED, false).apply();
+        alarm.stop();
+        Log.d(TAG, "見張り停止");
+    }
+
+    /**
+     * 見張りが有効なら、残している間隔で次の確認を予約し直す（サービスの開始時）
+     * 有効・無効は利用者の操作（start / stop）だけで切り替え、ここでは変えない
+     */
+    public void ensureScheduled() {
+        if (!isEnabled()) return;
+        alarm.schedule(prefs.getLong(KEY_INTERVAL, MIN_INTERVAL_MILLIS));
+    }
+
+    public boolean isEnabled() {
+        return prefs.getBoolean(KEY_ENABLED, false);
+    }
+
+    // ========================
+    // 確認（アラーム・WorkManager から）
+    // ========================
+
+    /** 状態を確認して必要なら直し、次の確認を予約する（アラームから） */
+    public void check() {
+        check(true);
+    }
+
+    /**
+     * @param mayRestart false ならサービスが止まっていても起動しない
+     *                   （Android 12 以降はバックグラウンドからフォアグラウンドサービスを起動できない呼び出し元向け）
+     */
+    public void check(boolean mayRestart) {
+        if (!isEnabled()) {
+            Log.d(TAG, "見張りは停止中");
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        ServiceLiveness.Snapshot liveness = ServiceLiveness.get(context).read(Process.myPid(), SystemClock.uptimeMillis());
+        boolean running = liveness.alive;
+        // サービスが動いていないプロセスでは FeedManager を作らない
+        FeedManager feedManager = running ? FeedManager.getInstance() : null;
+        int verdict = evaluate(running, now, running ? feedManager.getActiveHealths() : null);
+
+        if (verdict == RESTART) {
+            Log.d(TAG, "サービス停止を検出 - 再起動: " + liveness.toJson(System.currentTimeMillis()));
+            if (mayRestart) {
+                restartService();
+            }
+        } else if (verdict == RECONNECT) {
+            Log.d(TAG, "接続の異常を検出 - 張り直し: " + feedManager.healthJson(now));
+            feedManager.recover(now);
+        }
+
+        long interval = nextInterval(prefs.getLong(KEY_INTERVAL, MIN_INTERVAL_MILLIS), verdict);
+        prefs.edit().putLong(KEY_INTERVAL, interval).apply();
+        alarm.schedule(interval);
+        Log.d(TAG, "確認結果 " + verdict + " → 次は" + interval / 60_000 + "分後");
+    }
+
+    private void restartService() {
+        Intent serviceIntent = new Intent(context, ForegroundManager.EarthquakeService.class);
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                context.startForegroundService(serviceIntent);
+            } else {
+                context.startService(serviceIntent);
+            }
+        } catch (IllegalStateException e) {
+            // Android 12+ の ForegroundServiceStartNotAllowedException（正確なアラームでなかった場合など）
+            // 落とさずに最短の間隔で確認し直す
+            Log.w(TAG, "サービスを起動できません: " + e.getMessage());
+        }
+    }
+
+    // ========================
+    // 判定
+    // ========================
+
+    /**
+     * @param healths 動かしているフィードの状態（サービスが動いていなければ null）
+     */
+    static int evaluate(boolean running, long now, List<FeedHealth> healths) {
+        if (!running) return RESTART;
+        for (FeedHealth health : healths) {
+            if (!health.isOpen() || health.isStalled(now)) return RECONNECT;
+        }
+        return HEALTHY;
+    }
+
+    /** 正常が続く間は間隔を倍にし、異常があれば最短に戻す */
+    static long nextInterval(long current, int verdict) {
+        if (verdict != HEALTHY) return MIN_INTERVAL_MILLIS;
+        return Math.min(MAX_INTERVAL_MILLIS, Math.max(MIN_INTERVAL_MILLIS, current * 2));
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.koiyure;
+
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebView;
+
+import androidx.webkit.WebMessageCompat;
+import androidx.webkit.WebMessagePortCompat;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WebView（MainScript.js）へイベントを送るチャネル
+ * WebMessagePort を1本張り、同じ描画フレーム内に届いたイベントは1つの配列にまとめて送る
+ */
+public class WebBridge {
+
+    private static final String TAG = "WebBridge";
+
+    // JS側はこの文字列と一緒に届いたポートを受け取る
+    private static final String PORT_HANDSHAKE = "koiyure-port";
+
+    // ページ読み込み前に溜めておく上限（超えたら古いものから捨てる）
+    private static final int MAX_PENDING = 256;
+
+    private final WebView webView;
+    private final ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final Runnable flushRunnable = this::flush;
+    private final StringBuilder batch = new StringBuilder(1024);
+
+    // 以下はUIスレッドからのみ触る
+    private WebMessagePortCompat port;
+    private boolean ready = false;
+
+    public WebBridge(WebView webView) {
+        this.webView = webView;
+    }
+
+    // ------------------------
+    // 接続（ページ読み込み完了時にUIスレッドで呼ぶ）
+    // ------------------------
+    public void connect() {
+        close();
+        if (WebViewFeature.isFeatureSupported(WebViewFeature.CREATE_WEB_MESSAGE_CHANNEL)
+                && WebViewFeature.isFeatureSupported(WebViewFeature.POST_WEB_MESSAGE)
+                && WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_PORT_POST_MESSAGE)) {
+            WebMessagePortCompat[] ports = WebViewCompat.createWebMessageChannel(webView);
+            port = ports[0];
+            // file:// のページなのでオリジンは "*" で送る
+            WebViewCompat.postWebMessage(webView,
+                    new WebMessageCompat(PORT_HANDSHAKE, new WebMessagePortCompat[]{ports[1]}),
+                    Uri.parse("*"));
+            Log.d(TAG, "WebMessagePort 接続");
+        } else {
+            Log.d(TAG, "WebMessagePort 非対応のため evaluateJavascript で送信");
+        }
+        ready = true;
+        scheduleFlush();
+    }
+
+    public void close() {
+        ready = false;
+        if (port != null) {
+            port.close();
+            port = null;
+        }
+    }
+
+    // ------------------------
+    // 送信（どのスレッドからでも呼べる）
+    // ------------------------
+
+    /**
+     * @param type イベント種別（JS側のディスパッチキー）
+     * @param json イベント本体（JSONとして完結した文字列）
+     */
+    public void post(String type, String json) {
+        post(type, json, -1);
+    }
+
+    /**
+     * @param trace LatencyMetrics.beginRender の番号（JS は描画後に Android.reportRendered(trace) を呼ぶ。-1 なら付けない）
+     */
+    public void post(String type, String json, int trace) {
+        StringBuilder sb = new StringBuilder(json.length() + 48);
+        sb.append("{\"type\":");
+        JsonCursor.appendQuoted(sb, type);
+        if (trace >= 0) {
+            sb.append(",\"trace\":").append(trace);
+        }
+        sb.append(",\"data\":").append(json).append('}');
+        pending.offer(sb.toString());
+        if (pendingCount.incrementAndGet() > MAX_PENDING && pending.poll() != null) {
+            pendingCount.decrementAndGet();
+        }
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            // 次の描画フレームでまとめて送る
+            webView.postOnAnimation(flushRunnable);
+        }
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        if (!ready) return;
+
+        StringBuilder sb = batch;
+        sb.setLength(0);
+        sb.append('[');
+        String event;
+        int count = 0;
+        while ((event = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            if (count++ > 0) sb.append(',');
+            sb.append(event);
+        }
+        if (count == 0) return;
+        sb.append(']');
+
+        if (port != null) {
+            port.postMessage(new WebMessageCompat(sb.toString()));
+        } else {
+            webView.evaluateJavascript(
+                    "if(window.KoiyureBridge) window.KoiyureBridge.receive(" + sb + ");", null);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.koiyure;
+
+/**
+ * Wolfx jma_eew のフレームを EewRecord に変換する
+ * 1回の走査で必要なフィールドだけ読み、残りは読み飛ばす
+ * （ソケットごとに1インスタンス。スレッドセーフではない）
+ */
+public final class WolfxDecoder {
+
+    public static final String TYPE_EEW = "jma_eew";
+
+    // 直前に解析したフレームの種類
+    public static final int KIND_OTHER = 0;
+    public static final int KIND_EEW = 1;
+    public static final int KIND_HEARTBEAT = 2;
+    public static final int KIND_PONG = 3;
+
+    private final JsonCursor cursor = new JsonCursor();
+    private int lastKind = KIND_OTHER;
+
+    /** 直前の decode() が読んだフレームの種類（KIND_*） */
+    public int getLastKind() {
+        return lastKind;
+    }
+
+    /**
+     * jma_eew なら値を詰めた EewRecord を返す。それ以外（heartbeat等）は null
+     * 返したレコードは呼び出し側で recycle() すること
+     */
+    public EewRecord decode(String text) {
+        EewRecord r = EewRecord.obtain();
+        boolean isEew = false;
+        lastKind = KIND_OTHER;
+        try {
+            JsonCursor c = cursor.reset(text);
+            c.beginObject();
+            while (c.nextField()) {
+                if (c.fieldIs("type")) {
+                    lastKind = kindOf(c.readString());
+                    isEew = lastKind == KIND_EEW;
+                } else if (c.fieldIs("EventID")) {
+                    r.eventId = c.readString();
+                } else if (c.fieldIs("Serial")) {
+                    r.serial = c.readInt(0);
+                } else if (c.fieldIs("Title")) {
+                    r.title = c.readString();
+                } else if (c.fieldIs("Hypocenter")) {
+                    r.hypocenter = c.readString();
+                } else if (c.fieldIs("Latitude")) {
+                    r.latitude = c.readDouble(Double.NaN);
+                } else if (c.fieldIs("Longitude")) {
+                    r.longitude = c.readDouble(Double.NaN);
+                } else if (c.fieldIs("Magunitude") || c.fieldIs("Magnitude")) {
+                    // Wolfxは "Magunitude" の綴りで送ってくる
+                    r.magnitude = c.readDouble(Double.NaN);
+                } else if (c.fieldIs("Depth")) {
+                    r.depth = c.readInt(-1);
+                } else if (c.fieldIs("MaxIntensity")) {
+                    r.maxIntensity = c.readString();
+                } else if (c.fieldIs("isWarn")) {
+                    r.warning = c.readBoolean();
+                } else if (c.fieldIs("isCancel")) {
+                    r.cancel = c.readBoolean();
+                } else if (c.fieldIs("isFinal")) {
+                    r.isFinal = c.readBoolean();
+                } else if (c.fieldIs("isTraining")) {
+                    r.training = c.readBoolean();
+                } else if (c.fieldIs("isAssumption")) {
+                    r.assumption = c.readBoolean();
+                } else if (c.fieldIs("OriginTime")) {
+                    r.originTime = c.readJmaTime(0);
+                } else if (c.fieldIs("AnnouncedTime")) {
+                    r.announcedTime = c.readJmaTime(0);
+                } else {
+                    c.skipValue();
+                }
+            }
+        } catch (RuntimeException e) {
+            r.recycle();
+            throw e;
+        }
+        if (!isEew) {
+            r.recycle();
+            return null;
+        }
+        r.source = EewRecord.SOURCE_WOLFX;
+        return r;
+    }
+
+    private static int kindOf(String type) {
+        if (TYPE_EEW.equals(type)) return KIND_EEW;
+        if ("heartbeat".equals(type)) return KIND_HEARTBEAT;
+        if ("pong".equals(type)) return KIND_PONG;
+        return KIND_OTHER;
+    }
+}
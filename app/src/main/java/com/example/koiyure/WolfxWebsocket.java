@@ -1,14 +1,8 @@
 package com.example.koiyure;
 
-import android.os.Handler;
-import android.os.Looper;
-import android.util.Log;
+import android.os.SystemClock;
 
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
 import okhttp3.Response;
-import okhttp3.WebSocket;
-import okhttp3.WebSocketListener;
 import okio.ByteString;
 
 public class WolfxWebsocket {
@@ -16,129 +10,169 @@ public class WolfxWebsocket {
     private static final String TAG = "WolfxWebsocket";
     private static final String URL = "wss://ws-api.wolfx.jp/jma_eew";
 
-    private OkHttpClient client;
-    private WebSocket webSocket;
-    private Listener listener;
+    // Wolfx は "ping" に pong を返し、約1分ごとに heartbeat を送ってくる
+    private static final String PING_TEXT = "ping";
+    private static final long PING_INTERVAL_MILLIS = 30_000;
+    // ping 2回分＋余裕の間なにも届かなければ停止とみなす
+    private static final long STALL_TIMEOUT_MILLIS = 75_000;
 
-    private Handler handler = new Handler(Looper.getMainLooper());
-    private boolean shouldReconnect = true;
-    private int reconnectDelay = 1000; // 初回1秒後に再接続
-    private final int MAX_DELAY = 16000; // 最大16秒
+    // 接続・再接続は FeedConnection が接続用スケジューラ上で管理する
+    private final FeedConnection connection;
+    private Listener listener;
+    private final WolfxDecoder decoder = new WolfxDecoder();
 
     // ★ Listener インターフェース
+    // eew はコールバック中だけ有効（後で使う場合は eew.copy() する）
     public interface Listener {
-        void onWolfxMessageReceived(String message);
-    }
-
-    public void setListener(Listener listener) {
-        this.listener = listener;
-    }
-
-    // ------------------------
-    // 外部から操作できるメソッド
-    // ------------------------
-    public void start() {
-        shouldReconnect = true;
-        connect();
+        void onWolfxEewReceived(EewRecord eew);
     }
 
-    public void stop() {
-        shouldReconnect = false;
-        if (webSocket != null) {
-            webSocket.close(1000, "アプリ終了");
-        }
+    public WolfxWebsocket() {
+        this("wolfx", URL);
     }
 
-    public boolean isConnected() {
-        return webSocket != null;
-    }
-
-    // ------------------------
-    // 内部接続処理
-    // ------------------------
-    private void connect() {
-        client = new OkHttpClient();
-
-        Request request = new Request.Builder()
-                .url(URL)
-                .build();
-
-        webSocket = client.newWebSocket(request, new WebSocketListener() {
+    /** 予備の接続先などに別名で接続する */
+    public WolfxWebsocket(String name, String url) {
+        connection = new FeedConnection(TAG, url,
+                new FeedHealth(name, STALL_TIMEOUT_MILLIS), new FeedConnection.Callback() {
             @Override
-            public void onOpen(WebSocket webSocket, Response response) {
-                reconnectDelay = 1000; // 接続成功したら遅延リセット
+            public void onOpen(Response response) {
                 WolfxOnOpen(response);
             }
 
             @Override
-            public void onMessage(WebSocket webSocket, String text) {
+            public void onMessage(String text) {
                 WolfxOnMessage(text);
             }
 
             @Override
-            public void onMessage(WebSocket webSocket, ByteString bytes) {
+            public void onMessage(ByteString bytes) {
                 WolfxOnMessageBinary(bytes);
             }
 
             @Override
-            public void onClosing(WebSocket webSocket, int code, String reason) {
+            public void onClosing(int code, String reason) {
                 WolfxOnClosing(code, reason);
-                webSocket.close(1000, null);
             }
 
             @Override
-            public void onClosed(WebSocket webSocket, int code, String reason) {
+            public void onClosed(int code, String reason) {
                 WolfxOnClosed(code, reason);
-                attemptReconnect();
             }
 
             @Override
-            public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            public void onFailure(Throwable t, Response response) {
                 WolfxOnFailure(t, response);
-                attemptReconnect();
             }
         });
     }
 
-    private void attemptReconnect() {
-        if (!shouldReconnect) return;
-        Log.d(TAG, "再接続を試みます " + reconnectDelay + "ms後");
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
 
-        handler.postDelayed(() -> {
-            if (shouldReconnect) {
-                connect();
-                reconnectDelay = Math.min(reconnectDelay * 2, MAX_DELAY);
-            }
-        }, reconnectDelay);
+    // ------------------------
+    // 外部から操作できるメソッド
+    // ------------------------
+    public void start() {
+        connection.setPing(PING_TEXT, PING_INTERVAL_MILLIS);
+        connection.start();
+    }
+
+    public void stop() {
+        connection.stop();
+    }
+
+    /** 再接続待ちなら今すぐ接続する */
+    public void reconnectNow() {
+        connection.reconnectNow();
+    }
+
+    public void setNetworkAvailable(boolean available) {
+        connection.setNetworkAvailable(available);
+    }
+
+    /** ネットワーク切替時に接続を張り替える */
+    public void migrate() {
+        connection.migrate();
+    }
+
+    public boolean isConnected() {
+        return connection.getState() == FeedConnection.State.OPEN;
+    }
+
+    public FeedHealth getHealth() {
+        return connection.getHealth();
+    }
+
+    /** 接続先を変える（null なら既定。次の接続から） */
+    public void setUrl(String url) {
+        connection.setUrl(url != null ? url : URL);
+    }
+
+    /** 受信したのと同じ経路でフレームを処理する（記録の再生用） */
+    void inject(String text) {
+        WolfxOnMessage(text, true);
     }
 
     // ------------------------
     // Wolfx専用メソッド（ログ用）
     // ------------------------
     private void WolfxOnOpen(Response response) {
-        Log.d(TAG, "Wolfx接続成功: " + response.message());
+        FeedLog.d(TAG, "Wolfx接続成功: " + response.message());
     }
 
     private void WolfxOnMessage(String text) {
-        Log.d(TAG, "Wolfx受信: " + text);
-        if (listener != null) {
-            listener.onWolfxMessageReceived(text);
+        WolfxOnMessage(text, false);
+    }
+
+    /** @param replayed 記録の再生で流したフレーム（履歴に残さず、鳴らさない） */
+    private void WolfxOnMessage(String text, boolean replayed) {
+        FeedLog.payload(TAG, "wolfx", "Wolfx受信: ", text);
+        long receivedAt = System.currentTimeMillis();
+        long receivedNanos = LatencyMetrics.now();
+        EewRecord eew;
+        try {
+            eew = decoder.decode(text);
+        } catch (RuntimeException e) {
+            FeedLog.w(TAG, "Wolfx解析失敗: " + e.getMessage());
+            return;
+        }
+        if (eew == null) {
+            int kind = decoder.getLastKind();
+            if (kind == WolfxDecoder.KIND_PONG) {
+                connection.getHealth().onPong(SystemClock.elapsedRealtime());
+            } else if (kind == WolfxDecoder.KIND_HEARTBEAT) {
+                connection.getHealth().onHeartbeat(SystemClock.elapsedRealtime());
+            }
+            return;
+        }
+
+        eew.receivedAt = receivedAt;
+        eew.receivedNanos = receivedNanos;
+        eew.replayed = replayed;
+        try {
+            if (listener != null) {
+                listener.onWolfxEewReceived(eew);
+            }
+        } finally {
+            eew.recycle();
         }
     }
 
     private void WolfxOnMessageBinary(ByteString bytes) {
-        Log.d(TAG, "Wolfx受信(バイナリ): " + bytes.hex());
+        FeedLog.d(TAG, "Wolfx受信(バイナリ): " + bytes.size() + "バイト");
     }
 
     private void WolfxOnClosing(int code, String reason) {
-        Log.d(TAG, "Wolfx切断中: " + reason);
+        FeedLog.d(TAG, "Wolfx切断中: " + reason);
     }
 
     private void WolfxOnClosed(int code, String reason) {
-        Log.d(TAG, "Wolfx切断完了: " + reason);
+        FeedLog.d(TAG, "Wolfx切断完了: " + reason);
     }
 
     private void WolfxOnFailure(Throwable t, Response response) {
-        Log.e(TAG, "Wolfxエラー: " + t.getMessage(), t);
+        FeedLog.e(TAG, "Wolfxエラー: " + t.getMessage(), t);
     }
 }
@@ -0,0 +1,98 @@
+package com.example.koiyure;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.*;
+
+/**
+ * AssetTables のバイナリキャッシュのローカルユニットテスト（assets をそのまま読む）
+ * スタンプ違い・壊れたファイルは null になり、AssetCache が作り直す
+ */
+public class AssetTablesTest {
+
+    private static final long STAMP = 1_704_093_010_000L;
+
+    private static AssetTables parsed;
+    private static byte[] cache;
+
+    @BeforeClass
+    public static void load() throws Exception {
+        parsed = AssetTables.parse(path -> new FileInputStream("src/main/assets/" + path));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        parsed.writeTo(out, STAMP);
+        cache = out.toByteArray();
+    }
+
+    @Test
+    public void roundTripsThroughMappedFile() throws IOException {
+        File file = File.createTempFile("asset-tables", ".bin");
+        file.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(cache);
+        }
+
+        AssetTables read;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            read = AssetTables.readFrom(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), STAMP);
+        }
+
+        assertNotNull(read);
+        assertSameTravelTimes(parsed.travelTimes, read.travelTimes);
+        assertSamePoints(parsed.intensityStations, read.intensityStations);
+        assertSamePoints(parsed.epspAreas, read.epspAreas);
+        assertSamePoints(parsed.p2pAreas, read.p2pAreas);
+        assertSamePoints(parsed.tsunamiRegions, read.tsunamiRegions);
+    }
+
+    @Test
+    public void otherApkStampIsRejected() {
+        assertNull(AssetTables.readFrom(ByteBuffer.wrap(cache), STAMP + 1));
+    }
+
+    @Test
+    public void corruptedPayloadIsRejected() {
+        byte[] corrupted = cache.clone();
+        corrupted[corrupted.length / 2] ^= 0x01; // ヘッダーより後ろ（本体の途中）
+        assertNull(AssetTables.readFrom(ByteBuffer.wrap(corrupted), STAMP));
+    }
+
+    @Test
+    public void truncatedFileIsRejected() {
+        assertNull(AssetTables.readFrom(ByteBuffer.wrap(cache, 0, cache.length - 1), STAMP));
+        assertNull(AssetTables.readFrom(ByteBuffer.wrap(cache, 0, AssetTables.HEADER_SIZE - 1), STAMP));
+    }
+
+    private static void assertSameTravelTimes(TravelTimeTable expected, TravelTimeTable actual) {
+        assertArrayEquals(expected.getDepths(), actual.getDepths());
+        assertArrayEquals(expected.getDistances(), actual.getDistances());
+        for (int depth : expected.getDepths()) {
+            for (int distance : expected.getDistances()) {
+                assertEquals(expected.pTime(depth, distance), actual.pTime(depth, distance), 0);
+                assertEquals(expected.sTime(depth, distance), actual.sTime(depth, distance), 0);
+            }
+        }
+    }
+
+    private static void assertSamePoints(PointTable expected, PointTable actual) {
+        assertTrue(expected.size() > 0);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.code(i), actual.code(i));
+            assertEquals(expected.latitude(i), actual.latitude(i), 0);
+            assertEquals(expected.longitude(i), actual.longitude(i), 0);
+            assertEquals(expected.name(i), actual.name(i));
+        }
+    }
+}
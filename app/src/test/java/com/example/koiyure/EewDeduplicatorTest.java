@@ -0,0 +1,57 @@
+package com.example.koiyure;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * EewDeduplicator のローカルユニットテスト
+ */
+public class EewDeduplicatorTest {
+
+    private static EewRecord eew(String eventId, int serial, boolean cancel) {
+        EewRecord r = EewRecord.obtain();
+        r.eventId = eventId;
+        r.serial = serial;
+        r.cancel = cancel;
+        return r;
+    }
+
+    @Test
+    public void dropsDuplicateAndStaleSerials() {
+        EewDeduplicator d = new EewDeduplicator(8);
+        assertEquals(EewDeduplicator.ACCEPT, d.check(eew("A", 1, false)));
+        assertEquals(EewDeduplicator.ACCEPT, d.check(eew("A", 3, false)));
+        assertEquals(EewDeduplicator.DUPLICATE, d.check(eew("A", 3, false)));
+        assertEquals(EewDeduplicator.STALE, d.check(eew("A", 2, false)));
+        assertEquals(EewDeduplicator.ACCEPT, d.check(eew("B", 1, false)));
+        assertEquals(2, d.getDroppedCount());
+    }
+
+    @Test
+    public void passesCancelOnce() {
+        EewDeduplicator d = new EewDeduplicator(8);
+        d.check(eew("A", 2, false));
+        assertEquals(EewDeduplicator.ACCEPT, d.check(eew("A", 2, true)));
+        assertEquals(EewDeduplicator.DUPLICATE, d.check(eew("A", 3, true)));
+        assertEquals(EewDeduplicator.STALE, d.check(eew("A", 4, false)));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        EewDeduplicator d = new EewDeduplicator(2);
+        d.check(eew("A", 5, false));
+        d.check(eew("B", 5, false));
+        d.check(eew("A", 6, false)); // A を使ったので B が追い出される
+        d.check(eew("C", 1, false));
+        assertEquals(EewDeduplicator.DUPLICATE, d.check(eew("A", 6, false)));
+        assertEquals(EewDeduplicator.ACCEPT, d.check(eew("B", 1, false)));
+    }
+
+    @Test
+    public void notificationIdIsStablePerEvent() {
+        assertEquals(EewDeduplicator.notificationId("20240101161010"),
+                EewDeduplicator.notificationId("20240101161010"));
+        assertTrue(EewDeduplicator.notificationId("20240101161010") > 0);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.koiyure;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EewFanInTest {
+
+    private static EewRecord eew(String eventId, int serial, long announcedTime, long receivedAt) {
+        EewRecord r = EewRecord.obtain();
+        r.eventId = eventId;
+        r.serial = serial;
+        r.announcedTime = announcedTime;
+        r.receivedAt = receivedAt;
+        r.receivedNanos = receivedAt * 1_000_000; // ソケットから受けた報
+        return r;
+    }
+
+    @Test
+    public void firstArrivalWins() {
+        EewFanIn fanIn = new EewFanIn(8);
+        assertTrue(fanIn.accept(eew("20240101161010", 1, 1_000, 1_800), EewFanIn.SOURCE_P2P));
+        assertFalse(fanIn.accept(eew("20240101161010", 1, 1_000, 2_100), EewFanIn.SOURCE_WOLFX));
+        assertTrue(fanIn.accept(eew("20240101161010", 2, 3_000, 3_400), EewFanIn.SOURCE_WOLFX));
+        assertFalse(fanIn.accept(eew("20240101161010", 2, 3_000, 3_900), EewFanIn.SOURCE_P2P));
+
+        assertEquals(1, fanIn.getFirstCount(EewFanIn.SOURCE_P2P));
+        assertEquals(1, fanIn.getFirstCount(EewFanIn.SOURCE_WOLFX));
+        assertEquals(2, fanIn.getDroppedCount());
+    }
+
+    @Test
+    public void recordsLatencyAndLag() {
+        EewFanIn fanIn = new EewFanIn(8);
+        fanIn.accept(eew("A", 1, 10_000, 10_600), EewFanIn.SOURCE_WOLFX);
+        fanIn.accept(eew("A", 1, 10_000, 11_000), EewFanIn.SOURCE_P2P);
+        fanIn.accept(eew("A", 1, 10_000, 10_700), EewFanIn.SOURCE_WOLFX_BACKUP);
+
+        assertEquals(600, fanIn.getAverageLatencyMillis(EewFanIn.SOURCE_WOLFX));
+        assertEquals(1_000, fanIn.getAverageLatencyMillis(EewFanIn.SOURCE_P2P));
+        assertEquals(-1, fanIn.getAverageLagMillis(EewFanIn.SOURCE_WOLFX));
+        assertEquals(400, fanIn.getAverageLagMillis(EewFanIn.SOURCE_P2P));
+        assertEquals(100, fanIn.getAverageLagMillis(EewFanIn.SOURCE_WOLFX_BACKUP));
+    }
+
+    @Test
+    public void resendFromSameSourceIsNotLag() {
+        EewFanIn fanIn = new EewFanIn(8);
+        fanIn.accept(eew("A", 1, 0, 500), EewFanIn.SOURCE_WOLFX);
+        assertFalse(fanIn.accept(eew("A", 1, 0, 900), EewFanIn.SOURCE_WOLFX));
+        assertEquals(-1, fanIn.getAverageLagMillis(EewFanIn.SOURCE_WOLFX));
+        assertEquals(2, fanIn.getReceivedCount(EewFanIn.SOURCE_WOLFX));
+    }
+
+    @Test
+    public void backfilledReportDoesNotTakeTheSlot() {
+        EewFanIn fanIn = new EewFanIn(8);
+        // P2P の取り直しで先に見つかった報は確かめるだけ
+        assertTrue(fanIn.isNew(eew("A", 3, 10_000, 12_000)));
+        // 後から届いたライブの同じ報は通す（鳴らせる）
+        assertTrue(fanIn.accept(eew("A", 3, 10_000, 12_500), EewFanIn.SOURCE_WOLFX));
+        // ライブで通した後の取り直しは重複
+        assertFalse(fanIn.isNew(eew("A", 3, 10_000, 13_000)));
+        assertFalse(fanIn.isNew(eew("A", 2, 9_000, 13_000)));
+        assertTrue(fanIn.isNew(eew("A", 4, 11_000, 13_000)));
+        assertEquals(0, fanIn.getDroppedCount());
+    }
+
+    @Test
+    public void heldOrBackfilledReportIsNotTimed() {
+        EewFanIn fanIn = new EewFanIn(8);
+        fanIn.accept(eew("A", 1, 10_000, 10_600), EewFanIn.SOURCE_WOLFX);
+        EewRecord late = eew("A", 1, 10_000, 300_000);
+        late.receivedNanos = 0;
+        assertFalse(fanIn.accept(late, EewFanIn.SOURCE_P2P));
+
+        assertEquals(-1, fanIn.getAverageLatencyMillis(EewFanIn.SOURCE_P2P));
+        assertEquals(-1, fanIn.getAverageLagMillis(EewFanIn.SOURCE_P2P));
+        assertEquals(1, fanIn.getReceivedCount(EewFanIn.SOURCE_P2P));
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.koiyure;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * FeedConnection の再接続待ち時間のローカルユニットテスト
+ */
+public class FeedConnectionTest {
+
+    @Test
+    public void delayStaysWithinBounds() {
+        Random random = new Random(42);
+        long delay = FeedConnection.BASE_DELAY_MILLIS;
+        for (int i = 0; i < 1000; i++) {
+            long next = FeedConnection.nextDelay(delay, random);
+            assertTrue(next >= FeedConnection.BASE_DELAY_MILLIS);
+            assertTrue(next <= FeedConnection.MAX_DELAY_MILLIS);
+            assertTrue(next < Math.max(FeedConnection.BASE_DELAY_MILLIS + 1, delay * 3));
+            delay = next;
+        }
+    }
+
+    @Test
+    public void delayGrowsTowardCap() {
+        Random random = new Random(7);
+        long delay = FeedConnection.BASE_DELAY_MILLIS;
+        long max = 0;
+        for (int i = 0; i < 50; i++) {
+            delay = FeedConnection.nextDelay(delay, random);
+            max = Math.max(max, delay);
+        }
+        assertEquals(FeedConnection.MAX_DELAY_MILLIS, max);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.koiyure;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * FeedHealth のローカルユニットテスト
+ */
+public class FeedHealthTest {
+
+    @Test
+    public void detectsStallOnlyWhileOpen() {
+        FeedHealth h = new FeedHealth("wolfx", 60_000);
+        assertFalse(h.isStalled(1_000_000));
+        h.onOpen(1_000);
+        assertFalse(h.isStalled(60_000));
+        assertTrue(h.isStalled(61_001)); // 開いてから何も届かない
+        h.onMessage(61_000);
+        assertFalse(h.isStalled(100_000));
+        assertTrue(h.isStalled(121_001));
+        h.onClosed();
+        assertFalse(h.isStalled(1_000_000));
+    }
+
+    @Test
+    public void disabledWhenTimeoutIsZero() {
+        FeedHealth h = new FeedHealth("p2p", 0);
+        h.onOpen(1_000);
+        assertFalse(h.isStalled(Long.MAX_VALUE / 2));
+    }
+
+    @Test
+    public void measuresPingRoundTrip() {
+        FeedHealth h = new FeedHealth("wolfx", 60_000);
+        h.onPong(500); // ping 前の pong は無視
+        assertEquals(-1, h.getLastRttMillis());
+        h.onPingSent(1_000);
+        h.onPong(1_080);
+        assertEquals(80, h.getLastRttMillis());
+        assertEquals(80, h.getSmoothedRttMillis());
+        h.onPingSent(2_000);
+        h.onPong(2_160);
+        assertEquals(160, h.getLastRttMillis());
+        assertEquals(90, h.getSmoothedRttMillis());
+    }
+
+    @Test
+    public void countsReconnects() {
+        FeedHealth h = new FeedHealth("p2p", 0);
+        h.onOpen(1);
+        h.onClosed();
+        h.onOpen(2);
+        assertEquals(1, h.getReconnectCount());
+        assertTrue(h.toJson(3).contains("\"reconnects\":1"));
+    }
+
+    @Test
+    public void countsMessagesFromTwoSocketsAtOnce() throws InterruptedException {
+        // 張り替え中は新旧2本のソケットの受信スレッドから同時に届く
+        FeedHealth h = new FeedHealth("wolfx", 60_000);
+        Runnable receive = () -> {
+            for (int i = 0; i < 100_000; i++) h.onMessage(1_000);
+        };
+        Thread current = new Thread(receive);
+        Thread standby = new Thread(receive);
+        current.start();
+        standby.start();
+        current.join();
+        standby.join();
+        assertEquals(200_000, h.getMessageCount());
+    }
+}
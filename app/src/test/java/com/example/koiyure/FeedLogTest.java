@@ -0,0 +1,61 @@
+package com.example.koiyure;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FeedLogTest {
+
+    private final List<String> lines = new ArrayList<>();
+    private final FeedLog.Sink sink = (level, tag, message, t) -> lines.add(level + " " + tag + " " + message);
+
+    @Test
+    public void drainsInOrderAndSkipsLowLevels() {
+        FeedLog log = new FeedLog(8, FeedLog.INFO, sink);
+        log.enqueue(FeedLog.DEBUG, "T", "debug", null, null);
+        log.enqueue(FeedLog.INFO, "T", "a", null, null);
+        log.enqueue(FeedLog.WARN, "T", "b", null, null);
+        assertEquals(2, log.drain());
+        assertEquals("4 T a", lines.get(0));
+        assertEquals("5 T b", lines.get(1));
+    }
+
+    @Test
+    public void overflowDropsOldest() {
+        FeedLog log = new FeedLog(3, FeedLog.DEBUG, sink);
+        for (int i = 0; i < 5; i++) {
+            log.enqueue(FeedLog.DEBUG, "T", "m" + i, null, null);
+        }
+        assertEquals(3, log.drain());
+        assertTrue(lines.get(0).contains("2 件を破棄"));
+        assertEquals("3 T m2", lines.get(1));
+        assertEquals("3 T m4", lines.get(3));
+    }
+
+    @Test
+    public void truncatesPayload() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) sb.append('x');
+        String out = FeedLog.truncate(sb.toString());
+        assertTrue(out.startsWith(sb.substring(0, FeedLog.MAX_PAYLOAD_CHARS)));
+        assertTrue(out.endsWith("（全1000文字）"));
+        assertEquals("short", FeedLog.truncate("short"));
+    }
+
+    @Test
+    public void samplerKeepsOneInN() {
+        FeedLog log = new FeedLog(8, FeedLog.DEBUG, sink);
+        FeedLog.Sampler s = log.sampler("p2p");
+        s.every = 4;
+        int taken = 0;
+        for (int i = 0; i < 20; i++) {
+            if (s.take()) taken++;
+        }
+        assertEquals(5, taken);
+        s.every = 0;
+        assertFalse(s.take());
+    }
+}
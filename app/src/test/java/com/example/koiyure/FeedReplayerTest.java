@@ -0,0 +1,82 @@
+package com.example.koiyure;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * FeedRecording / FeedReplayer のローカルユニットテスト
+ */
+public class FeedReplayerTest {
+
+    private static FeedRecording parse(String text) throws IOException {
+        return FeedRecording.parse(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void parse_skipsCommentsAndKeepsOrder() throws IOException {
+        StringBuilder sb = new StringBuilder("# コメント\n\n");
+        FeedRecording.appendLine(sb, 0, "wolfx", "{\"type\":\"heartbeat\"}");
+        FeedRecording.appendLine(sb, 120, "p2p", "{\"code\":556}");
+        FeedRecording.appendLine(sb, 100, "p2p", "{\"code\":551}"); // 時刻が戻っても順番どおり
+        FeedRecording r = parse(sb.toString());
+        assertEquals(3, r.size());
+        assertEquals("wolfx", r.feed(0));
+        assertEquals("{\"code\":556}", r.payload(1));
+        assertEquals(120, r.offsetMillis(2));
+        assertEquals(120, r.durationMillis());
+    }
+
+    @Test(expected = IOException.class)
+    public void parse_rejectsMalformedLine() throws IOException {
+        parse("100\tp2p\n");
+    }
+
+    @Test
+    public void replay_maxSpeedDeliversEverythingInOrder() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            FeedRecording.appendLine(sb, i * 1000L, i % 2 == 0 ? "p2p" : "wolfx", "#" + i);
+        }
+        List<String> got = new ArrayList<>();
+        long start = System.nanoTime();
+        new FeedReplayer(parse(sb.toString()), FeedReplayer.MAX_SPEED,
+                (feed, payload) -> got.add(feed + payload)).run();
+        assertTrue((System.nanoTime() - start) < 1_000_000_000L);
+        assertEquals(50, got.size());
+        assertEquals("p2p#0", got.get(0));
+        assertEquals("wolfx#49", got.get(49));
+    }
+
+    @Test
+    public void replay_speedScalesTime() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        FeedRecording.appendLine(sb, 0, "p2p", "a");
+        FeedRecording.appendLine(sb, 500, "p2p", "b");
+        FeedReplayer replayer = new FeedReplayer(parse(sb.toString()), 10, (feed, payload) -> { });
+        long start = System.nanoTime();
+        replayer.run();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        assertTrue("elapsed=" + elapsedMs, elapsedMs >= 45 && elapsedMs < 400);
+        assertEquals(2, replayer.getFramesSent());
+    }
+
+    @Test
+    public void sampleRecordingParses() throws IOException {
+        try (InputStream in = new FileInputStream("../replay-server/recordings/noto-2024-burst.tsv")) {
+            FeedRecording r = FeedRecording.parse(in);
+            assertTrue(r.size() > 100);
+            for (int i = 0; i < r.size(); i++) {
+                assertTrue(r.feed(i).equals("p2p") || r.feed(i).equals("wolfx"));
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.koiyure;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FrameWakeLockTest {
+
+    private static final class FakeLock implements FrameWakeLock.Lock {
+        final List<Long> timeouts = new ArrayList<>();
+        int releases = 0;
+
+        @Override
+        public void acquire(long timeoutMillis) {
+            timeouts.add(timeoutMillis);
+        }
+
+        @Override
+        public void release() {
+            releases++;
+        }
+    }
+
+    private long now = 10_000;
+
+    @Test
+    public void shortensToTailWhenIdle() {
+        FrameWakeLock wl = new FrameWakeLock(() -> now);
+        FakeLock lock = new FakeLock();
+        wl.setLock(lock);
+
+        wl.enter();
+        now += 40;
+        wl.exit();
+        assertEquals(2, lock.timeouts.size());
+        assertEquals(FrameWakeLock.MAX_HOLD_MILLIS, (long) lock.timeouts.get(0));
+        assertEquals(FrameWakeLock.TAIL_MILLIS, (long) lock.timeouts.get(1));
+
+        // 猶予が切れた後は保持していない
+        now += 10_000;
+        assertEquals(40 + FrameWakeLock.TAIL_MILLIS, wl.getHeldMillis());
+        assertEquals(1, wl.getAcquireCount());
+    }
+
+    @Test
+    public void keepsHoldingWhileFramesOverlap() {
+        FrameWakeLock wl = new FrameWakeLock(() -> now);
+        FakeLock lock = new FakeLock();
+        wl.setLock(lock);
+
+        wl.enter();
+        now += 10;
+        wl.enter();
+        now += 10;
+        wl.exit();
+        // もう1件処理中なので縮めない
+        assertEquals(1, lock.timeouts.size());
+        now += 10;
+        wl.exit();
+        assertEquals(2, lock.timeouts.size());
+        assertEquals(1, wl.getAcquireCount());
+    }
+
+    @Test
+    public void boundedWhenExitIsMissed() {
+        FrameWakeLock wl = new FrameWakeLock(() -> now);
+        FakeLock lock = new FakeLock();
+        wl.setLock(lock);
+
+        wl.enter();
+        now += 60_000;
+        assertEquals(FrameWakeLock.MAX_HOLD_MILLIS, wl.getHeldMillis());
+
+        // 次のフレームでは取り直し、取りこぼした exit は数えない
+        wl.enter();
+        assertEquals(2, wl.getAcquireCount());
+        wl.exit();
+        assertEquals(FrameWakeLock.TAIL_MILLIS, (long) lock.timeouts.get(lock.timeouts.size() - 1));
+        wl.setLock(null);
+        assertEquals(1, lock.releases);
+    }
+
+    @Test
+    public void noLockIsNoop() {
+        FrameWakeLock wl = new FrameWakeLock(() -> now);
+        wl.enter();
+        wl.exit();
+        assertEquals(0, wl.getAcquireCount());
+        assertEquals(0, wl.getHeldMillis());
+    }
+}
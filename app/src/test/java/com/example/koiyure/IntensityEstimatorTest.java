@@ -0,0 +1,87 @@
+package com.example.koiyure;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * IntensityEstimator のローカルユニットテスト
+ */
+public class IntensityEstimatorTest {
+
+    private static PointTable stations;
+
+    @BeforeClass
+    public static void load() throws Exception {
+        try (InputStream in = new FileInputStream("src/main/assets/" + PointTable.INTENSITY_STATIONS_ASSET)) {
+            stations = PointTable.parseIntensityStations(in);
+        }
+    }
+
+    private static EewRecord eew(double lat, double lon, int depth, double magnitude) {
+        EewRecord r = EewRecord.obtain();
+        r.eventId = "20240101161010";
+        r.serial = 1;
+        r.latitude = lat;
+        r.longitude = lon;
+        r.depth = depth;
+        r.magnitude = magnitude;
+        return r;
+    }
+
+    @Test
+    public void largeShallowQuakeIsStrongNearAndWeakFar() {
+        EewRecord r = eew(37.5, 137.3, 10, 7.6);
+        double near = IntensityEstimator.estimateAt(r, 37.4, 137.2);
+        double far = IntensityEstimator.estimateAt(r, 26.2, 127.7); // 那覇
+        assertTrue(near >= 6.0);
+        assertTrue(far < 1.0);
+    }
+
+    @Test
+    public void decreasesWithDistance() {
+        EewRecord r = eew(35.0, 139.0, 30, 6.0);
+        double previous = Double.MAX_VALUE;
+        for (double dLat = 0; dLat < 5; dLat += 0.5) {
+            double value = IntensityEstimator.estimateAt(r, 35.0 + dLat, 139.0);
+            assertTrue(value < previous);
+            previous = value;
+        }
+    }
+
+    @Test
+    public void bulkEstimateMatchesSinglePoint() {
+        IntensityEstimator estimator = new IntensityEstimator(stations);
+        EewRecord r = eew(36.0, 140.0, 50, 6.5);
+        assertTrue(estimator.estimate(r));
+        for (int i = 0; i < stations.size(); i += 53) {
+            double single = IntensityEstimator.estimateAt(r, stations.latitude(i), stations.longitude(i));
+            if (single < 0.5) continue; // 遠方は震源距離の求め方の差が出る
+            assertEquals(single, estimator.intensity(i), 0.05);
+        }
+        assertEquals(estimator.getMaxIntensity(), estimator.intensity(estimator.getMaxIndex()), 0);
+        assertTrue(estimator.toJson(r).contains("\"serial\":1"));
+    }
+
+    @Test
+    public void skipsCancelledAndUnknownMagnitude() {
+        IntensityEstimator estimator = new IntensityEstimator(stations);
+        EewRecord r = eew(36.0, 140.0, 50, Double.NaN);
+        assertFalse(estimator.estimate(r));
+        assertTrue(Float.isNaN(estimator.getMaxIntensity()));
+        assertTrue(Double.isNaN(IntensityEstimator.estimateAt(r, 36.0, 140.0)));
+    }
+
+    @Test
+    public void convertsToScaleCodes() {
+        assertEquals(0, IntensityEstimator.toScale(0.4));
+        assertEquals(10, IntensityEstimator.toScale(0.5));
+        assertEquals(45, IntensityEstimator.toScale(4.7));
+        assertEquals(55, IntensityEstimator.toScale(5.9));
+        assertEquals(70, IntensityEstimator.toScale(6.6));
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.koiyure;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverValuesWithinOneSixteenth() {
+        for (long v = 0; v < 5_000_000; v += 997) {
+            long rep = LatencyHistogram.valueOf(LatencyHistogram.indexOf(v));
+            assertTrue("v=" + v, Math.abs(rep - v) <= v / 8 + 1);
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.indexOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(-1, h.percentileMicros(0.5));
+        for (int i = 1; i <= 100; i++) {
+            h.record(i * 1000L);
+        }
+        assertEquals(100, h.getCount());
+        assertEquals(100_000, h.getMaxMicros());
+        long p50 = h.percentileMicros(0.50);
+        long p99 = h.percentileMicros(0.99);
+        assertTrue("p50=" + p50, Math.abs(p50 - 50_000) <= 50_000 / 16 + 1);
+        assertTrue("p99=" + p99, Math.abs(p99 - 99_000) <= 99_000 / 16 + 1);
+        assertEquals(100_000, h.percentileMicros(1.0));
+    }
+
+    @Test
+    public void renderTokenRecordsOnce() {
+        LatencyMetrics metrics = new LatencyMetrics();
+        EewRecord eew = EewRecord.obtain();
+        eew.feed = EewFanIn.SOURCE_P2P;
+        eew.receivedNanos = LatencyMetrics.now();
+        int token = metrics.beginRender(eew);
+        metrics.endRender(token);
+        metrics.endRender(token);
+        assertEquals(1, metrics.getHistogram(EewFanIn.SOURCE_P2P, LatencyMetrics.STAGE_RENDER).getCount());
+
+        eew.receivedNanos = 0;
+        assertEquals(-1, metrics.beginRender(eew));
+        eew.recycle();
+    }
+}
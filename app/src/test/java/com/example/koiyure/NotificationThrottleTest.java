@@ -0,0 +1,118 @@
+package com.example.koiyure;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NotificationThrottleTest {
+
+    /** 時刻を手で進め、予約された処理をその時刻に実行するホスト */
+    private static final class FakeHost implements NotificationThrottle.Host {
+        long now = 0;
+        final List<NotificationThrottle.Alert> posted = new ArrayList<>();
+        final List<Boolean> audible = new ArrayList<>();
+        final List<long[]> dueAt = new ArrayList<>();
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void post(NotificationThrottle.Alert alert, boolean audible) {
+            posted.add(alert);
+            this.audible.add(audible);
+        }
+
+        @Override
+        public void schedule(Runnable task, long delayMillis) {
+            dueAt.add(new long[]{now + delayMillis});
+            tasks.add(task);
+        }
+
+        @Override
+        public long now() {
+            return now;
+        }
+
+        void advanceTo(long time) {
+            now = time;
+            boolean ran = true;
+            while (ran) {
+                ran = false;
+                for (int i = 0; i < tasks.size(); i++) {
+                    if (dueAt.get(i)[0] <= now) {
+                        Runnable task = tasks.remove(i);
+                        dueAt.remove(i);
+                        task.run();
+                        ran = true;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private static NotificationThrottle.Alert alert(int id, String text, int level) {
+        return new NotificationThrottle.Alert(id, "eew_alert", "緊急地震速報", text, level, 0, 0);
+    }
+
+    @Test
+    public void coalescesUpdatesWithinWindow() {
+        FakeHost host = new FakeHost();
+        NotificationThrottle throttle = new NotificationThrottle(1000, 4, host);
+
+        throttle.submit(alert(1, "第1報", 100));
+        host.advanceTo(200);
+        throttle.submit(alert(1, "第2報", 100));
+        host.advanceTo(400);
+        throttle.submit(alert(1, "第3報", 100));
+        assertEquals(1, host.posted.size());
+
+        host.advanceTo(1000);
+        assertEquals(2, host.posted.size());
+        assertEquals("第3報", host.posted.get(1).text);
+        // 同じ重要度の更新は鳴らさない
+        assertTrue(host.audible.get(0));
+        assertFalse(host.audible.get(1));
+    }
+
+    @Test
+    public void realertsWhenLevelRises() {
+        FakeHost host = new FakeHost();
+        NotificationThrottle throttle = new NotificationThrottle(1000, 4, host);
+
+        throttle.submit(alert(1, "予報", 100));
+        host.advanceTo(300);
+        throttle.submit(alert(1, "警報", 200));
+        host.advanceTo(500);
+        throttle.submit(alert(1, "警報 第3報", 200));
+        host.advanceTo(1000);
+
+        // まとめた中に重要度の上がった報があれば鳴らす
+        assertEquals("警報 第3報", host.posted.get(1).text);
+        assertTrue(host.audible.get(1));
+
+        host.advanceTo(3000);
+        throttle.submit(alert(1, "取消", 0));
+        assertEquals(3, host.posted.size());
+        assertFalse(host.audible.get(2));
+    }
+
+    @Test
+    public void limitsTotalRate() {
+        FakeHost host = new FakeHost();
+        NotificationThrottle throttle = new NotificationThrottle(1000, 2, host);
+
+        throttle.submit(alert(1, "a", 1));
+        throttle.submit(alert(2, "b", 1));
+        throttle.submit(alert(3, "c", 1));
+        assertEquals(2, host.posted.size());
+
+        host.advanceTo(999);
+        assertEquals(2, host.posted.size());
+        host.advanceTo(1000);
+        assertEquals(3, host.posted.size());
+        assertEquals(3, host.posted.get(2).id);
+        assertTrue(host.audible.get(2));
+    }
+}
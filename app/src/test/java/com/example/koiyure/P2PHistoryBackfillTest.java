@@ -0,0 +1,115 @@
+package com.example.koiyure;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+/**
+ * P2PHistoryBackfill のローカルユニットテスト（/v2/history をモックサーバーで返す）
+ */
+public class P2PHistoryBackfillTest {
+
+    private MockWebServer server;
+    private P2PHistoryBackfill backfill;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        backfill = new P2PHistoryBackfill(new OkHttpClient(), server.url("/").toString());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private static String item(String id, String time) {
+        return "{\"id\":\"" + id + "\",\"code\":551,\"time\":\"" + time + "\","
+                + "\"earthquake\":{\"time\":\"2024/01/01 00:00:00\"}}";
+    }
+
+    private static long jst(String time) {
+        return new JsonCursor().reset("\"" + time + "\"").readJmaTime(0);
+    }
+
+    @Test
+    public void returnsOnlyMissingFramesOldestFirst() throws Exception {
+        // 新しい順。c は受信済み、a は切断前
+        server.enqueue(new MockResponse().setBody("["
+                + item("e", "2024/01/01 16:14:00") + ","
+                + item("d", "2024/01/01 16:13:00") + ","
+                + item("c", "2024/01/01 16:12:00") + ","
+                + item("a", "2024/01/01 16:09:00") + "]"));
+        backfill.markDelivered("b", jst("2024/01/01 16:10:00"));
+        backfill.markDelivered("c", jst("2024/01/01 16:12:00"));
+
+        List<String> frames = backfill.fetchSince(jst("2024/01/01 16:10:00"));
+
+        assertEquals(2, frames.size());
+        assertTrue(frames.get(0).contains("\"id\":\"d\""));
+        assertTrue(frames.get(1).contains("\"id\":\"e\""));
+        assertEquals(1, server.getRequestCount()); // 古いものが出たので次のページは取らない
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("/v2/history", request.getRequestUrl().encodedPath());
+        assertEquals(5, request.getRequestUrl().queryParameterValues("codes").size());
+        assertEquals("100", request.getRequestUrl().queryParameter("limit"));
+        assertEquals("0", request.getRequestUrl().queryParameter("offset"));
+    }
+
+    @Test
+    public void pagingIsBounded() throws Exception {
+        for (int page = 0; page < P2PHistoryBackfill.MAX_PAGES + 2; page++) {
+            StringBuilder body = new StringBuilder("[");
+            for (int i = 0; i < P2PHistoryBackfill.PAGE_SIZE; i++) {
+                if (i > 0) body.append(',');
+                body.append(item("p" + page + "-" + i, "2024/01/01 16:14:00"));
+            }
+            server.enqueue(new MockResponse().setBody(body.append(']').toString()));
+        }
+
+        List<String> frames = backfill.fetchSince(jst("2024/01/01 16:00:00"));
+
+        assertEquals(P2PHistoryBackfill.MAX_PAGES, server.getRequestCount());
+        assertEquals(P2PHistoryBackfill.MAX_PAGES * P2PHistoryBackfill.PAGE_SIZE, frames.size());
+    }
+
+    @Test
+    public void markDeliveredRejectsDuplicates() {
+        assertTrue(backfill.markDelivered("x", 1000));
+        assertFalse(backfill.markDelivered("x", 1000));
+        assertTrue(backfill.markDelivered(null, 2000));
+        // サーバーの配信時刻を持たない集計は取り直しの起点を進めない
+        assertEquals(1000, backfill.getLastTime());
+    }
+
+    @Test
+    public void backfillSinceIsCappedToRecentWindow() {
+        long now = jst("2024/01/02 12:00:00");
+        assertEquals(0, backfill.backfillSince(now)); // 初回接続は取り直さない
+
+        backfill.markDelivered("recent", now - 60_000);
+        assertEquals(now - 60_000, backfill.backfillSince(now));
+
+        // 長い切断の後は直近の分だけ
+        long later = now + 24 * 3600_000L;
+        assertEquals(later - P2PHistoryBackfill.MAX_GAP_MILLIS, backfill.backfillSince(later));
+    }
+
+    @Test(expected = IOException.class)
+    public void httpErrorIsReported() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        backfill.fetchSince(1);
+    }
+}
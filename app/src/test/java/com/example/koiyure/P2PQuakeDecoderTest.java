@@ -0,0 +1,87 @@
+package com.example.koiyure;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * P2PQuakeDecoder のローカルユニットテスト
+ */
+public class P2PQuakeDecoderTest {
+
+    @Test
+    public void decode_quakeInfo() {
+        String json = "{\"_id\":\"65926b\",\"code\":551,\"time\":\"2024/01/01 16:14:05.123\","
+                + "\"issue\":{\"source\":\"気象庁\",\"time\":\"2024/01/01 16:14:00\",\"type\":\"DetailScale\",\"correct\":\"None\"},"
+                + "\"earthquake\":{\"time\":\"2024/01/01 16:10:00\",\"hypocenter\":{\"name\":\"石川県能登地方\","
+                + "\"latitude\":37.5,\"longitude\":137.3,\"depth\":10,\"magnitude\":7.6},\"maxScale\":70,"
+                + "\"domesticTsunami\":\"Warning\",\"foreignTsunami\":\"Unknown\"},"
+                + "\"points\":[{\"pref\":\"石川県\",\"addr\":\"志賀町香能\",\"isArea\":false,\"scale\":70}]}";
+
+        P2PQuakeDecoder.Message m = new P2PQuakeDecoder().decode(json, 0);
+        assertTrue(m instanceof P2PQuakeDecoder.QuakeInfo);
+        P2PQuakeDecoder.QuakeInfo q = (P2PQuakeDecoder.QuakeInfo) m;
+        assertEquals("65926b", q.id);
+        assertEquals("DetailScale", q.issueType);
+        assertEquals("石川県能登地方", q.hypocenter);
+        assertEquals(7.6, q.magnitude, 1e-9);
+        assertEquals(70, q.maxScale);
+        assertArrayEquals(new String[]{"志賀町香能"}, q.pointAddrs);
+        assertArrayEquals(new int[]{70}, q.pointScales);
+    }
+
+    @Test
+    public void decode_eewBecomesRecord() {
+        String json = "{\"_id\":\"x\",\"code\":556,\"time\":\"2024/01/01 16:10:20.000\",\"test\":false,"
+                + "\"earthquake\":{\"originTime\":\"2024/01/01 16:10:09\",\"condition\":\"\","
+                + "\"hypocenter\":{\"name\":\"石川県能登地方\",\"latitude\":37.6,\"longitude\":137.2,\"depth\":10,\"magnitude\":7.4}},"
+                + "\"issue\":{\"time\":\"2024/01/01 16:10:27\",\"eventId\":\"20240101161010\",\"serial\":\"5\"},"
+                + "\"cancelled\":false,\"areas\":[{\"pref\":\"石川県\",\"name\":\"石川県能登\",\"scaleFrom\":70,\"scaleTo\":99}]}";
+
+        P2PQuakeDecoder.Eew m = (P2PQuakeDecoder.Eew) new P2PQuakeDecoder().decode(json, 0);
+        EewRecord r = m.record;
+        assertEquals(EewRecord.SOURCE_P2P, r.source);
+        assertEquals("20240101161010", r.eventId);
+        assertEquals(5, r.serial);
+        assertEquals("7", r.maxIntensity);
+        assertTrue(r.warning);
+        r.recycle();
+    }
+
+    @Test
+    public void lowPriorityCodesAreDroppedOrAggregated() {
+        P2PQuakeDecoder decoder = new P2PQuakeDecoder();
+        assertNull(decoder.decode("{\"_id\":\"a\",\"code\":555,\"areas\":[{\"id\":10,\"peer\":3}]}", 0));
+        assertEquals(1, decoder.getDroppedAreapeers());
+
+        assertNull(decoder.decode("{\"code\":561,\"area\":250}", 0));
+        assertNull(decoder.decode("{\"code\":561,\"area\":250}", 1000));
+        assertNull(decoder.decode("{\"code\":561,\"area\":251}", 2000));
+
+        P2PQuakeDecoder.UserQuakeSummary s = decoder.flushUserQuake(3000);
+        assertEquals(3, s.total);
+        assertArrayEquals(new int[]{250, 251}, s.areas);
+        assertArrayEquals(new int[]{2, 1}, s.counts);
+        assertNull(decoder.flushUserQuake(4000));
+    }
+
+    @Test
+    public void trailingUserQuakeIsFlushedAtWindowEnd() {
+        P2PQuakeDecoder decoder = new P2PQuakeDecoder();
+        assertEquals(0, decoder.userQuakeDeadline());
+
+        // 後続の 561 が来ないまま窓が閉じる
+        assertNull(decoder.decode("{\"code\":561,\"area\":250}", 5000));
+        assertNull(decoder.decode("{\"code\":561,\"area\":300}", 8000));
+        long deadline = decoder.userQuakeDeadline();
+        assertEquals(15_000, deadline);
+        assertNull(decoder.flushUserQuakeIfDue(deadline - 1));
+
+        P2PQuakeDecoder.UserQuakeSummary s = decoder.flushUserQuakeIfDue(deadline);
+        assertEquals(2, s.total);
+        assertEquals(5000, s.windowStart);
+        assertEquals(deadline, s.windowEnd);
+        assertEquals(0, decoder.userQuakeDeadline());
+        assertNull(decoder.flushUserQuakeIfDue(deadline + 10_000));
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.koiyure;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class ServiceLivenessTest {
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("liveness", ".bin");
+        file.deleteOnExit();
+        return file;
+    }
+
+    @Test
+    public void aliveOnlyInWritingProcess() throws IOException {
+        File file = tempFile();
+        ServiceLiveness liveness = ServiceLiveness.open(file);
+        liveness.markStarted(1234, 1_000_000, 5_000);
+        liveness.setFeed(EewFanIn.SOURCE_WOLFX, ServiceLiveness.STATE_OPEN, 1_050_000);
+        liveness.markEvent(1_040_000);
+        liveness.heartbeat(1_060_000, 65_000);
+
+        ServiceLiveness.Snapshot s = liveness.read(1234, 70_000);
+        assertTrue(s.alive);
+        assertEquals(90_000, s.uptimeMillis(1_090_000));
+        assertEquals(ServiceLiveness.STATE_OPEN, s.feedStates[EewFanIn.SOURCE_WOLFX]);
+        assertEquals(ServiceLiveness.STATE_STOPPED, s.feedStates[EewFanIn.SOURCE_P2P]);
+        assertEquals(1_040_000, s.lastEventAt);
+
+        // プロセスが作り直されると ID が合わない
+        assertFalse(liveness.read(5678, 70_000).alive);
+    }
+
+    @Test
+    public void notAliveWhenHeartbeatStops() throws IOException {
+        ServiceLiveness liveness = ServiceLiveness.open(tempFile());
+        liveness.markStarted(1234, 1_000_000, 5_000);
+        liveness.heartbeat(1_030_000, 35_000);
+        assertTrue(liveness.read(1234, 35_000 + ServiceLiveness.HEARTBEAT_TIMEOUT_MILLIS - 1).alive);
+
+        // 同じプロセスでも心拍が途切れていれば固まっている
+        assertFalse(liveness.read(1234, 35_000 + ServiceLiveness.HEARTBEAT_TIMEOUT_MILLIS).alive);
+
+        // 端末が再起動して uptime が巻き戻った場合も稼働中とみなさない
+        assertFalse(liveness.read(1234, 1_000).alive);
+    }
+
+    @Test
+    public void survivesReopen() throws IOException {
+        File file = tempFile();
+        ServiceLiveness first = ServiceLiveness.open(file);
+        first.markStarted(1234, 1_000_000, 5_000);
+        first.setFeed(EewFanIn.SOURCE_P2P, ServiceLiveness.STATE_DOWN, 1_010_000);
+        first.heartbeat(1_030_000, 35_000);
+
+        ServiceLiveness.Snapshot s = ServiceLiveness.open(file).read(1234, 40_000);
+        assertTrue(s.alive);
+        assertEquals(1, s.starts);
+        assertEquals(ServiceLiveness.STATE_DOWN, s.feedStates[EewFanIn.SOURCE_P2P]);
+        assertEquals(1_010_000, s.feedLastMessageAt[EewFanIn.SOURCE_P2P]);
+
+        first.markStopped(1_050_000);
+        s = ServiceLiveness.open(file).read(1234, 60_000);
+        assertFalse(s.alive);
+        // 止まった後は最後の稼働の長さ
+        assertEquals(50_000, s.uptimeMillis(2_000_000));
+        assertTrue(s.toJson(2_000_000).contains("\"p2p\":{\"state\":\"down\",\"lastMessageAt\":1010000}"));
+    }
+
+    @Test
+    public void resetsUnknownFile() throws IOException {
+        File file = tempFile();
+        ServiceLiveness.Snapshot s = ServiceLiveness.open(file).read(0, 0);
+        assertFalse(s.alive);
+        assertEquals(0, s.starts);
+        assertEquals(0, s.uptimeMillis(1_000));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.koiyure;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * SpatialIndex のローカルユニットテスト（震度観測点の全件探索と比較する）
+ */
+public class SpatialIndexTest {
+
+    private static PointTable stations;
+    private static SpatialIndex index;
+
+    @BeforeClass
+    public static void load() throws Exception {
+        try (InputStream in = new FileInputStream("src/main/assets/" + PointTable.INTENSITY_STATIONS_ASSET)) {
+            stations = PointTable.parseIntensityStations(in);
+        }
+        index = new SpatialIndex(stations);
+    }
+
+    @Test
+    public void nearestMatchesBruteForce() {
+        Random random = new Random(1);
+        int[] found = new int[5];
+        double[] distances = new double[5];
+        for (int q = 0; q < 200; q++) {
+            double lat = 24 + random.nextDouble() * 22;
+            double lon = 123 + random.nextDouble() * 23;
+            assertEquals(5, index.nearest(lat, lon, found, distances));
+
+            double best = Double.MAX_VALUE;
+            for (int i = 0; i < stations.size(); i++) {
+                if (Float.isNaN(stations.latitude(i))) continue;
+                best = Math.min(best, index.distanceKm(i, lat, lon));
+            }
+            assertEquals(best, distances[0], 1e-9);
+            for (int k = 1; k < 5; k++) {
+                assertTrue(distances[k - 1] <= distances[k]);
+            }
+        }
+    }
+
+    @Test
+    public void withinReturnsOnlyPointsInRadius() {
+        int[] out = new int[256];
+        int n = index.within(35.68, 139.77, 20, out);
+        assertTrue(n > 0);
+        int expected = 0;
+        for (int i = 0; i < stations.size(); i++) {
+            if (!Float.isNaN(stations.latitude(i)) && index.distanceKm(i, 35.68, 139.77) <= 20) expected++;
+        }
+        assertEquals(expected, n);
+        for (int k = 0; k < n; k++) {
+            assertTrue(index.distanceKm(out[k], 35.68, 139.77) <= 20);
+        }
+    }
+
+    @Test
+    public void looksUpByCodeAndName() {
+        for (int i = 0; i < stations.size(); i += 97) {
+            assertEquals(stations.code(i), stations.code(index.indexOf(stations.code(i))));
+            assertEquals(stations.name(i), stations.name(index.indexOfName(stations.name(i))));
+        }
+        assertEquals(-1, index.indexOf(-12345));
+        assertEquals(-1, index.indexOfName("存在しない地点"));
+    }
+}
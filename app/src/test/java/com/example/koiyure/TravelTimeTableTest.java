@@ -0,0 +1,52 @@
+package com.example.koiyure;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * TravelTimeTable のローカルユニットテスト（assets の走時表をそのまま読む）
+ */
+public class TravelTimeTableTest {
+
+    private static TravelTimeTable table;
+
+    @BeforeClass
+    public static void load() throws Exception {
+        try (InputStream in = new FileInputStream("src/main/assets/" + TravelTimeTable.ASSET_PATH)) {
+            table = TravelTimeTable.parse(in);
+        }
+    }
+
+    @Test
+    public void gridPointsMatchTable() {
+        assertEquals(106, table.getDepths().length);
+        assertEquals(236, table.getDistances().length);
+        assertEquals(16.987, table.pTime(10, 100), 1e-3);
+        assertEquals(28.972, table.sTime(10, 100), 1e-3);
+    }
+
+    @Test
+    public void interpolatesBetweenGridPoints() {
+        // 深さ10〜12km・距離100〜105kmの中央
+        double expected = (28.972 + 30.351 + 28.858 + 30.224) / 4;
+        assertEquals(expected, table.sTime(11, 102.5), 1e-3);
+    }
+
+    @Test
+    public void secondsUntilS() {
+        EewRecord eew = EewRecord.obtain();
+        eew.originTime = 1_000_000L;
+        eew.latitude = 35.0;
+        eew.longitude = 135.0;
+        eew.depth = 10;
+        // 震央上の地点では S 走時 ≒ 深さ10kmの距離0km
+        double seconds = table.secondsUntilS(eew, 35.0, 135.0, 1_000_000L);
+        assertEquals(table.sTime(10, 0), seconds, 1e-6);
+        eew.recycle();
+    }
+}
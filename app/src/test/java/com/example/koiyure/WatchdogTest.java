@@ -0,0 +1,51 @@
+package com.example.koiyure;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class WatchdogTest {
+
+    @Test
+    public void restartsWhenServiceIsDown() {
+        assertEquals(Watchdog.RESTART, Watchdog.evaluate(false, 0, null));
+    }
+
+    @Test
+    public void reconnectsClosedOrStalledFeeds() {
+        FeedHealth p2p = new FeedHealth("p2p", 0);
+        FeedHealth wolfx = new FeedHealth("wolfx", 75_000);
+        p2p.onOpen(1_000);
+        wolfx.onOpen(1_000);
+        wolfx.onMessage(2_000);
+        assertEquals(Watchdog.HEALTHY, Watchdog.evaluate(true, 60_000, Arrays.asList(p2p, wolfx)));
+
+        // Wolfx の心拍が途絶えた
+        assertEquals(Watchdog.RECONNECT, Watchdog.evaluate(true, 80_000, Arrays.asList(p2p, wolfx)));
+
+        wolfx.onMessage(80_000);
+        p2p.onClosed();
+        assertEquals(Watchdog.RECONNECT, Watchdog.evaluate(true, 90_000, Arrays.asList(p2p, wolfx)));
+    }
+
+    @Test
+    public void noActiveFeedsIsHealthy() {
+        assertEquals(Watchdog.HEALTHY, Watchdog.evaluate(true, 0, Collections.emptyList()));
+    }
+
+    @Test
+    public void backsOffWhileHealthy() {
+        long interval = Watchdog.MIN_INTERVAL_MILLIS;
+        interval = Watchdog.nextInterval(interval, Watchdog.HEALTHY);
+        assertEquals(2 * Watchdog.MIN_INTERVAL_MILLIS, interval);
+        for (int i = 0; i < 10; i++) {
+            interval = Watchdog.nextInterval(interval, Watchdog.HEALTHY);
+        }
+        assertEquals(Watchdog.MAX_INTERVAL_MILLIS, interval);
+        assertEquals(Watchdog.MIN_INTERVAL_MILLIS, Watchdog.nextInterval(interval, Watchdog.RECONNECT));
+        assertEquals(Watchdog.MIN_INTERVAL_MILLIS, Watchdog.nextInterval(interval, Watchdog.RESTART));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.koiyure;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * WolfxDecoder のローカルユニットテスト
+ */
+public class WolfxDecoderTest {
+
+    private static final String EEW =
+            "{\"type\":\"jma_eew\",\"Title\":\"緊急地震速報（警報）\",\"CodeType\":\"Ｍ、最大予測震度及び主要動到達予測時刻の緊急地震速報\","
+                    + "\"Issue\":{\"Source\":\"東京\",\"Status\":\"通常\"},\"EventID\":\"20240101161010\",\"Serial\":5,"
+                    + "\"AnnouncedTime\":\"2024/01/01 16:10:27\",\"OriginTime\":\"2024/01/01 16:10:09\","
+                    + "\"Hypocenter\":\"石川県能登地方\",\"Latitude\":37.6,\"Longitude\":137.2,\"Magunitude\":7.4,"
+                    + "\"Depth\":10,\"MaxIntensity\":\"7\",\"Accuracy\":{\"Epicenter\":\"IPF 法（5 点以上）\"},"
+                    + "\"WarnArea\":[{\"Chiiki\":\"石川県能登\",\"Shindo1\":\"7\",\"Type\":\"警報\",\"Arrive\":true}],"
+                    + "\"isSea\":false,\"isTraining\":false,\"isAssumption\":false,\"isWarn\":true,"
+                    + "\"isFinal\":false,\"isCancel\":false,\"OriginalText\":\"37 03 00 240101161027\\n\"}";
+
+    @Test
+    public void decode_jmaEew() {
+        EewRecord r = new WolfxDecoder().decode(EEW);
+        assertNotNull(r);
+        assertEquals("20240101161010", r.eventId);
+        assertEquals(5, r.serial);
+        assertEquals("石川県能登地方", r.hypocenter);
+        assertEquals(37.6, r.latitude, 1e-9);
+        assertEquals(137.2, r.longitude, 1e-9);
+        assertEquals(7.4, r.magnitude, 1e-9);
+        assertEquals(10, r.depth);
+        assertEquals("7", r.maxIntensity);
+        assertTrue(r.warning);
+        assertFalse(r.cancel);
+        // 2024-01-01T07:10:09Z
+        assertEquals(1704093009000L, r.originTime);
+        r.recycle();
+    }
+
+    @Test
+    public void decode_heartbeatReturnsNull() {
+        assertNull(new WolfxDecoder().decode(
+                "{\"type\":\"heartbeat\",\"ver\":18,\"id\":\"a1b2\",\"timestamp\":1704093009000}"));
+    }
+
+    @Test
+    public void decode_reportsFrameKind() {
+        WolfxDecoder decoder = new WolfxDecoder();
+        assertNull(decoder.decode(
+                "{\"type\":\"heartbeat\",\"ver\":18,\"id\":\"a1b2\",\"timestamp\":1704093009000}"));
+        assertEquals(WolfxDecoder.KIND_HEARTBEAT, decoder.getLastKind());
+        assertNull(decoder.decode("{\"type\":\"pong\",\"timestamp\":1704093009000}"));
+        assertEquals(WolfxDecoder.KIND_PONG, decoder.getLastKind());
+    }
+
+    @Test
+    public void recycledRecordIsCleared() {
+        WolfxDecoder decoder = new WolfxDecoder();
+        decoder.decode(EEW).recycle();
+        EewRecord r = EewRecord.obtain();
+        assertNull(r.eventId);
+        assertTrue(Double.isNaN(r.magnitude));
+        r.recycle();
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.koiyure;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WebView へ送る JSON の組み立て（MainActivity → WebBridge.post に渡す文字列）
+ * エスケープは JsonCursor.appendQuoted が行う
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BridgeBenchmark {
+
+    private EewRecord eew;
+    private P2PQuakeDecoder.Message quakeDetail;
+    private String escapedText;
+    private final StringBuilder sb = new StringBuilder(4096);
+
+    @Setup
+    public void setUp() throws IOException {
+        eew = new WolfxDecoder().decode(Fixtures.read(Fixtures.WOLFX_EEW));
+        quakeDetail = new P2PQuakeDecoder().decode(Fixtures.read(Fixtures.P2P_QUAKE_DETAIL), 0);
+        // 改行・引用符・制御文字を含む本文（Wolfx の OriginalText など）
+        escapedText = "37 03 00 240101161027 C11\n240101161009\nND20240101161010 NCN905 JD\"\\\t"
+                + "石川県能登地方 M7.4 深さ10km 最大震度7";
+    }
+
+    @TearDown
+    public void tearDown() {
+        eew.recycle();
+    }
+
+    @Benchmark
+    public String eewToJson() {
+        return eew.toJson();
+    }
+
+    @Benchmark
+    public String quakeDetailToJson() {
+        return quakeDetail.toJson();
+    }
+
+    @Benchmark
+    public int appendQuoted() {
+        sb.setLength(0);
+        JsonCursor.appendQuoted(sb, escapedText);
+        return sb.length();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.koiyure;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 受信電文のデコード（受信スレッドで毎フレーム行う処理）
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DecoderBenchmark {
+
+    private String wolfxEew;
+    private String p2pEew;
+    private String p2pQuakeDetail;
+    private final WolfxDecoder wolfxDecoder = new WolfxDecoder();
+    private final P2PQuakeDecoder p2pDecoder = new P2PQuakeDecoder();
+
+    @Setup
+    public void setUp() throws IOException {
+        wolfxEew = Fixtures.read(Fixtures.WOLFX_EEW);
+        p2pEew = Fixtures.read(Fixtures.P2P_EEW);
+        p2pQuakeDetail = Fixtures.read(Fixtures.P2P_QUAKE_DETAIL);
+    }
+
+    @Benchmark
+    public int wolfxEew() {
+        EewRecord eew = wolfxDecoder.decode(wolfxEew);
+        int serial = eew.serial;
+        eew.recycle();
+        return serial;
+    }
+
+    @Benchmark
+    public int p2pEew() {
+        P2PQuakeDecoder.Eew m = (P2PQuakeDecoder.Eew) p2pDecoder.decode(p2pEew, 0);
+        int serial = m.record.serial;
+        m.record.recycle();
+        return serial;
+    }
+
+    /** 震度観測点 420 地点の詳細震度（大地震時の最大級の電文） */
+    @Benchmark
+    public Object p2pQuakeDetail() {
+        return p2pDecoder.decode(p2pQuakeDetail, 0);
+    }
+}
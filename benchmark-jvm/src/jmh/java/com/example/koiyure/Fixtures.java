@@ -0,0 +1,30 @@
+package com.example.koiyure;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * ベンチマーク用の受信データ・アセットをクラスパスから読む
+ * fixtures/ は上流の配信形式どおりの電文（2024年能登半島地震の規模を想定した大きさ）
+ */
+final class Fixtures {
+
+    static final String WOLFX_EEW = "fixtures/wolfx_eew.json";
+    static final String P2P_EEW = "fixtures/p2p_556_eew.json";
+    static final String P2P_QUAKE_DETAIL = "fixtures/p2p_551_detail.json";
+
+    private Fixtures() {
+    }
+
+    static InputStream open(String path) throws IOException {
+        InputStream in = Fixtures.class.getClassLoader().getResourceAsStream(path);
+        if (in == null) throw new IOException("見つかりません: " + path);
+        return in;
+    }
+
+    static String read(String path) throws IOException {
+        try (InputStream in = open(path)) {
+            return PointTable.readAll(in);
+        }
+    }
+}
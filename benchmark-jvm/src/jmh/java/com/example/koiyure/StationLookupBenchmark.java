@@ -0,0 +1,86 @@
+package com.example.koiyure;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 震度観測点（PointSeismicIntensityLocation.json）の検索と全観測点の予測震度
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StationLookupBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    private PointTable stations;
+    private SpatialIndex index;
+    private IntensityEstimator estimator;
+    private EewRecord eew;
+    private String[] names;
+    private final double[] lats = new double[QUERIES];
+    private final double[] lons = new double[QUERIES];
+    private final int[] nearestIndex = new int[8];
+    private final double[] nearestDistance = new double[8];
+    private int[] within;
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream in = Fixtures.open(PointTable.INTENSITY_STATIONS_ASSET)) {
+            stations = PointTable.parseIntensityStations(in);
+        }
+        index = new SpatialIndex(stations);
+        estimator = new IntensityEstimator(stations);
+        eew = new WolfxDecoder().decode(Fixtures.read(Fixtures.WOLFX_EEW));
+        within = new int[stations.size()];
+
+        Random random = new Random(42);
+        names = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            // 本州付近の範囲
+            lats[i] = 31 + random.nextDouble() * 12;
+            lons[i] = 129 + random.nextDouble() * 13;
+            names[i] = stations.name(random.nextInt(stations.size()));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        eew.recycle();
+    }
+
+    @Benchmark
+    public int indexOfName() {
+        return index.indexOfName(names[next++ & (QUERIES - 1)]);
+    }
+
+    @Benchmark
+    public int nearest() {
+        int i = next++ & (QUERIES - 1);
+        return index.nearest(lats[i], lons[i], nearestIndex, nearestDistance);
+    }
+
+    @Benchmark
+    public int within30Km() {
+        int i = next++ & (QUERIES - 1);
+        return index.within(lats[i], lons[i], 30, within);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean estimateAllStations() {
+        return estimator.estimate(eew);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.koiyure;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 走時表（tjma2001h.txt）の読み込みと P/S 波到達時間の引き当て
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TravelTimeBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    private TravelTimeTable table;
+    private final double[] depths = new double[QUERIES];
+    private final double[] distances = new double[QUERIES];
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        table = parse();
+        Random random = new Random(42);
+        for (int i = 0; i < QUERIES; i++) {
+            depths[i] = random.nextDouble() * 700;
+            distances[i] = random.nextDouble() * 2000;
+        }
+    }
+
+    private static TravelTimeTable parse() throws IOException {
+        try (InputStream in = Fixtures.open(TravelTimeTable.ASSET_PATH)) {
+            return TravelTimeTable.parse(in);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public TravelTimeTable parseAsset() throws IOException {
+        return parse();
+    }
+
+    @Benchmark
+    public double sTime() {
+        int i = next++ & (QUERIES - 1);
+        return table.sTime(depths[i], distances[i]);
+    }
+
+    @Benchmark
+    public double pAndSTime() {
+        int i = next++ & (QUERIES - 1);
+        return table.pTime(depths[i], distances[i]) + table.sTime(depths[i], distances[i]);
+    }
+}
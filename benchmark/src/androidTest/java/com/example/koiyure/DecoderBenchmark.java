@@ -0,0 +1,92 @@
+package com.example.koiyure;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 端末上での受信電文のデコードと WebView 向け JSON の組み立て
+ * （同じ内容の JVM 版は :benchmark-jvm の DecoderBenchmark / BridgeBenchmark）
+ */
+@RunWith(AndroidJUnit4.class)
+public class DecoderBenchmark {
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private String wolfxEew;
+    private String p2pEew;
+    private String p2pQuakeDetail;
+
+    static InputStream openAsset(String path) throws IOException {
+        return InstrumentationRegistry.getInstrumentation().getContext().getAssets().open(path);
+    }
+
+    static String readAsset(String path) throws IOException {
+        try (InputStream in = openAsset(path)) {
+            return PointTable.readAll(in);
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        wolfxEew = readAsset("fixtures/wolfx_eew.json");
+        p2pEew = readAsset("fixtures/p2p_556_eew.json");
+        p2pQuakeDetail = readAsset("fixtures/p2p_551_detail.json");
+    }
+
+    @Test
+    public void wolfxEew() {
+        WolfxDecoder decoder = new WolfxDecoder();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            decoder.decode(wolfxEew).recycle();
+        }
+    }
+
+    @Test
+    public void p2pEew() {
+        P2PQuakeDecoder decoder = new P2PQuakeDecoder();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            ((P2PQuakeDecoder.Eew) decoder.decode(p2pEew, 0)).record.recycle();
+        }
+    }
+
+    @Test
+    public void p2pQuakeDetail() {
+        P2PQuakeDecoder decoder = new P2PQuakeDecoder();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            decoder.decode(p2pQuakeDetail, 0);
+        }
+    }
+
+    @Test
+    public void eewToJson() {
+        EewRecord eew = new WolfxDecoder().decode(wolfxEew);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            eew.toJson();
+        }
+        eew.recycle();
+    }
+
+    @Test
+    public void quakeDetailToJson() {
+        P2PQuakeDecoder.Message quake = new P2PQuakeDecoder().decode(p2pQuakeDetail, 0);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            quake.toJson();
+        }
+    }
+}
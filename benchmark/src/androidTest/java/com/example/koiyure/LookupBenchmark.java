@@ -0,0 +1,89 @@
+package com.example.koiyure;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 端末上での走時表の引き当て・震度観測点の検索・全観測点の予測震度
+ * （同じ内容の JVM 版は :benchmark-jvm の TravelTimeBenchmark / StationLookupBenchmark）
+ */
+@RunWith(AndroidJUnit4.class)
+public class LookupBenchmark {
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private TravelTimeTable travelTimes;
+    private PointTable stations;
+
+    @Before
+    public void setUp() throws IOException {
+        try (InputStream in = DecoderBenchmark.openAsset(TravelTimeTable.ASSET_PATH)) {
+            travelTimes = TravelTimeTable.parse(in);
+        }
+        try (InputStream in = DecoderBenchmark.openAsset(PointTable.INTENSITY_STATIONS_ASSET)) {
+            stations = PointTable.parseIntensityStations(in);
+        }
+    }
+
+    @Test
+    public void parseTravelTimes() throws IOException {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            try (InputStream in = DecoderBenchmark.openAsset(TravelTimeTable.ASSET_PATH)) {
+                TravelTimeTable.parse(in);
+            }
+        }
+    }
+
+    @Test
+    public void sTime() {
+        BenchmarkState state = benchmarkRule.getState();
+        double distance = 0;
+        while (state.keepRunning()) {
+            travelTimes.sTime(10, distance);
+            distance = distance >= 2000 ? 0 : distance + 7.3;
+        }
+    }
+
+    @Test
+    public void nearestStation() {
+        SpatialIndex index = new SpatialIndex(stations);
+        int[] outIndex = new int[8];
+        double[] outDistance = new double[8];
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            index.nearest(35.68, 139.76, outIndex, outDistance);
+        }
+    }
+
+    @Test
+    public void stationByName() {
+        SpatialIndex index = new SpatialIndex(stations);
+        String name = stations.name(stations.size() / 2);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            index.indexOfName(name);
+        }
+    }
+
+    @Test
+    public void estimateAllStations() throws IOException {
+        IntensityEstimator estimator = new IntensityEstimator(stations);
+        EewRecord eew = new WolfxDecoder().decode(DecoderBenchmark.readAsset("fixtures/wolfx_eew.json"));
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            estimator.estimate(eew);
+        }
+        eew.recycle();
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.koiyure;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * 記録（FeedRecording 形式）を /p2p と /wolfx の WebSocket で配信する試験用サーバー
+ * 最初のクライアントが接続した時点から記録の時刻どおり（speed 倍速）に流す
+ * 途中で接続したクライアントには、その後のフレームだけが届く（本番と同じ）
+ *
+ * 使い方: ReplayServer 記録ファイル [speed（既定 1、0 で最速）] [port（既定 8765）]
+ */
+public final class ReplayServer {
+
+    private static final int DEFAULT_PORT = 8765;
+    // Wolfx と同じく約1分ごとに heartbeat を送る
+    private static final long HEARTBEAT_INTERVAL_SECONDS = 60;
+
+    private final FeedRecording recording;
+    private final double speed;
+    private final CopyOnWriteArrayList<WebSocket> p2pClients = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<WebSocket> wolfxClients = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor();
+    private FeedReplayer replayer;
+
+    private ReplayServer(FeedRecording recording, double speed) {
+        this.recording = recording;
+        this.speed = speed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("使い方: ReplayServer 記録ファイル [speed] [port]");
+            System.exit(2);
+        }
+        FeedRecording recording;
+        try (InputStream in = new FileInputStream(args[0])) {
+            recording = FeedRecording.parse(in);
+        }
+        double speed = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PORT;
+
+        ReplayServer server = new ReplayServer(recording, speed);
+        MockWebServer web = new MockWebServer();
+        web.setDispatcher(server.dispatcher());
+        web.start(InetAddress.getByName("0.0.0.0"), port);
+        server.heartbeat.scheduleWithFixedDelay(server::sendHeartbeat,
+                HEARTBEAT_INTERVAL_SECONDS, HEARTBEAT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        System.out.println("待ち受け中: ws://<host>:" + port + "/p2p, ws://<host>:" + port + "/wolfx（"
+                + recording.size() + "件 " + recording.durationMillis() + "ms, ×"
+                + (speed > 0 ? speed : "最速") + "）");
+    }
+
+    private Dispatcher dispatcher() {
+        return new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath() == null ? "" : request.getPath();
+                CopyOnWriteArrayList<WebSocket> clients;
+                if (path.startsWith("/p2p")) {
+                    clients = p2pClients;
+                } else if (path.startsWith("/wolfx")) {
+                    clients = wolfxClients;
+                } else {
+                    return new MockResponse().setResponseCode(404);
+                }
+                return new MockResponse().withWebSocketUpgrade(new Client(path, clients));
+            }
+        };
+    }
+
+    private final class Client extends WebSocketListener {
+        private final String path;
+        private final CopyOnWriteArrayList<WebSocket> clients;
+
+        Client(String path, CopyOnWriteArrayList<WebSocket> clients) {
+            this.path = path;
+            this.clients = clients;
+        }
+
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            clients.add(webSocket);
+            System.out.println("接続: " + path);
+            startReplay();
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            // Wolfx の ping に応答する
+            if ("ping".equals(text)) {
+                webSocket.send("{\"type\":\"pong\",\"timestamp\":" + System.currentTimeMillis() + "}");
+            }
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(1000, null);
+        }
+
+        @Override
+        public void onClosed(WebSocket webSocket, int code, String reason) {
+            clients.remove(webSocket);
+            System.out.println("切断: " + path);
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            clients.remove(webSocket);
+            System.out.println("切断: " + path + " " + t.getMessage());
+        }
+    }
+
+    private synchronized void startReplay() {
+        if (replayer != null) return;
+        replayer = new FeedReplayer(recording, speed, (feed, payload) -> {
+            CopyOnWriteArrayList<WebSocket> clients =
+                    FeedRecording.FEED_P2P.equals(feed) ? p2pClients : wolfxClients;
+            for (WebSocket ws : clients) {
+                ws.send(payload);
+            }
+        });
+        replayer.start((sent, elapsed) ->
+                System.out.println("再生終了: " + sent + "件 " + elapsed + "ms"));
+    }
+
+    private void sendHeartbeat() {
+        String frame = "{\"type\":\"heartbeat\",\"ver\":18,\"id\":\"replay\",\"timestamp\":"
+                + System.currentTimeMillis() + "}";
+        for (WebSocket ws : wolfxClients) {
+            ws.send(frame);
+        }
+    }
+}